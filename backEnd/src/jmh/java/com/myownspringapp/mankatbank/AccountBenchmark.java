@@ -0,0 +1,35 @@
+package com.myownspringapp.mankatbank;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class AccountBenchmark {
+
+    private Account account;
+
+    @Setup
+    public void setUp() {
+        account = new Account("bench");
+        account.deposit(1_000_000_000L);
+    }
+
+    @Benchmark
+    public long depositWithdraw() {
+        account.deposit(100);
+        account.withdraw(100);
+        return account.getBalance();
+    }
+
+    // one account per thread: measures the entity methods themselves under multi-threaded load
+    @Benchmark
+    @Threads(8)
+    public long depositWithdrawThreads() {
+        account.deposit(100);
+        account.withdraw(100);
+        return account.getBalance();
+    }
+}
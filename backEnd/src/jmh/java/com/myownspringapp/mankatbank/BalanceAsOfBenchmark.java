@@ -0,0 +1,75 @@
+package com.myownspringapp.mankatbank;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Balance as of a late point in a long history: the nearest daily snapshot plus at most a day of
+// legs, against summing every leg up to that point.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BalanceAsOfBenchmark {
+
+    private static final long ACCOUNT_ID = 7L;
+    private static final Instant START = Instant.parse("2020-01-01T00:00:00Z");
+    private static final Duration SPREAD = Duration.ofDays(800);
+
+    @Param({"200000"})
+    public int legs;
+
+    private ConfigurableApplicationContext context;
+    private BalanceSnapshotService snapshotService;
+    private JdbcTemplate jdbcTemplate;
+    private Instant late;
+    // asOf moves a little on every call so H2 can't answer from its result cache
+    private long tick;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApp.start();
+        snapshotService = context.getBean(BalanceSnapshotService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < legs; i++) {
+            batch.add(new Object[]{i + 1L, ACCOUNT_ID, TransactionType.DEPOSIT.code(), 1L,
+                    Timestamp.from(START.plusMillis(SPREAD.toMillis() * i / legs)), i + 1L});
+            if (batch.size() == 10_000) {
+                insertAll(batch);
+                batch.clear();
+            }
+        }
+        insertAll(batch);
+        snapshotService.snapshotUpTo(START.plus(SPREAD));
+        late = START.plus(SPREAD).minus(Duration.ofHours(3));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BalanceResponse snapshotLookup() {
+        return snapshotService.balanceAsOf(ACCOUNT_ID, late.plusMillis(++tick));
+    }
+
+    @Benchmark
+    public Long fullReplay() {
+        return jdbcTemplate.queryForObject(
+                "select sum(" + TransactionType.SIGNED_AMOUNT_SQL + ") from transactions where account_id = ? and created_at <= ?",
+                Long.class, ACCOUNT_ID, Timestamp.from(late.plusMillis(++tick)));
+    }
+
+    private void insertAll(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("insert into transactions (id, account_id, type_code, amount, created_at, link_id) "
+                + "values (?, ?, ?, ?, ?, ?)", rows);
+    }
+}
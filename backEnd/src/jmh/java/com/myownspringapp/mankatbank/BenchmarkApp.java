@@ -0,0 +1,28 @@
+package com.myownspringapp.mankatbank;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// Boots the real application against a private in-memory H2 database for the JMH benchmarks.
+public final class BenchmarkApp {
+
+    private BenchmarkApp() {}
+
+    public static ConfigurableApplicationContext start(String... extraArgs) {
+        String[] args = {
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--server.port=0",
+                "--logging.level.root=WARN"
+        };
+        String[] all = new String[args.length + extraArgs.length];
+        System.arraycopy(args, 0, all, 0, args.length);
+        System.arraycopy(extraArgs, 0, all, args.length, extraArgs.length);
+
+        return new SpringApplicationBuilder(MankatBankApplication.class).run(all);
+    }
+}
@@ -0,0 +1,83 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// GET /me/dashboard for a user with 20 accounts, 5 recent legs each, as the histories grow. `windowed`
+// is the row_number() query the dashboard used before: it ranks every leg the user has.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DashboardBenchmark {
+
+    private static final int ACCOUNTS = 20;
+    private static final int RECENT = 5;
+    private static final Instant START = Instant.parse("2020-01-01T00:00:00Z");
+
+    private static final String WINDOWED = """
+            select * from (
+                select t.*, row_number() over (partition by t.account_id order by t.created_at desc, t.id desc) as rn
+                from transactions t
+                where t.account_id in (select a.id from accounts a where a.user_id = ?)
+            ) r
+            where r.rn <= ?
+            order by r.account_id, r.created_at desc, r.id desc
+            """;
+
+    @Param({"200", "5000"})
+    public int legsPerAccount;
+
+    private ConfigurableApplicationContext context;
+    private DashboardService dashboardService;
+    private JdbcTemplate jdbcTemplate;
+    private Long userId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApp.start();
+        dashboardService = context.getBean(DashboardService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        AccountRepository accountRepository = context.getBean(AccountRepository.class);
+        User user = context.getBean(UserRepository.class).save(new User("bench@dashboard.test", "Bench", "x"));
+        userId = user.getId();
+
+        String sql = "insert into transactions (id, account_id, type_code, amount, created_at, link_id) values (?, ?, ?, ?, ?, ?)";
+        long id = 1;
+        for (int a = 0; a < ACCOUNTS; a++) {
+            Account account = new Account("bench-" + a);
+            account.setUser(user);
+            Long accountId = accountRepository.save(account).getId();
+            List<Object[]> batch = new ArrayList<>(legsPerAccount);
+            for (int i = 0; i < legsPerAccount; i++, id++) {
+                batch.add(new Object[]{id, accountId, TransactionType.DEPOSIT.code(), 1L,
+                        Timestamp.from(START.plusSeconds(i)), id});
+            }
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public DashboardResponse dashboard() {
+        return dashboardService.dashboard(userId, RECENT);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> windowed() {
+        return jdbcTemplate.queryForList(WINDOWED, userId, RECENT);
+    }
+}
@@ -0,0 +1,73 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.auth.JwtService;
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// An unchanged poll of GET /accounts/{id}/transactions over real HTTP, with and without the ETag
+// from the previous response. Prints the bytes each kind of poll puts on the wire.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ETagBenchmark {
+
+    @Param({"100", "1000"})
+    public int legs;
+
+    @Param({"false", "true"})
+    public boolean conditional;
+
+    private ConfigurableApplicationContext context;
+    private final HttpClient http = HttpClient.newHttpClient();
+    private HttpRequest poll;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkApp.start();
+        User user = context.getBean(UserRepository.class).save(new User("etag@bank.test", "ETag", "x"));
+        Account account = new Account("etag");
+        account.setUser(user);
+        Long id = context.getBean(AccountRepository.class).save(account).getId();
+        JournalService journal = context.getBean(JournalService.class);
+        new TransactionTemplate(context.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            List<JournalEntry> history = new ArrayList<>();
+            for (int i = 0; i < legs; i++) history.add(journal.deposit(id, 1 + i));
+            journal.record(history);
+        });
+
+        String token = context.getBean(JwtService.class).createToken(user.getId(), user.getEmail());
+        URI uri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                + "/accounts/" + id + "/transactions");
+        HttpRequest plain = HttpRequest.newBuilder(uri).header("Authorization", "Bearer " + token).build();
+        HttpResponse<byte[]> first = http.send(plain, HttpResponse.BodyHandlers.ofByteArray());
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        poll = conditional
+                ? HttpRequest.newBuilder(uri).header("Authorization", "Bearer " + token).header("If-None-Match", etag).build()
+                : plain;
+        HttpResponse<byte[]> sample = http.send(poll, HttpResponse.BodyHandlers.ofByteArray());
+        System.out.printf("%n%d legs, conditional=%s: status %d, %d body bytes%n",
+                legs, conditional, sample.statusCode(), sample.body().length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int poll() throws Exception {
+        return http.send(poll, HttpResponse.BodyHandlers.ofByteArray()).body().length;
+    }
+}
@@ -0,0 +1,78 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Payday burst into one merchant account at different shard counts (0 = not hot).
+// Throughput should climb with shards until something other than the merchant row is the bottleneck.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class HotAccountBenchmark {
+
+    private static final int SOURCE_ACCOUNTS = 32;
+
+    @Param({"0", "1", "4", "16"})
+    public int shards;
+
+    private ConfigurableApplicationContext context;
+    private AccountController controller;
+    private UsernamePasswordAuthenticationToken auth;
+    private Long merchantId;
+    private Long[] sourceIds;
+    private final AtomicInteger nextSource = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApp.start();
+        controller = context.getBean(AccountController.class);
+        AccountRepository accounts = context.getBean(AccountRepository.class);
+
+        User user = context.getBean(UserRepository.class).save(new User("hot@bank.test", "Hot", "x"));
+        auth = new UsernamePasswordAuthenticationToken(user.getEmail(), null, List.of());
+        auth.setDetails(String.valueOf(user.getId()));
+
+        Account merchant = new Account("merchant");
+        merchant.setUser(user);
+        merchantId = accounts.save(merchant).getId();
+        if (shards > 0) {
+            context.getBean(HotAccountService.class).makeHot(merchantId, shards);
+        }
+
+        sourceIds = new Long[SOURCE_ACCOUNTS];
+        for (int i = 0; i < SOURCE_ACCOUNTS; i++) {
+            Account source = new Account("source-" + i);
+            source.setUser(user);
+            source.deposit(Long.MAX_VALUE / 4);
+            sourceIds[i] = accounts.save(source).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadSource {
+        Long sourceId;
+
+        @Setup(Level.Trial)
+        public void pick(HotAccountBenchmark bench) {
+            sourceId = bench.sourceIds[bench.nextSource.getAndIncrement() % SOURCE_ACCOUNTS];
+        }
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String transferIntoMerchant(ThreadSource source) {
+        return controller.transfer(new TransferRequest(source.sourceId, merchantId, 1), null, auth);
+    }
+}
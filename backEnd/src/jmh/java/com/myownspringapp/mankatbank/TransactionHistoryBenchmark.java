@@ -0,0 +1,64 @@
+package com.myownspringapp.mankatbank;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// One 50-row page of an account's history, from the top and from ~rows-1000 rows deep. With keyset
+// pagination the two should cost about the same however long the history is.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TransactionHistoryBenchmark {
+
+    private static final long ACCOUNT_ID = 1L;
+    private static final Instant START = Instant.parse("2015-01-01T00:00:00Z");
+    private static final TransactionFilter NONE = new TransactionFilter(null, null, null, null, null);
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private TransactionHistoryService historyService;
+    private String deepCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApp.start();
+        historyService = context.getBean(TransactionHistoryService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        String sql = "insert into transactions (id, account_id, type_code, amount, created_at, link_id) values (?, ?, ?, ?, ?, ?)";
+        List<Object[]> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[]{i + 1L, ACCOUNT_ID, TransactionType.DEPOSIT.code(), 1L,
+                    Timestamp.from(START.plusSeconds(i)), i + 1L});
+            if (batch.size() == 10_000) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) jdbcTemplate.batchUpdate(sql, batch);
+        deepCursor = new TransactionHistoryService.Cursor(START.plusSeconds(1_000), 1_001L).encode();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public TransactionPage firstPage() {
+        return historyService.page(ACCOUNT_ID, null, 50, NONE);
+    }
+
+    @Benchmark
+    public TransactionPage deepPage() {
+        return historyService.page(ACCOUNT_ID, deepCursor, 50, NONE);
+    }
+}
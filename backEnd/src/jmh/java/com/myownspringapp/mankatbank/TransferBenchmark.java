@@ -0,0 +1,79 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Full AccountController.transfer path (ownership check, row locks, two transaction rows) on H2.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+
+    private static final int SOURCE_ACCOUNTS = 16;
+
+    private ConfigurableApplicationContext context;
+    private AccountController controller;
+    private UsernamePasswordAuthenticationToken auth;
+    private Long merchantId;
+    private Long[] sourceIds;
+    private final AtomicInteger nextSource = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApp.start();
+        controller = context.getBean(AccountController.class);
+        AccountRepository accounts = context.getBean(AccountRepository.class);
+
+        User user = context.getBean(UserRepository.class).save(new User("bench@bank.test", "Bench", "x"));
+        auth = new UsernamePasswordAuthenticationToken(user.getEmail(), null, List.of());
+        auth.setDetails(String.valueOf(user.getId()));
+
+        merchantId = accounts.save(owned("merchant", user)).getId();
+        sourceIds = new Long[SOURCE_ACCOUNTS];
+        for (int i = 0; i < SOURCE_ACCOUNTS; i++) {
+            sourceIds[i] = accounts.save(owned("source-" + i, user)).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadSource {
+        Long sourceId;
+
+        @Setup(Level.Trial)
+        public void pick(TransferBenchmark bench) {
+            sourceId = bench.sourceIds[bench.nextSource.getAndIncrement() % SOURCE_ACCOUNTS];
+        }
+    }
+
+    // single thread, no contention: lower bound on per-transfer cost
+    @Benchmark
+    public String transfer(ThreadSource source) {
+        return controller.transfer(new TransferRequest(source.sourceId, merchantId, 1), null, auth);
+    }
+
+    // every thread pays into the same merchant account, like a payday burst
+    @Benchmark
+    @Threads(8)
+    public String transferIntoHotAccount(ThreadSource source) {
+        return controller.transfer(new TransferRequest(source.sourceId, merchantId, 1), null, auth);
+    }
+
+    private static Account owned(String name, User user) {
+        Account account = new Account(name);
+        account.setUser(user);
+        account.deposit(Long.MAX_VALUE / 4);
+        return account;
+    }
+}
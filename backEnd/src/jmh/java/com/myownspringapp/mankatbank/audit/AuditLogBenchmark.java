@@ -0,0 +1,83 @@
+package com.myownspringapp.mankatbank.audit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// What auditing adds to a request: a stand-in for the request's own work plus one audit event,
+//   none       - no auditing, the baseline
+//   async      - AuditLog.publish (ring enqueue; the writer thread fsyncs per batch)
+//   sync       - the same file line written on the request thread, like a synchronous logger
+//   syncFsync  - written and forced on the request thread, what a durable synchronous trail costs
+// Drops are printed at the end of an async run: with the writer keeping up there should be none.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class AuditLogBenchmark {
+
+    @Param({"none", "async", "sync", "syncFsync"})
+    public String mode;
+
+    // roughly a few microseconds of request handling
+    @Param({"2000"})
+    public int work;
+
+    private Path dir;
+    private SimpleMeterRegistry registry;
+    private AuditLog audit;
+    private AuditFileSink sink;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("audit-bench");
+        registry = new SimpleMeterRegistry();
+        switch (mode) {
+            case "async" -> {
+                audit = new AuditLog(List.of(new AuditFileSink(dir, 64L << 20, true)), 16384, 512,
+                        Duration.ofMillis(5), registry);
+                audit.start();
+            }
+            case "sync" -> sink = new AuditFileSink(dir, 64L << 20, false);
+            case "syncFsync" -> sink = new AuditFileSink(dir, 64L << 20, true);
+            default -> { }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (audit != null) {
+            audit.close();
+            System.out.printf("%nasync: published %.0f, dropped %.0f%n",
+                    registry.get("bank.audit.published").counter().count(),
+                    registry.get("bank.audit.dropped").tag("reason", "overflow").counter().count());
+        }
+        if (sink != null) {
+            sink.close();
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void request() throws IOException {
+        Blackhole.consumeCPU(work);
+        AuditEvent event = AuditEvent.of(AuditAction.TRANSFER, 7L, 42L, 43L, 100L);
+        switch (mode) {
+            case "async" -> audit.publish(event);
+            case "sync", "syncFsync" -> sink.write(List.of(event));
+            default -> { }
+        }
+    }
+}
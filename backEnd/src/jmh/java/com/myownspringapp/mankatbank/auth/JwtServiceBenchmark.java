@@ -0,0 +1,50 @@
+package com.myownspringapp.mankatbank.auth;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class JwtServiceBenchmark {
+
+    private JwtService jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService("benchmark-secret-that-is-long-enough-for-hs256", 3600, 10_000, new SimpleMeterRegistry());
+        token = jwtService.createToken(42L, "bench@bank.test");
+    }
+
+    @Benchmark
+    public String createToken() {
+        return jwtService.createToken(42L, "bench@bank.test");
+    }
+
+    // the same token on every call, like a polling frontend: served from the verified-token cache
+    @Benchmark
+    public Object parse() {
+        return jwtService.parse(token);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object parseThreads() {
+        return jwtService.parse(token);
+    }
+
+    // what every request paid before the cache: HMAC check plus JSON claim decoding
+    @Benchmark
+    public Object parseUncached() {
+        return jwtService.verify(token);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object parseUncachedThreads() {
+        return jwtService.verify(token);
+    }
+}
@@ -0,0 +1,75 @@
+package com.myownspringapp.mankatbank.config;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Request-shaped work at high concurrency: each "request" makes three blocking DB calls of DB_LATENCY_MS
+// through a connection pool of `connections`. Compares Tomcat's default 200 platform threads with a
+// virtual thread per request. The virtual variant needs -PjavaVersion=21 (or newer).
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+public class VirtualThreadBenchmark {
+
+    private static final int CONCURRENT_REQUESTS = 2_000;
+    private static final int DB_CALLS_PER_REQUEST = 3;
+    private static final long DB_LATENCY_MS = 2;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"40", "400"})
+    public int connections;
+
+    private ExecutorService executor;
+    private Semaphore pool;
+
+    @Setup
+    public void setUp() throws Exception {
+        executor = threads.equals("platform")
+                ? Executors.newFixedThreadPool(200)
+                // reflective so this source set still compiles on the default Java 17 toolchain
+                : (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        pool = new Semaphore(connections);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // one op = a burst of CONCURRENT_REQUESTS requests, all completed
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_REQUESTS)
+    public int burst() throws Exception {
+        List<Future<?>> futures = new ArrayList<>(CONCURRENT_REQUESTS);
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            futures.add(executor.submit(this::request));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return futures.size();
+    }
+
+    private Void request() throws InterruptedException {
+        for (int call = 0; call < DB_CALLS_PER_REQUEST; call++) {
+            pool.acquire();
+            try {
+                Thread.sleep(DB_LATENCY_MS);
+            } finally {
+                pool.release();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,127 @@
+package com.myownspringapp.mankatbank.id;
+
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+// Inserting one journal batch of 50 legs the way Hibernate does it for each id strategy, into a
+// private H2 database behind H2's TCP server on localhost, so every statement is a round trip as it
+// would be with Postgres (in-process H2 makes round trips free and hides the difference):
+//   identity    - one insert per row, each reading back its generated key (no JDBC batching)
+//   sequence    - one "next value" per 50 ids (pooled allocationSize 50), then one batch
+//   timeOrdered - ids from TimeOrderedIds, then one batch
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class IdInsertBenchmark {
+
+    private static final int BATCH = 50;
+    private static final String COLUMNS = "account_id bigint, type_code smallint, amount bigint, created_at timestamp, link_id bigint";
+
+    @Param({"identity", "sequence", "timeOrdered"})
+    public String strategy;
+
+    private Server server;
+    private Connection connection;
+    private PreparedStatement insert;
+    private PreparedStatement nextValue;
+    private final TimeOrderedIds ids = TimeOrderedIdGenerator.forNode(0);
+    private long nextAccount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        connection = DriverManager.getConnection("jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:ids-bench-"
+                + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement ddl = connection.createStatement()) {
+            switch (strategy) {
+                case "identity" -> ddl.execute("create table legs (id bigint generated by default as identity primary key, " + COLUMNS + ")");
+                case "sequence" -> {
+                    ddl.execute("create table legs (id bigint primary key, " + COLUMNS + ")");
+                    ddl.execute("create sequence legs_seq start with 1 increment by " + BATCH);
+                }
+                default -> ddl.execute("create table legs (id bigint primary key, " + COLUMNS + ")");
+            }
+        }
+        connection.setAutoCommit(false);
+        if (strategy.equals("identity")) {
+            insert = connection.prepareStatement("insert into legs (account_id, type_code, amount, created_at, link_id) values (?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+        } else {
+            insert = connection.prepareStatement("insert into legs (account_id, type_code, amount, created_at, link_id, id) values (?, ?, ?, ?, ?, ?)");
+        }
+        if (strategy.equals("sequence")) {
+            nextValue = connection.prepareStatement("select next value for legs_seq");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("shutdown");
+        }
+        server.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long insertBatch() throws SQLException {
+        Timestamp now = Timestamp.from(Instant.now());
+        long account = ++nextAccount;
+        long last = 0;
+        switch (strategy) {
+            case "identity" -> {
+                for (int i = 0; i < BATCH; i++) {
+                    bind(account, i, now);
+                    insert.executeUpdate();
+                    try (ResultSet keys = insert.getGeneratedKeys()) {
+                        keys.next();
+                        last = keys.getLong(1);
+                    }
+                }
+            }
+            case "sequence" -> {
+                long first;
+                try (ResultSet rs = nextValue.executeQuery()) {
+                    rs.next();
+                    first = rs.getLong(1);
+                }
+                for (int i = 0; i < BATCH; i++) {
+                    bind(account, i, now);
+                    last = first + i;
+                    insert.setLong(6, last);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            default -> {
+                for (int i = 0; i < BATCH; i++) {
+                    bind(account, i, now);
+                    last = ids.next();
+                    insert.setLong(6, last);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+        connection.commit();
+        return last;
+    }
+
+    private void bind(long account, int i, Timestamp now) throws SQLException {
+        insert.setLong(1, account);
+        insert.setShort(2, (short) 1);
+        insert.setLong(3, 1 + i);
+        insert.setTimestamp(4, now);
+        insert.setLong(5, account * BATCH + i);
+    }
+}
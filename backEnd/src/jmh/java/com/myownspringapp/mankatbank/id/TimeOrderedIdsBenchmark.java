@@ -0,0 +1,25 @@
+package com.myownspringapp.mankatbank.id;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of one id from a single allocator, alone and with 8 threads hammering the same CAS.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TimeOrderedIdsBenchmark {
+
+    private final TimeOrderedIds ids = new TimeOrderedIds(TimeOrderedIdGenerator.NODE_BITS, TimeOrderedIdGenerator.SEQUENCE_BITS, 1);
+
+    @Benchmark
+    public long next() {
+        return ids.next();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long nextContended() {
+        return ids.next();
+    }
+}
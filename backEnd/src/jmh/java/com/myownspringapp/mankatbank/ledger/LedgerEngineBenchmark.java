@@ -0,0 +1,68 @@
+package com.myownspringapp.mankatbank.ledger;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Same traffic shape as TransferBenchmark (16 payers, one merchant) but through the ledger engine,
+// journal fsync included. Compare with TransferBenchmark.transferIntoHotAccount.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class LedgerEngineBenchmark {
+
+    private static final int SOURCE_ACCOUNTS = 16;
+    private static final long MERCHANT = 1;
+
+    @Param({"4"})
+    public int partitions;
+
+    private Path dir;
+    private LedgerEngine engine;
+    private final AtomicInteger nextSource = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("ledger-bench");
+        LedgerJournal journal = LedgerJournal.open(dir, 4096, 512, 1_000_000);
+        engine = new LedgerEngine(journal, id -> Long.MAX_VALUE / 4, partitions, 4096);
+        engine.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        engine.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadSource {
+        long sourceId;
+
+        @Setup(Level.Trial)
+        public void pick(LedgerEngineBenchmark bench) {
+            sourceId = 2 + bench.nextSource.getAndIncrement() % SOURCE_ACCOUNTS;
+        }
+    }
+
+    @Benchmark
+    public void transfer(ThreadSource source) {
+        engine.transfer(source.sourceId, MERCHANT, 1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void transferIntoHotAccount(ThreadSource source) {
+        engine.transfer(source.sourceId, MERCHANT, 1);
+    }
+}
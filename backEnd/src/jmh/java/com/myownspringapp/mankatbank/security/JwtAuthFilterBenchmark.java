@@ -0,0 +1,59 @@
+package com.myownspringapp.mankatbank.security;
+
+import com.myownspringapp.mankatbank.BenchmarkApp;
+import com.myownspringapp.mankatbank.auth.JwtService;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-request auth cost: header parsing, JWT verification and the revocation lookup.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class JwtAuthFilterBenchmark {
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+    private ConfigurableApplicationContext context;
+    private JwtAuthFilter filter;
+    private String header;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApp.start();
+        filter = context.getBean(JwtAuthFilter.class);
+        header = "Bearer " + context.getBean(JwtService.class).createToken(42L, "bench@bank.test");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int doFilter() throws Exception {
+        return runFilter();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int doFilterThreads() throws Exception {
+        return runFilter();
+    }
+
+    private int runFilter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/accounts");
+        request.addHeader("Authorization", header);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // doFilter is the public entry point; it goes straight to doFilterInternal for a fresh request
+        filter.doFilter(request, response, NO_OP_CHAIN);
+        SecurityContextHolder.clearContext();
+        return response.getStatus();
+    }
+}
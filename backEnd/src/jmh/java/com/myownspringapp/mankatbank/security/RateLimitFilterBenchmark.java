@@ -0,0 +1,100 @@
+package com.myownspringapp.mankatbank.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cost the limiters add to an allowed request: a bare GCRA bucket, and the two filters with a
+// per-user and per-IP route match. Limits are high enough that nothing is ever rejected.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class RateLimitFilterBenchmark {
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+    private static final int USERS = 10_000;
+
+    private RateLimiter limiter;
+    private RateLimitFilter rateLimitFilter;
+    private LoadSheddingFilter loadSheddingFilter;
+    private final AtomicLong nextUser = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new RateLimiter(Integer.MAX_VALUE, Duration.ofSeconds(1), 1_000_000);
+        RateLimitProperties properties = new RateLimitProperties(true, 10_000, 1_000_000, List.of(
+                new RateLimitProperties.Route("/auth/**", 0, Integer.MAX_VALUE, Duration.ofSeconds(1), 1_000_000),
+                new RateLimitProperties.Route("/accounts/**", Integer.MAX_VALUE, Integer.MAX_VALUE,
+                        Duration.ofSeconds(1), 1_000_000)));
+        rateLimitFilter = new RateLimitFilter(properties, new SimpleMeterRegistry());
+        loadSheddingFilter = new LoadSheddingFilter(properties, new SimpleMeterRegistry());
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        String key;
+        MockHttpServletRequest request;
+        UsernamePasswordAuthenticationToken auth;
+
+        @Setup(Level.Trial)
+        public void pick(RateLimitFilterBenchmark bench) {
+            long user = bench.nextUser.getAndIncrement() % USERS;
+            key = String.valueOf(user);
+            request = new MockHttpServletRequest("GET", "/accounts/" + user + "/transactions");
+            request.setRemoteAddr("10.0." + (user / 256) + "." + (user % 256));
+            auth = new UsernamePasswordAuthenticationToken("bench", null, List.of());
+            auth.setDetails(key);
+        }
+    }
+
+    @Benchmark
+    public long bucket(Caller caller) {
+        return limiter.tryAcquire(caller.key, System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long bucketThreads(Caller caller) {
+        return limiter.tryAcquire(caller.key, System.nanoTime());
+    }
+
+    // the mock request/response handling alone, to subtract from the two below
+    @Benchmark
+    public int baseline(Caller caller) throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(caller.auth);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        caller.request.clearAttributes();
+        NO_OP_CHAIN.doFilter(caller.request, response);
+        return response.getStatus();
+    }
+
+    @Benchmark
+    public int filters(Caller caller) throws Exception {
+        return runFilters(caller);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int filtersThreads(Caller caller) throws Exception {
+        return runFilters(caller);
+    }
+
+    private int runFilters(Caller caller) throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(caller.auth);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        // OncePerRequestFilter marks the request as filtered; clear that so the same request can be reused
+        caller.request.clearAttributes();
+        loadSheddingFilter.doFilter(caller.request, response,
+                (req, res) -> rateLimitFilter.doFilter(req, res, NO_OP_CHAIN));
+        return response.getStatus();
+    }
+}
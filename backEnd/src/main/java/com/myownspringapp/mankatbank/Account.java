@@ -1,20 +1,33 @@
 package com.myownspringapp.mankatbank;
 
+import com.myownspringapp.mankatbank.id.TimeOrderedId;
 import com.myownspringapp.mankatbank.user.User;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
-@Table(name = "accounts")
+@Table(name = "accounts", indexes = @Index(name = "idx_accounts_user", columnList = "user_id"))
 public class Account {
 
+    // assigned in the application, so Hibernate can batch inserts and ids follow creation time
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
 
     private String ownerName;
 
     private long balance;
 
+    // optimistic lock: concurrent writers that slip past the row lock get a conflict instead of a lost update
+    @Version
+    @ColumnDefault("0")
+    private long version;
+
+    // > 0 for hot accounts: incoming money lands on one of this many account_balance_shards rows
+    // instead of this row, and gets folded back in by HotAccountService
+    @ColumnDefault("0")
+    private int shardCount;
+
     // NEW: link account -> user (nullable for now so existing rows/endpoints won't break)
     @ManyToOne(fetch = FetchType.LAZY, optional = true)
     @JoinColumn(name = "user_id")
@@ -41,6 +54,22 @@ public class Account {
         return balance;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public boolean isHot() {
+        return shardCount > 0;
+    }
+
+    void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
     public User getUser() {
         return user;
     }
@@ -59,4 +88,12 @@ public class Account {
         if (this.balance < amount) throw new IllegalArgumentException("Insufficient funds");
         this.balance -= amount;
     }
+
+    // hot accounts: credits still sitting in shards count towards what can be withdrawn, so this
+    // row may go negative until the next fold
+    public void withdraw(long amount, long shardBalance) {
+        if (amount <= 0) throw new IllegalArgumentException("Withdraw amount must be positive");
+        if (this.balance + shardBalance < amount) throw new IllegalArgumentException("Insufficient funds");
+        this.balance -= amount;
+    }
 }
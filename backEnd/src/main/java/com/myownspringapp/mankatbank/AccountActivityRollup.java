@@ -0,0 +1,49 @@
+package com.myownspringapp.mankatbank;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+// Per-account totals per day and per month, kept up to date by ActivityRollupService in the same
+// DB transaction as the legs. Hot accounts spread their rows over `slot`s like their balance
+// shards; readers sum the slots.
+@Entity
+@Table(name = "account_activity_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_rollups_key",
+                columnNames = {"account_id", "granularity", "period_start", "slot"}))
+public class AccountActivityRollup {
+
+    // rows are only ever inserted one at a time by plain JDBC, so there's nothing to batch and
+    // IDENTITY lets that insert leave the id to the database
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 5, nullable = false)
+    private RollupGranularity granularity;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    private int slot;
+
+    private long depositTotal;
+    private long depositCount;
+    private long withdrawTotal;
+    private long withdrawCount;
+    private long transferInTotal;
+    private long transferInCount;
+    private long transferOutTotal;
+    private long transferOutCount;
+
+    protected AccountActivityRollup() {}
+
+    public Long getId() { return id; }
+    public Long getAccountId() { return accountId; }
+    public RollupGranularity getGranularity() { return granularity; }
+    public LocalDate getPeriodStart() { return periodStart; }
+    public int getSlot() { return slot; }
+}
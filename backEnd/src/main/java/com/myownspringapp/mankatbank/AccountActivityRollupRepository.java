@@ -0,0 +1,27 @@
+package com.myownspringapp.mankatbank;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface AccountActivityRollupRepository extends JpaRepository<AccountActivityRollup, Long> {
+
+    // slots of a hot account are summed here; everyone else has just slot 0
+    @Query("""
+            select new com.myownspringapp.mankatbank.ActivitySummary(r.periodStart,
+                sum(r.depositTotal), sum(r.depositCount), sum(r.withdrawTotal), sum(r.withdrawCount),
+                sum(r.transferInTotal), sum(r.transferInCount), sum(r.transferOutTotal), sum(r.transferOutCount))
+            from AccountActivityRollup r
+            where r.accountId = :accountId and r.granularity = :granularity
+              and r.periodStart >= :from and r.periodStart <= :to
+            group by r.periodStart
+            order by r.periodStart
+            """)
+    List<ActivitySummary> summarize(@Param("accountId") Long accountId,
+                                    @Param("granularity") RollupGranularity granularity,
+                                    @Param("from") LocalDate from,
+                                    @Param("to") LocalDate to);
+}
@@ -0,0 +1,42 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.id.TimeOrderedId;
+import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
+// One slice of a hot account's incoming money. Only ever changed with relative updates
+// (balance = balance + ?), never read-modify-write through JPA.
+@Entity
+@Table(name = "account_balance_shards",
+        uniqueConstraints = @UniqueConstraint(name = "uk_shard_account_index", columnNames = {"account_id", "shard_index"}))
+public class AccountBalanceShard {
+
+    @Id
+    @TimeOrderedId
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "shard_index", nullable = false)
+    private int shardIndex;
+
+    private long balance;
+
+    // bumped by every credit and fold so readers can tell the shard changed
+    @ColumnDefault("0")
+    private long version;
+
+    protected AccountBalanceShard() {}
+
+    public AccountBalanceShard(Long accountId, int shardIndex) {
+        this.accountId = accountId;
+        this.shardIndex = shardIndex;
+    }
+
+    public Long getId() { return id; }
+    public Long getAccountId() { return accountId; }
+    public int getShardIndex() { return shardIndex; }
+    public long getBalance() { return balance; }
+    public long getVersion() { return version; }
+}
@@ -0,0 +1,10 @@
+package com.myownspringapp.mankatbank;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface AccountBalanceShardRepository extends JpaRepository<AccountBalanceShard, Long> {
+
+    List<AccountBalanceShard> findByAccountIdOrderByShardIndex(Long accountId);
+}
@@ -0,0 +1,8 @@
+package com.myownspringapp.mankatbank;
+
+// JPQL constructor projection of an account row, with hot-account shards already added in
+public record AccountBalanceView(
+        Long id,
+        String ownerName,
+        long balance
+) {}
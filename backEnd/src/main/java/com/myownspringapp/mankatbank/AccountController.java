@@ -1,27 +1,87 @@
 package com.myownspringapp.mankatbank;
 
+import com.myownspringapp.mankatbank.audit.AuditAction;
+import com.myownspringapp.mankatbank.audit.AuditEvent;
+import com.myownspringapp.mankatbank.audit.AuditLog;
+import com.myownspringapp.mankatbank.idempotency.IdempotencyService;
+import com.myownspringapp.mankatbank.ledger.LedgerEngine;
 import com.myownspringapp.mankatbank.user.User;
 import com.myownspringapp.mankatbank.user.UserRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.type.TypeReference;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/accounts")
 public class AccountController {
 
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final TypeReference<AccountResponse> ACCOUNT_RESPONSE = new TypeReference<>() {};
+    private static final TypeReference<String> TEXT_RESPONSE = new TypeReference<>() {};
+    private static final TypeReference<List<TransferResult>> BATCH_RESPONSE = new TypeReference<>() {};
+
     private final AccountRepository accountRepository;
-    private final TransactionRepository transactionRepository;
     private final UserRepository userRepository;
+    private final TransferService transferService;
+    private final TransactionHistoryService transactionHistoryService;
+    private final StatementExportService statementExportService;
+    private final AccountOwnershipCache ownershipCache;
+    private final HotAccountService hotAccounts;
+    private final JournalService journal;
+    private final BalanceSnapshotService balanceSnapshotService;
+    private final ActivityRollupService activityRollups;
+    private final AccountStreamService accountStream;
+    private final AccountETags eTags;
+    private final IdempotencyService idempotency;
+    private final AuditLog audit;
+    private final LedgerEngine ledgerEngine; // null unless app.ledger.enabled
 
     public AccountController(AccountRepository accountRepository,
-                             TransactionRepository transactionRepository,
-                             UserRepository userRepository) {
+                             UserRepository userRepository,
+                             TransferService transferService,
+                             TransactionHistoryService transactionHistoryService,
+                             StatementExportService statementExportService,
+                             AccountOwnershipCache ownershipCache,
+                             HotAccountService hotAccounts,
+                             JournalService journal,
+                             BalanceSnapshotService balanceSnapshotService,
+                             ActivityRollupService activityRollups,
+                             AccountStreamService accountStream,
+                             AccountETags eTags,
+                             IdempotencyService idempotency,
+                             AuditLog audit,
+                             ObjectProvider<LedgerEngine> ledgerEngine) {
         this.accountRepository = accountRepository;
-        this.transactionRepository = transactionRepository;
         this.userRepository = userRepository;
+        this.transferService = transferService;
+        this.transactionHistoryService = transactionHistoryService;
+        this.statementExportService = statementExportService;
+        this.ownershipCache = ownershipCache;
+        this.hotAccounts = hotAccounts;
+        this.journal = journal;
+        this.balanceSnapshotService = balanceSnapshotService;
+        this.activityRollups = activityRollups;
+        this.accountStream = accountStream;
+        this.eTags = eTags;
+        this.idempotency = idempotency;
+        this.audit = audit;
+        this.ledgerEngine = ledgerEngine.getIfAvailable();
     }
 
     private Long currentUserId(Authentication authentication) {
@@ -32,8 +92,17 @@ public class AccountController {
     }
 
     private Account requireOwnedAccount(Long accountId, Long userId) {
-        Account account = accountRepository.findById(accountId)
-                .orElseThrow(() -> new RuntimeException("Account not found"));
+        return requireOwner(accountRepository.findById(accountId), userId);
+    }
+
+    // SELECT ... FOR UPDATE, for balance changes: concurrent deposits and withdrawals on one account
+    // queue on the row instead of failing each other's @Version check
+    private Account lockOwnedAccount(Long accountId, Long userId) {
+        return requireOwner(accountRepository.findByIdForUpdate(accountId), userId);
+    }
+
+    private Account requireOwner(Optional<Account> found, Long userId) {
+        Account account = found.orElseThrow(() -> new RuntimeException("Account not found"));
 
         if (account.getUser() == null || !account.getUser().getId().equals(userId)) {
             throw new RuntimeException("Forbidden");
@@ -41,6 +110,16 @@ public class AccountController {
         return account;
     }
 
+    // yes/no ownership for reads that don't need the Account itself; served from the cache
+    private void requireOwnership(Long accountId, Long userId) {
+        if (!ownershipCache.owns(userId, accountId)) {
+            if (!accountRepository.existsById(accountId)) {
+                throw new RuntimeException("Account not found");
+            }
+            throw new RuntimeException("Forbidden");
+        }
+    }
+
     @PostMapping
     public AccountResponse createAccount(@RequestBody CreateAccountRequest request,
                                          Authentication authentication) {
@@ -58,14 +137,20 @@ public class AccountController {
         account.setUser(user);
 
         Account saved = accountRepository.save(account);
+        ownershipCache.invalidate(userId);
+        audit.publish(AuditEvent.of(AuditAction.ACCOUNT_CREATED, userId, saved.getId(), null, null));
         return toResponse(saved);
     }
 
 
     // ✅ ONLY accounts for logged-in user
+    @Transactional(readOnly = true)
     @GetMapping
-    public List<AccountResponse> getAllAccounts(Authentication authentication) {
+    public List<AccountResponse> getAllAccounts(Authentication authentication, WebRequest request) {
         Long userId = currentUserId(authentication);
+        if (request.checkNotModified(eTags.accounts(userId))) {
+            return null; // 304
+        }
 
         return accountRepository.findByUser_Id(userId)
                 .stream()
@@ -73,20 +158,97 @@ public class AccountController {
                 .toList();
     }
 
+    // server-sent events for all of the caller's accounts, instead of polling GET /accounts and /{id}/transactions
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(Authentication authentication) {
+        return accountStream.subscribe(currentUserId(authentication));
+    }
+
     // ✅ Only your account
+    @Transactional(readOnly = true)
     @GetMapping("/{id}")
-    public AccountResponse getAccount(@PathVariable Long id, Authentication authentication) {
+    public AccountResponse getAccount(@PathVariable Long id, Authentication authentication, WebRequest request) {
         Long userId = currentUserId(authentication);
+        requireOwnership(id, userId);
+        // tag before body: if the account changes in between, the client just gets a 200 next time
+        if (request.checkNotModified(eTags.account(id))) {
+            return null; // 304
+        }
         Account account = requireOwnedAccount(id, userId);
         return toResponse(account);
     }
 
+    // Balance at a past moment (disputes, interest, statements); now if asOf is left out.
+    // Reflects the journal, so it is exact for history written through it.
+    @GetMapping("/{id}/balance")
+    public BalanceResponse getBalanceAsOf(@PathVariable Long id,
+                                          @RequestParam(required = false) Instant asOf,
+                                          Authentication authentication) {
+        Long userId = currentUserId(authentication);
+        requireOwnership(id, userId);
+        return balanceSnapshotService.balanceAsOf(id, asOf == null ? Instant.now() : asOf);
+    }
+
+    // per-day or per-month totals, straight from the rollups; from/to default to the last 30 days / 12 months
+    @GetMapping("/{id}/summary")
+    public List<ActivitySummary> getActivitySummary(@PathVariable Long id,
+                                                    @RequestParam(defaultValue = "day") String granularity,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                    Authentication authentication) {
+        Long userId = currentUserId(authentication);
+        requireOwnership(id, userId);
+        return activityRollups.summary(id, RollupGranularity.parse(granularity), from, to);
+    }
+
     // ✅ Only your account’s transactions
+    @Transactional(readOnly = true)
     @GetMapping("/{id}/transactions")
-    public java.util.List<Transaction> getTransactions(@PathVariable Long id, Authentication authentication) {
+    public java.util.List<Transaction> getTransactions(@PathVariable Long id, Authentication authentication,
+                                                       WebRequest request) {
         Long userId = currentUserId(authentication);
-        requireOwnedAccount(id, userId);
-        return transactionRepository.findByAccountId(id);
+        requireOwnership(id, userId);
+        if (request.checkNotModified(eTags.transactions(id))) {
+            return null; // 304
+        }
+        return transactionHistoryService.all(id);
+    }
+
+    // Paged history, newest first. Pass nextCursor from the previous page to continue.
+    @GetMapping("/{id}/transactions/page")
+    public TransactionPage getTransactionPage(@PathVariable Long id,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(defaultValue = "50") int limit,
+                                              @RequestParam(required = false) String type,
+                                              @RequestParam(required = false) Long minAmount,
+                                              @RequestParam(required = false) Long maxAmount,
+                                              @RequestParam(required = false) Instant from,
+                                              @RequestParam(required = false) Instant to,
+                                              Authentication authentication) {
+        Long userId = currentUserId(authentication);
+        requireOwnership(id, userId);
+        return transactionHistoryService.page(id, cursor, limit,
+                new TransactionFilter(type, minAmount, maxAmount, from, to));
+    }
+
+    // Full statement download; rows are streamed, never collected into a list.
+    @GetMapping("/{id}/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(@PathVariable Long id,
+                                                                    @RequestParam(defaultValue = "csv") String format,
+                                                                    @RequestParam(required = false) Instant from,
+                                                                    @RequestParam(required = false) Instant to,
+                                                                    Authentication authentication) {
+        Long userId = currentUserId(authentication);
+        requireOwnership(id, userId);
+
+        StatementExportService.Format exportFormat = StatementExportService.parseFormat(format);
+        boolean csv = exportFormat == StatementExportService.Format.CSV;
+
+        return ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"account-" + id + (csv ? ".csv" : ".ndjson") + "\"")
+                .body(statementExportService.export(id, exportFormat, from, to));
     }
 
     // TEMP dev endpoint — only allows assigning yourself, and only if account is unassigned or already yours
@@ -112,84 +274,176 @@ public class AccountController {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
+        Long previousOwnerId = (account.getUser() == null) ? null : account.getUser().getId();
         account.setUser(user);
         Account saved = accountRepository.save(account);
 
+        ownershipCache.invalidate(previousOwnerId);
+        ownershipCache.invalidate(userId);
+        audit.publish(AuditEvent.of(AuditAction.ACCOUNT_ASSIGNED, userId, id, previousOwnerId, null));
         return toResponse(saved);
     }
 
-    @Transactional
     @PostMapping("/{id}/deposit")
     public AccountResponse deposit(@PathVariable Long id,
                                    @RequestBody MoneyRequest request,
+                                   @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
                                    Authentication authentication) {
 
         Long userId = currentUserId(authentication);
-        Account account = requireOwnedAccount(id, userId);
+        return idempotency.executeInTransaction(userId, idempotencyKey,
+                "deposit " + id + " " + request.amount(), ACCOUNT_RESPONSE, () -> {
+                    AccountResponse response = applyDeposit(id, request.amount(), userId);
+                    auditAfterCommit(AuditEvent.of(AuditAction.DEPOSIT, userId, id, null, request.amount()));
+                    return response;
+                });
+    }
+
+    private AccountResponse applyDeposit(Long id, long amount, Long userId) {
+        if (ledgerEngine != null) {
+            Account account = requireOwnedAccount(id, userId);
+            return toResponse(account, ledgerEngine.deposit(id, amount));
+        }
+
+        // a hot account's credit lands on a shard and leaves the row alone, so it needs no row lock
+        Account account = hotAccounts.shardCount(id) > 0 ? requireOwnedAccount(id, userId) : lockOwnedAccount(id, userId);
+        if (account.isHot()) {
+            hotAccounts.credit(id, account.getShardCount(), amount);
+            journal.record(journal.deposit(id, amount));
+            return toResponse(account);
+        }
 
-        account.deposit(request.amount());
+        account.deposit(amount);
         Account saved = accountRepository.save(account);
 
-        transactionRepository.save(new Transaction(id, "DEPOSIT", request.amount()));
+        journal.record(journal.deposit(id, amount));
 
         return toResponse(saved);
     }
 
-    @Transactional
     @PostMapping("/{id}/withdraw")
     public AccountResponse withdraw(@PathVariable Long id,
                                     @RequestBody MoneyRequest request,
+                                    @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
                                     Authentication authentication) {
 
         Long userId = currentUserId(authentication);
-        Account account = requireOwnedAccount(id, userId);
+        return idempotency.executeInTransaction(userId, idempotencyKey,
+                "withdraw " + id + " " + request.amount(), ACCOUNT_RESPONSE, () -> {
+                    AccountResponse response = applyWithdraw(id, request.amount(), userId);
+                    auditAfterCommit(AuditEvent.of(AuditAction.WITHDRAW, userId, id, null, request.amount()));
+                    return response;
+                });
+    }
 
-        account.withdraw(request.amount());
+    private AccountResponse applyWithdraw(Long id, long amount, Long userId) {
+        if (ledgerEngine != null) {
+            Account account = requireOwnedAccount(id, userId);
+            return toResponse(account, ledgerEngine.withdraw(id, amount));
+        }
+
+        Account account = lockOwnedAccount(id, userId);
+        if (account.isHot()) {
+            // we hold the row lock, so no fold can move shard money in while we look
+            account.withdraw(amount, hotAccounts.shardBalance(id));
+        } else {
+            account.withdraw(amount);
+        }
         Account saved = accountRepository.save(account);
 
-        transactionRepository.save(new Transaction(id, "WITHDRAW", request.amount()));
+        journal.record(journal.withdraw(id, amount));
 
         return toResponse(saved);
     }
 
-    @Transactional
-    @PostMapping("/transfer")
-    public String transfer(@RequestBody TransferRequest request,
-                           Authentication authentication) {
-
+    // Spreads incoming transfers over `shards` sub-balances; for accounts that receive far more
+    // than they send. Not needed (or allowed) with the ledger engine, which has no row contention.
+    @PostMapping("/{id}/hot")
+    public AccountResponse makeHot(@PathVariable Long id,
+                                   @RequestParam int shards,
+                                   Authentication authentication) {
         Long userId = currentUserId(authentication);
-
-        if (request.amount() <= 0) {
-            throw new IllegalArgumentException("Transfer amount must be positive");
-        }
-        if (request.fromId().equals(request.toId())) {
-            throw new IllegalArgumentException("Cannot transfer to the same account");
+        requireOwnedAccount(id, userId);
+        if (ledgerEngine != null) {
+            throw new RuntimeException("Hot accounts are not used with the ledger engine");
         }
 
-        Account from = requireOwnedAccount(request.fromId(), userId);
+        hotAccounts.makeHot(id, shards);
+        audit.publish(new AuditEvent(Instant.now(), AuditAction.ACCOUNT_HOT, userId, id, null, null, "shards=" + shards));
+        return toResponse(requireOwnedAccount(id, userId));
+    }
 
-        Account to = accountRepository.findById(request.toId())
-                .orElseThrow(() -> new RuntimeException("To account not found"));
+    @PostMapping("/transfer")
+    public String transfer(@RequestBody TransferRequest request,
+                           @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                           Authentication authentication) {
 
-        // for now allow transfer into any existing account
-        from.withdraw(request.amount());
-        to.deposit(request.amount());
+        Long userId = currentUserId(authentication);
+        String done = "Transfer complete";
+
+        return idempotency.execute(userId, idempotencyKey, "transfer " + request, TEXT_RESPONSE, claim -> {
+            transferService.transfer(userId, request.fromId(), request.toId(), request.amount(), () -> {
+                claim.complete(done);
+                auditAfterCommit(AuditEvent.of(AuditAction.TRANSFER, userId, request.fromId(), request.toId(), request.amount()));
+            });
+            return done;
+        });
+    }
 
-        accountRepository.save(from);
-        accountRepository.save(to);
+    @PostMapping("/transfers/batch")
+    public List<TransferResult> transferBatch(@RequestBody List<TransferRequest> requests,
+                                              @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                              Authentication authentication) {
 
-        transactionRepository.save(new Transaction(from.getId(), "TRANSFER_OUT", request.amount()));
-        transactionRepository.save(new Transaction(to.getId(), "TRANSFER_IN", request.amount()));
+        Long userId = currentUserId(authentication);
+        return idempotency.execute(userId, idempotencyKey, "batch " + requests, BATCH_RESPONSE,
+                claim -> transferService.transferBatch(userId, requests, results -> {
+                    claim.complete(results);
+                    for (TransferResult result : results) {
+                        if (result.success()) {
+                            auditAfterCommit(AuditEvent.of(AuditAction.TRANSFER, userId, result.fromId(), result.toId(),
+                                    result.amount()));
+                        }
+                    }
+                }));
+    }
 
-        return "Transfer complete";
+    // Money movements are audited from inside the work behind the Idempotency-Key, once their
+    // transaction commits: a replayed key runs no work and so records nothing, and a retried or
+    // rolled-back attempt records nothing either. Without a transaction (ledger engine) right away.
+    private void auditAfterCommit(AuditEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            audit.publish(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                audit.publish(event);
+            }
+        });
     }
 
+    // with the ledger on, the row's balance trails the engine, so show the engine's;
+    // hot accounts add up their shards
     private AccountResponse toResponse(Account account) {
+        long balance;
+        if (ledgerEngine != null && account.getId() != null) {
+            balance = ledgerEngine.balance(account.getId());
+        } else if (account.isHot()) {
+            balance = hotAccounts.balance(account.getId());
+        } else {
+            balance = account.getBalance();
+        }
+        return toResponse(account, balance);
+    }
+
+    private AccountResponse toResponse(Account account, long balance) {
         Long userId = (account.getUser() == null) ? null : account.getUser().getId();
         return new AccountResponse(
                 account.getId(),
                 account.getOwnerName(),
-                account.getBalance(),
+                balance,
                 userId
         );
     }
@@ -0,0 +1,106 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.config.ReadYourWrites;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// userId -> ids of the accounts that user owns, so read endpoints can answer "is this yours?"
+// without loading the Account. Anything that changes account ownership must call invalidate().
+//
+// invalidate() only reaches this instance. A "no" is therefore checked against the DB before it is
+// given (the account may have been created or assigned through another instance), and entries
+// expire after ttl, which bounds how long a grant revoked elsewhere can outlive it here.
+@Component
+public class AccountOwnershipCache {
+
+    private final AccountRepository accountRepository;
+    private final ReadYourWrites readYourWrites;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<Long, Entry> owned = new ConcurrentHashMap<>();
+
+    // bumped on every invalidation; a load that raced with one is used once but not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter rechecks;
+
+    public AccountOwnershipCache(AccountRepository accountRepository,
+                                 ReadYourWrites readYourWrites,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.accounts.ownershipCacheSize:10000}") int maxSize,
+                                 @Value("${app.accounts.ownershipCacheTtl:PT1M}") Duration ttl) {
+        this.accountRepository = accountRepository;
+        this.readYourWrites = readYourWrites;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+
+        this.hits = Counter.builder("bank.ownership.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("bank.ownership.cache").tag("result", "miss").register(meterRegistry);
+        this.rechecks = Counter.builder("bank.ownership.cache").tag("result", "recheck").register(meterRegistry);
+        Gauge.builder("bank.ownership.cache.size", owned, Map::size).register(meterRegistry);
+    }
+
+    public boolean owns(Long userId, Long accountId) {
+        long now = System.nanoTime();
+        Entry entry = owned.get(userId);
+        if (entry != null && now - entry.loadedAt() < ttlNanos) {
+            if (entry.accountIds().contains(accountId)) {
+                hits.increment();
+                return true;
+            }
+            rechecks.increment();
+        } else {
+            misses.increment();
+        }
+
+        long before = generation.get();
+        Set<Long> accountIds = Set.copyOf(accountRepository.findIdsByUserId(userId));
+        if (generation.get() == before) {
+            BoundedCaches.makeRoom(owned, maxSize);
+            owned.put(userId, new Entry(accountIds, now));
+        }
+        return accountIds.contains(accountId);
+    }
+
+    // Drops the entry now and again after the surrounding transaction commits, so a reader that
+    // loaded the pre-commit state in between can't leave a stale grant behind. The user's next load
+    // also has to come from the primary, not a replica that may still show the old owner.
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        evict(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    readYourWrites.stick(userId);
+                    evict(userId);
+                }
+            });
+        } else {
+            readYourWrites.stick(userId);
+        }
+    }
+
+    private void evict(Long userId) {
+        generation.incrementAndGet();
+        owned.remove(userId);
+    }
+
+    private record Entry(Set<Long> accountIds, long loadedAt) {
+    }
+}
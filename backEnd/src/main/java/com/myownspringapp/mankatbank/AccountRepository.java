@@ -1,9 +1,39 @@
 package com.myownspringapp.mankatbank;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface AccountRepository extends JpaRepository<Account, Long> {
 
     List<Account> findByUser_Id(Long userId);
+
+    // balance includes hot-account shards, so the dashboard needs no per-account follow-up query
+    @Query("""
+            select new com.myownspringapp.mankatbank.AccountBalanceView(a.id, a.ownerName,
+                a.balance + coalesce((select sum(s.balance) from AccountBalanceShard s where s.accountId = a.id), 0))
+            from Account a where a.user.id = :userId order by a.id
+            """)
+    List<AccountBalanceView> findBalanceViewsByUserId(@Param("userId") Long userId);
+
+    @Query("select a.id from Account a where a.user.id = :userId")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+
+    // SELECT ... FOR UPDATE — callers must lock in ascending id order to avoid deadlocks
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.id = :id")
+    Optional<Account> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.id in :ids order by a.id")
+    List<Account> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Query("select a.id from Account a where a.user.id = :userId and a.id in :ids")
+    List<Long> findOwnedIds(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,24 @@
+package com.myownspringapp.mankatbank;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+// 503 + Retry-After like LoadSheddingFilter, so EventSource clients back off instead of reconnecting
+// in a loop. No body: the request asked for text/event-stream. Ahead of AuthExceptionHandler, whose
+// RuntimeException handler would otherwise win.
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RestControllerAdvice
+public class AccountStreamExceptionHandler {
+
+    @ExceptionHandler(TooManyStreamsException.class)
+    public ResponseEntity<Void> handle(TooManyStreamsException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .build();
+    }
+}
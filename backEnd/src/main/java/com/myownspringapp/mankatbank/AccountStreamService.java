@@ -0,0 +1,272 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.ledger.LedgerEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// GET /accounts/stream: pushes an "account" event (AccountResponse) and one "transaction" event
+// per leg whenever a journal write for one of the caller's accounts commits.
+//
+// The commit thread only hands the legs to a single dispatcher thread; that thread looks up the
+// new balances once per batch and drops the events into each watching connection's small bounded
+// queue. A shared sender pool drains the queues. A connection whose queue overflows (slow client)
+// loses its backlog and gets a single "resync" event telling it to re-read, so one stalled browser
+// never holds more than app.stream.bufferSize events. Accounts are resolved when the stream opens;
+// clients reconnect to pick up accounts created later.
+@Service
+public class AccountStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountStreamService.class);
+
+    private static final String ACCOUNTS = """
+            select a.id, a.owner_name, a.user_id, a.balance + coalesce((select sum(s.balance)
+                from account_balance_shards s where s.account_id = a.id), 0) balance
+            from accounts a where a.id in (:ids)
+            """;
+
+    private final AccountRepository accountRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final LedgerEngine ledgerEngine; // null unless app.ledger.enabled
+    private final long timeoutMillis;
+    private final int bufferSize;
+    private final int maxConnections;
+    private final Duration retryAfter;
+
+    private final Map<Long, Set<Connection>> watchers = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService dispatcher;
+    private final ExecutorService senders;
+
+    private final Counter pushed;
+    private final Counter overflows;
+    private final Counter rejected;
+
+    public AccountStreamService(AccountRepository accountRepository,
+                                JdbcTemplate jdbcTemplate,
+                                ObjectProvider<LedgerEngine> ledgerEngine,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.stream.timeout:PT30M}") Duration timeout,
+                                @Value("${app.stream.bufferSize:32}") int bufferSize,
+                                @Value("${app.stream.maxConnections:10000}") int maxConnections,
+                                @Value("${app.stream.retryAfter:PT5S}") Duration retryAfter,
+                                @Value("${app.stream.senderThreads:2}") int senderThreads,
+                                @Value("${app.stream.dispatchQueue:10000}") int dispatchQueue) {
+        this.accountRepository = accountRepository;
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.ledgerEngine = ledgerEngine.getIfAvailable();
+        this.timeoutMillis = timeout.toMillis();
+        this.bufferSize = bufferSize;
+        this.maxConnections = maxConnections;
+        this.retryAfter = retryAfter;
+
+        // if even the dispatcher falls behind, the committing thread does the fan-out itself
+        this.dispatcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(dispatchQueue), daemon("stream-dispatch"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.senders = Executors.newFixedThreadPool(senderThreads, daemon("stream-send"));
+
+        this.pushed = Counter.builder("bank.stream.events").register(meterRegistry);
+        this.overflows = Counter.builder("bank.stream.overflows")
+                .description("connections that fell more than app.stream.bufferSize events behind")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("bank.stream.rejected")
+                .description("streams refused at app.stream.maxConnections").register(meterRegistry);
+        Gauge.builder("bank.stream.connections", connections, Set::size).register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(Long userId) {
+        if (connections.size() >= maxConnections) {
+            rejected.increment();
+            // between retryAfter and twice that, so rejected clients don't all come back at once
+            long seconds = retryAfter.toSeconds();
+            throw new TooManyStreamsException(ThreadLocalRandom.current().nextLong(seconds, 2 * seconds + 1));
+        }
+        List<Long> accountIds = accountRepository.findIdsByUserId(userId);
+        Connection connection = new Connection(new SseEmitter(timeoutMillis), List.copyOf(accountIds));
+        connection.emitter.onCompletion(() -> unregister(connection));
+        connection.emitter.onTimeout(() -> unregister(connection));
+        connection.emitter.onError(ex -> unregister(connection));
+
+        connections.add(connection);
+        for (Long id : accountIds) {
+            watchers.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(connection);
+        }
+        // current state first, so the client doesn't need a separate GET to start from
+        if (!accountIds.isEmpty()) {
+            dispatcher.execute(() -> {
+                for (AccountResponse account : load(accountIds).values()) {
+                    connection.offer(SseEmitter.event().name("account").data(account));
+                }
+            });
+        }
+        return connection.emitter;
+    }
+
+    @TransactionalEventListener
+    public void onJournalRecorded(JournalRecordedEvent event) {
+        if (watchers.isEmpty()) {
+            return;
+        }
+        List<Transaction> watched = new ArrayList<>();
+        for (Transaction leg : event.legs()) {
+            if (watchers.containsKey(leg.getAccountId())) watched.add(leg);
+        }
+        if (!watched.isEmpty()) {
+            dispatcher.execute(() -> fanOut(watched));
+        }
+    }
+
+    // a comment line every now and then keeps proxies from closing idle streams and finds dead ones
+    @Scheduled(fixedDelayString = "${app.stream.heartbeatMillis:15000}")
+    public void heartbeat() {
+        for (Connection connection : connections) {
+            connection.offerIfRoom(SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        for (Connection connection : connections) {
+            connection.emitter.complete();
+        }
+    }
+
+    private void fanOut(List<Transaction> legs) {
+        Map<Long, List<Transaction>> byAccount = new TreeMap<>();
+        for (Transaction leg : legs) {
+            byAccount.computeIfAbsent(leg.getAccountId(), k -> new ArrayList<>()).add(leg);
+        }
+        Map<Long, AccountResponse> accounts = load(byAccount.keySet());
+        byAccount.forEach((accountId, accountLegs) -> {
+            Set<Connection> watching = watchers.get(accountId);
+            AccountResponse account = accounts.get(accountId);
+            if (watching == null || account == null) return;
+            for (Connection connection : watching) {
+                for (Transaction leg : accountLegs) {
+                    connection.offer(SseEmitter.event().name("transaction").data(leg));
+                }
+                connection.offer(SseEmitter.event().name("account").data(account));
+            }
+        });
+    }
+
+    // no transaction, so this reads the primary: the event follows a commit the replica may not have yet
+    private Map<Long, AccountResponse> load(Collection<Long> accountIds) {
+        Map<Long, AccountResponse> accounts = new TreeMap<>();
+        jdbcTemplate.query(ACCOUNTS, new MapSqlParameterSource("ids", accountIds), rs -> {
+            long id = rs.getLong("id");
+            Number userId = (Number) rs.getObject("user_id");
+            long balance = (ledgerEngine != null) ? ledgerEngine.balance(id) : rs.getLong("balance");
+            accounts.put(id, new AccountResponse(id, rs.getString("owner_name"), balance,
+                    userId == null ? null : userId.longValue()));
+        });
+        return accounts;
+    }
+
+    private void unregister(Connection connection) {
+        if (!connections.remove(connection)) {
+            return;
+        }
+        for (Long id : connection.accountIds) {
+            watchers.computeIfPresent(id, (k, set) -> {
+                set.remove(connection);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class Connection {
+        final SseEmitter emitter;
+        final List<Long> accountIds;
+        final BlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(bufferSize);
+        final AtomicBoolean draining = new AtomicBoolean();
+
+        Connection(SseEmitter emitter, List<Long> accountIds) {
+            this.emitter = emitter;
+            this.accountIds = accountIds;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (!queue.offer(event)) {
+                // too far behind to catch up event by event; the client re-reads instead
+                overflows.increment();
+                queue.clear();
+                queue.offer(SseEmitter.event().name("resync").data("{}"));
+            }
+            scheduleDrain();
+        }
+
+        void offerIfRoom(SseEmitter.SseEventBuilder event) {
+            if (queue.offer(event)) scheduleDrain();
+        }
+
+        void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while ((event = queue.poll()) != null) {
+                    emitter.send(event);
+                    pushed.increment();
+                }
+            } catch (Exception gone) {
+                log.debug("Closing account stream: {}", gone.toString());
+                unregister(this);
+                queue.clear();
+                emitter.completeWithError(gone);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // an offer that raced with the end of the loop saw draining == true and left it to us
+            if (!queue.isEmpty()) scheduleDrain();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.myownspringapp.mankatbank;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Keeps account_activity_rollups in step with the journal: JournalService.record() hands every batch
+// of legs here, inside the same transaction, so a rollup never counts a leg that rolled back.
+//
+// Each touched row is an "update ... set x = x + ?". If the row doesn't exist yet we insert it
+// under a savepoint; losing that race to another transaction shows up as a duplicate key, and the
+// update is simply retried. Rows are touched in key order so two writers can't deadlock.
+@Service
+public class ActivityRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivityRollupService.class);
+
+    private static final String UPDATE = """
+            update account_activity_rollups set
+                deposit_total = deposit_total + ?, deposit_count = deposit_count + ?,
+                withdraw_total = withdraw_total + ?, withdraw_count = withdraw_count + ?,
+                transfer_in_total = transfer_in_total + ?, transfer_in_count = transfer_in_count + ?,
+                transfer_out_total = transfer_out_total + ?, transfer_out_count = transfer_out_count + ?
+            where account_id = ? and granularity = ? and period_start = ? and slot = ?
+            """;
+    private static final String INSERT = """
+            insert into account_activity_rollups (account_id, granularity, period_start, slot,
+                deposit_total, deposit_count, withdraw_total, withdraw_count,
+                transfer_in_total, transfer_in_count, transfer_out_total, transfer_out_count)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    // SQLState for a unique constraint violation on both H2 and Postgres
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private record Key(long accountId, RollupGranularity granularity, LocalDate periodStart, int slot) {}
+
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparingLong(Key::accountId)
+            .thenComparing(Key::granularity)
+            .thenComparing(Key::periodStart)
+            .thenComparingInt(Key::slot);
+
+    private static final String BACKFILL = "activity";
+
+    private final AccountActivityRollupRepository rollupRepository;
+    private final HotAccountService hotAccounts;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate backfillTransaction;
+    private final int maxPeriods;
+    private final long backfillChunk;
+
+    public ActivityRollupService(AccountActivityRollupRepository rollupRepository,
+                                 HotAccountService hotAccounts,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 // only here so legacy rows have their type_code before backfill() reads them
+                                 JournalMigration journalMigration,
+                                 @Value("${app.rollups.maxPeriods:400}") int maxPeriods,
+                                 @Value("${app.rollups.backfillChunk:1000}") long backfillChunk) {
+        this.rollupRepository = rollupRepository;
+        this.hotAccounts = hotAccounts;
+        this.jdbcTemplate = jdbcTemplate;
+        this.backfillTransaction = new TransactionTemplate(transactionManager);
+        this.maxPeriods = maxPeriods;
+        this.backfillChunk = backfillChunk;
+    }
+
+    public void apply(Collection<Transaction> legs) {
+        Map<Key, long[]> deltas = new TreeMap<>(KEY_ORDER);
+        for (Transaction leg : legs) {
+            // hot accounts spread their legs over slots, the same way their credits pick a balance shard
+            int shards = hotAccounts.shardCount(leg.getAccountId());
+            int slot = shards > 0 ? ThreadLocalRandom.current().nextInt(shards) : 0;
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                Key key = new Key(leg.getAccountId(), granularity, granularity.periodStart(leg.getCreatedAt()), slot);
+                add(deltas.computeIfAbsent(key, k -> new long[8]), leg.getType(), leg.getAmount());
+            }
+        }
+        deltas.forEach(this::upsert);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ActivitySummary> summary(Long accountId, RollupGranularity granularity, LocalDate from, LocalDate to) {
+        LocalDate end = (to == null) ? LocalDate.now(ZoneOffset.UTC) : to;
+        LocalDate start = (from == null)
+                ? (granularity == RollupGranularity.DAY ? end.minusDays(29) : end.minusMonths(11))
+                : from;
+        start = granularity.periodStart(start.atStartOfDay(ZoneOffset.UTC).toInstant());
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        long periods = (granularity == RollupGranularity.DAY)
+                ? ChronoUnit.DAYS.between(start, end) + 1
+                : ChronoUnit.MONTHS.between(start, end) + 1;
+        if (periods > maxPeriods) {
+            throw new IllegalArgumentException("At most " + maxPeriods + " periods per request");
+        }
+        return rollupRepository.summarize(accountId, granularity, start, end);
+    }
+
+    private static void add(long[] d, TransactionType type, long amount) {
+        int at = switch (type) {
+            case DEPOSIT -> 0;
+            case WITHDRAW -> 2;
+            case TRANSFER_IN -> 4;
+            case TRANSFER_OUT -> 6;
+        };
+        d[at] += amount;
+        d[at + 1]++;
+    }
+
+    private void upsert(Key key, long[] d) {
+        if (update(key, d) > 0) {
+            return;
+        }
+        if (!insert(key, d) && update(key, d) == 0) {
+            throw new IllegalStateException("Rollup row vanished for " + key);
+        }
+    }
+
+    // false if another transaction created the row since our update; it is there now. The savepoint
+    // is set by hand on the JPA transaction's connection (HibernateJpaDialect doesn't do NESTED), and
+    // keeps Postgres from aborting the whole transaction on the duplicate key.
+    private boolean insert(Key key, long[] d) {
+        Boolean inserted = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                insert.setLong(1, key.accountId());
+                insert.setString(2, key.granularity().name());
+                insert.setObject(3, key.periodStart());
+                insert.setInt(4, key.slot());
+                for (int i = 0; i < d.length; i++) {
+                    insert.setLong(5 + i, d[i]);
+                }
+                insert.executeUpdate();
+                connection.releaseSavepoint(savepoint);
+                return true;
+            } catch (SQLException ex) {
+                connection.rollback(savepoint);
+                if (UNIQUE_VIOLATION.equals(ex.getSQLState())) {
+                    return false;
+                }
+                throw ex;
+            }
+        });
+        return Boolean.TRUE.equals(inserted);
+    }
+
+    private int update(Key key, long[] d) {
+        return jdbcTemplate.update(UPDATE, d[0], d[1], d[2], d[3], d[4], d[5], d[6], d[7],
+                key.accountId(), key.granularity().name(), key.periodStart(), key.slot());
+    }
+
+    // Legs written before rollups existed, i.e. up to the cutoff fixed in rollup_backfills when the
+    // first instance started; everything after it is counted by apply(). One account-id chunk per
+    // transaction, under the marker row's lock, so instances starting together take turns and an
+    // interrupted run resumes where it stopped. The legacy rows are all plain slot 0. Account ids are
+    // time-ordered and sparse, so each chunk starts at the next account that has legs.
+    @PostConstruct
+    public void backfill() {
+        startBackfill();
+        int chunks = 0;
+        while (backfillChunk()) {
+            chunks++;
+        }
+        if (chunks > 0) {
+            log.info("Activity rollup backfill done ({} chunks here)", chunks);
+        }
+    }
+
+    void startBackfill() {
+        if (jdbcTemplate.queryForObject("select count(*) from rollup_backfills where name = ?", Long.class, BACKFILL) > 0) {
+            return;
+        }
+        Long cutoff = jdbcTemplate.queryForObject("select max(id) from transactions", Long.class);
+        Long rollups = jdbcTemplate.queryForObject("select count(*) from account_activity_rollups", Long.class);
+        // rollups written before this marker existed already cover the old legs
+        boolean done = cutoff == null || rollups > 0;
+        try {
+            jdbcTemplate.update("insert into rollup_backfills (name, cutoff_id, next_account, created_at, finished_at) "
+                    + "values (?, ?, ?, ?, ?)", BACKFILL, cutoff, Long.MIN_VALUE, Timestamp.from(Instant.now()),
+                    done ? Timestamp.from(Instant.now()) : null);
+            if (!done) {
+                log.info("Backfilling activity rollups for legs up to id {}", cutoff);
+            }
+        } catch (DuplicateKeyException ex) {
+            // another instance created it first; its cutoff stands
+        }
+    }
+
+    // false once there is nothing left to do
+    boolean backfillChunk() {
+        return Boolean.TRUE.equals(backfillTransaction.execute(status -> {
+            Map<String, Object> marker = jdbcTemplate.queryForMap("select cutoff_id, next_account, finished_at "
+                    + "from rollup_backfills where name = ? for update", BACKFILL);
+            if (marker.get("finished_at") != null) {
+                return false;
+            }
+            long cutoff = ((Number) marker.get("cutoff_id")).longValue();
+            Long start = jdbcTemplate.queryForObject("select min(account_id) from transactions "
+                    + "where account_id >= ? and id <= ?", Long.class, ((Number) marker.get("next_account")).longValue(), cutoff);
+            if (start == null) {
+                jdbcTemplate.update("update rollup_backfills set finished_at = ? where name = ?",
+                        Timestamp.from(Instant.now()), BACKFILL);
+                return false;
+            }
+            long end = start + backfillChunk - 1;
+            backfill(start, end, cutoff);
+            jdbcTemplate.update("update rollup_backfills set next_account = ? where name = ?", end + 1, BACKFILL);
+            return true;
+        }));
+    }
+
+    private void backfill(long fromAccount, long toAccount, long cutoff) {
+        Map<Key, long[]> deltas = new TreeMap<>(KEY_ORDER);
+        jdbcTemplate.query("select account_id, type_code, amount, created_at from transactions " +
+                "where account_id between ? and ? and id <= ?", rs -> {
+            TransactionType type = TransactionType.fromCode(rs.getShort(2));
+            Instant createdAt = rs.getTimestamp(4).toInstant();
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                Key key = new Key(rs.getLong(1), granularity, granularity.periodStart(createdAt), 0);
+                add(deltas.computeIfAbsent(key, k -> new long[8]), type, rs.getLong(3));
+            }
+        }, fromAccount, toAccount, cutoff);
+        deltas.forEach(this::upsert);
+    }
+}
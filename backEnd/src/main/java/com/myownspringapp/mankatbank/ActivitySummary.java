@@ -0,0 +1,16 @@
+package com.myownspringapp.mankatbank;
+
+import java.time.LocalDate;
+
+// one row of GET /accounts/{id}/summary; periods without activity are left out
+public record ActivitySummary(
+        LocalDate periodStart,
+        long depositTotal,
+        long depositCount,
+        long withdrawTotal,
+        long withdrawCount,
+        long transferInTotal,
+        long transferInCount,
+        long transferOutTotal,
+        long transferOutCount
+) {}
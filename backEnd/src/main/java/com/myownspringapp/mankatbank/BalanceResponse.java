@@ -0,0 +1,11 @@
+package com.myownspringapp.mankatbank;
+
+import java.time.Instant;
+
+// snapshotAt is the checkpoint the answer was replayed from (null: replayed from the first leg)
+public record BalanceResponse(
+        Long accountId,
+        Instant asOf,
+        long balance,
+        Instant snapshotAt
+) {}
@@ -0,0 +1,39 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.id.TimeOrderedId;
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// Balance of an account from its journal legs, counting every leg with createdAt < periodEnd.
+// Written for each period in which the account had activity; quiet periods need no row.
+@Entity
+@Table(name = "balance_snapshots",
+        uniqueConstraints = @UniqueConstraint(name = "uk_balance_snapshots_account_period", columnNames = {"account_id", "period_end"}),
+        indexes = @Index(name = "idx_balance_snapshots_period", columnList = "period_end"))
+public class BalanceSnapshot {
+
+    @Id
+    @TimeOrderedId
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "period_end", nullable = false)
+    private Instant periodEnd;
+
+    private long balance;
+
+    protected BalanceSnapshot() {}
+
+    public BalanceSnapshot(Long accountId, Instant periodEnd, long balance) {
+        this.accountId = accountId;
+        this.periodEnd = periodEnd;
+        this.balance = balance;
+    }
+
+    public Long getId() { return id; }
+    public Long getAccountId() { return accountId; }
+    public Instant getPeriodEnd() { return periodEnd; }
+    public long getBalance() { return balance; }
+}
@@ -0,0 +1,26 @@
+package com.myownspringapp.mankatbank;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    // nearest checkpoint at or before `at`; one probe of the (account_id, period_end) unique index
+    Optional<BalanceSnapshot> findFirstByAccountIdAndPeriodEndLessThanEqualOrderByPeriodEndDesc(Long accountId, Instant at);
+
+    @Query("""
+            select s from BalanceSnapshot s
+            where s.accountId in :accountIds
+              and s.periodEnd = (select max(x.periodEnd) from BalanceSnapshot x where x.accountId = s.accountId)
+            """)
+    List<BalanceSnapshot> findLatest(@Param("accountIds") Collection<Long> accountIds);
+
+    @Query("select max(s.periodEnd) from BalanceSnapshot s")
+    Optional<Instant> findWatermark();
+}
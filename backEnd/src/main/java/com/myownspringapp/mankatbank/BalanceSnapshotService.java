@@ -0,0 +1,140 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.archive.TransactionArchive;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Balance at any past moment = nearest daily checkpoint at or before it + the legs after that
+// checkpoint. So a lookup reads at most one day of one account's legs, however old the account is.
+@Service
+public class BalanceSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceSnapshotService.class);
+    private static final int LOOKUP_CHUNK = 500;
+
+    private final BalanceSnapshotRepository snapshotRepository;
+    private final TransactionArchive archive;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration lag;
+
+    public BalanceSnapshotService(BalanceSnapshotRepository snapshotRepository,
+                                  TransactionArchive archive,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.balances.snapshotLag:PT10M}") Duration lag) {
+        this.snapshotRepository = snapshotRepository;
+        this.archive = archive;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lag = lag;
+    }
+
+    // legs at exactly asOf count
+    @Transactional(readOnly = true)
+    public BalanceResponse balanceAsOf(Long accountId, Instant asOf) {
+        BalanceSnapshot snapshot = snapshotRepository
+                .findFirstByAccountIdAndPeriodEndLessThanEqualOrderByPeriodEndDesc(accountId, asOf)
+                .orElse(null);
+        Instant from = (snapshot == null) ? Instant.EPOCH : snapshot.getPeriodEnd();
+        long base = (snapshot == null) ? 0 : snapshot.getBalance();
+
+        // an account quiet since before the archive cutoff has its last checkpoint in archived months
+        Instant cutoff = archive.cutoff();
+        if (cutoff != null && from.isBefore(cutoff)) {
+            long[] archived = {0};
+            Instant until = asOf.isBefore(cutoff) ? asOf.plusNanos(1) : cutoff;
+            archive.forEach(accountId, from, until, leg -> archived[0] += leg.type().signed(leg.amount()));
+            base += archived[0];
+            from = cutoff;
+        }
+
+        Long delta = jdbcTemplate.queryForObject(
+                "select coalesce(sum(" + TransactionType.SIGNED_AMOUNT_SQL + "), 0) from transactions " +
+                        "where account_id = ? and created_at >= ? and created_at <= ?",
+                Long.class, accountId, Timestamp.from(from), Timestamp.from(asOf));
+
+        return new BalanceResponse(accountId, asOf, base + (delta == null ? 0 : delta),
+                snapshot == null ? null : snapshot.getPeriodEnd());
+    }
+
+    // The lag keeps us off days whose legs may still be arriving: createdAt is set before commit,
+    // and the ledger projection trails the engine.
+    @Scheduled(fixedDelayString = "${app.balances.snapshotMillis:600000}",
+            initialDelayString = "${app.balances.snapshotMillis:600000}")
+    public void snapshot() {
+        snapshotUpTo(Instant.now().minus(lag));
+    }
+
+    // Checkpoints every whole UTC day before `until`, starting after the newest checkpoint. Each day
+    // commits on its own, so an interrupted run just resumes from the last finished day.
+    int snapshotUpTo(Instant until) {
+        Instant cutoff = until.truncatedTo(ChronoUnit.DAYS);
+        Instant start = snapshotRepository.findWatermark().orElseGet(this::firstActiveDay);
+        if (start == null) {
+            return 0;
+        }
+
+        int written = 0;
+        try {
+            for (Instant day = start; day.isBefore(cutoff); day = day.plus(1, ChronoUnit.DAYS)) {
+                Instant periodStart = day;
+                Integer rows = transactionTemplate.execute(status ->
+                        snapshotPeriod(periodStart, periodStart.plus(1, ChronoUnit.DAYS)));
+                written += (rows == null) ? 0 : rows;
+            }
+        } catch (DataIntegrityViolationException ex) {
+            // another instance is writing the same day; it will finish the job
+            log.info("Balance snapshots already being written elsewhere, stopping this run");
+        }
+        return written;
+    }
+
+    private int snapshotPeriod(Instant start, Instant end) {
+        Map<Long, Long> deltas = new HashMap<>();
+        jdbcTemplate.query(
+                "select account_id, sum(" + TransactionType.SIGNED_AMOUNT_SQL + ") from transactions " +
+                        "where created_at >= ? and created_at < ? group by account_id",
+                rs -> { deltas.put(rs.getLong(1), rs.getLong(2)); },
+                Timestamp.from(start), Timestamp.from(end));
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, Long> previous = new HashMap<>();
+        List<Long> ids = new ArrayList<>(deltas.keySet());
+        for (int i = 0; i < ids.size(); i += LOOKUP_CHUNK) {
+            for (BalanceSnapshot s : snapshotRepository.findLatest(ids.subList(i, Math.min(i + LOOKUP_CHUNK, ids.size())))) {
+                previous.put(s.getAccountId(), s.getBalance());
+            }
+        }
+
+        List<BalanceSnapshot> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((accountId, delta) ->
+                rows.add(new BalanceSnapshot(accountId, end, previous.getOrDefault(accountId, 0L) + delta)));
+        snapshotRepository.saveAll(rows);
+        return rows.size();
+    }
+
+    private Instant firstActiveDay() {
+        Timestamp first = jdbcTemplate.queryForObject("select min(created_at) from transactions", Timestamp.class);
+        return (first == null) ? null : first.toInstant().truncatedTo(ChronoUnit.DAYS);
+    }
+}
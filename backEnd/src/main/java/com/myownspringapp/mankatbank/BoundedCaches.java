@@ -0,0 +1,23 @@
+package com.myownspringapp.mankatbank;
+
+import java.util.Iterator;
+import java.util.Map;
+
+// Size policy shared by the in-process caches (verified JWTs, completed idempotency keys, account
+// ownership): a full cache drops an arbitrary tenth of its entries rather than grow. No per-entry
+// bookkeeping, and an entry dropped too early only costs one extra load.
+public final class BoundedCaches {
+
+    private BoundedCaches() {
+    }
+
+    // call before adding an entry
+    public static void makeRoom(Map<?, ?> cache, int maxSize) {
+        if (cache.size() < maxSize) return;
+        Iterator<?> it = cache.keySet().iterator();
+        for (int i = cache.size() - maxSize * 9 / 10; i > 0 && it.hasNext(); i--) {
+            it.next();
+            it.remove();
+        }
+    }
+}
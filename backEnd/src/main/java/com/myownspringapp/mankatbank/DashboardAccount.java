@@ -0,0 +1,10 @@
+package com.myownspringapp.mankatbank;
+
+import java.util.List;
+
+public record DashboardAccount(
+        Long id,
+        String ownerName,
+        long balance,
+        List<RecentTransaction> recentTransactions
+) {}
@@ -0,0 +1,36 @@
+package com.myownspringapp.mankatbank;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/me")
+public class DashboardController {
+
+    private final DashboardService dashboardService;
+
+    public DashboardController(DashboardService dashboardService) {
+        this.dashboardService = dashboardService;
+    }
+
+    // one call for the home screen instead of GET /accounts plus /accounts/{id}/transactions per account
+    @GetMapping("/dashboard")
+    public DashboardResponse dashboard(@RequestParam(defaultValue = "5") int transactions,
+                                       Authentication authentication) {
+        if (authentication == null || authentication.getDetails() == null) {
+            throw new RuntimeException("Unauthenticated");
+        }
+        Long userId = Long.valueOf(authentication.getDetails().toString());
+        return dashboardService.dashboard(userId, transactions);
+    }
+
+    // an out-of-range `transactions` is the client's mistake, not a server error
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(IllegalArgumentException.class)
+    public Map<String, String> handleBadArgument(IllegalArgumentException ex) {
+        return Map.of("message", ex.getMessage());
+    }
+}
@@ -0,0 +1,10 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.auth.UserResponse;
+
+import java.util.List;
+
+public record DashboardResponse(
+        UserResponse user,
+        List<DashboardAccount> accounts
+) {}
@@ -0,0 +1,123 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.archive.ArchivedLeg;
+import com.myownspringapp.mankatbank.archive.TransactionArchive;
+import com.myownspringapp.mankatbank.auth.UserResponse;
+import com.myownspringapp.mankatbank.ledger.LedgerEngine;
+import com.myownspringapp.mankatbank.user.UserProfile;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Everything the home screen shows in three queries, however many accounts the user has:
+// profile, accounts with balances, and the newest legs of all of them. Only projections, so no
+// entities are hydrated and nothing can lazy-load. Accounts quiet since before the archive cutoff
+// are topped up from the archive files, which costs no query.
+@Service
+public class DashboardService {
+
+    private static final Comparator<RecentTransaction> NEWEST_FIRST = Comparator
+            .comparing(RecentTransaction::createdAt).thenComparing(RecentTransaction::id).reversed();
+
+    private final UserRepository userRepository;
+    private final AccountRepository accountRepository;
+    private final EntityManager entityManager;
+    private final TransactionArchive archive;
+    private final LedgerEngine ledgerEngine; // null unless app.ledger.enabled
+    private final int maxTransactions;
+
+    public DashboardService(UserRepository userRepository,
+                            AccountRepository accountRepository,
+                            EntityManager entityManager,
+                            TransactionArchive archive,
+                            ObjectProvider<LedgerEngine> ledgerEngine,
+                            @Value("${app.dashboard.maxTransactions:50}") int maxTransactions) {
+        this.userRepository = userRepository;
+        this.accountRepository = accountRepository;
+        this.entityManager = entityManager;
+        this.archive = archive;
+        this.ledgerEngine = ledgerEngine.getIfAvailable();
+        this.maxTransactions = maxTransactions;
+    }
+
+    @Transactional(readOnly = true)
+    public DashboardResponse dashboard(Long userId, int transactionsPerAccount) {
+        if (transactionsPerAccount < 0 || transactionsPerAccount > maxTransactions) {
+            throw new IllegalArgumentException("transactions must be between 0 and " + maxTransactions);
+        }
+
+        UserProfile profile = userRepository.findProfileById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        List<AccountBalanceView> accounts = accountRepository.findBalanceViewsByUserId(userId);
+
+        Map<Long, List<RecentTransaction>> recent = new HashMap<>();
+        if (transactionsPerAccount > 0 && !accounts.isEmpty()) {
+            // hot rows of an archived month that is not purged yet are skipped: the archive has them
+            Instant cutoff = archive.cutoff();
+            for (RecentTransaction leg : newest(accounts, transactionsPerAccount)) {
+                if (cutoff == null || !leg.createdAt().isBefore(cutoff)) {
+                    recent.computeIfAbsent(leg.accountId(), id -> new ArrayList<>()).add(leg);
+                }
+            }
+            if (cutoff != null) {
+                for (AccountBalanceView account : accounts) {
+                    List<RecentTransaction> legs = recent.computeIfAbsent(account.id(), id -> new ArrayList<>());
+                    if (legs.size() < transactionsPerAccount) {
+                        for (ArchivedLeg leg : archive.newest(account.id(), null, null, l -> true,
+                                transactionsPerAccount - legs.size())) {
+                            legs.add(new RecentTransaction(leg.id(), leg.accountId(), leg.type(), leg.amount(),
+                                    leg.createdAt(), leg.linkId()));
+                        }
+                    }
+                }
+            }
+        }
+
+        recent.values().forEach(legs -> legs.sort(NEWEST_FIRST));
+
+        List<DashboardAccount> result = new ArrayList<>(accounts.size());
+        for (AccountBalanceView account : accounts) {
+            // with the ledger on, the row's balance trails the engine, so show the engine's
+            long balance = (ledgerEngine != null) ? ledgerEngine.balance(account.id()) : account.balance();
+            result.add(new DashboardAccount(account.id(), account.ownerName(), balance,
+                    recent.getOrDefault(account.id(), List.of())));
+        }
+        return new DashboardResponse(new UserResponse(profile.getId(), profile.getEmail(), profile.getFullName()), result);
+    }
+
+    // The newest `limit` legs of every account in one statement: a union of one top-K per account,
+    // each an index range on idx_transactions_account_created that Postgres walks backwards and stops
+    // after `limit` rows. So the cost is accounts x limit, however long the histories are. (Not a
+    // lateral join: H2 has none, and Hibernate's emulation of one joins every leg in the table.)
+    private List<RecentTransaction> newest(List<AccountBalanceView> accounts, int limit) {
+        StringBuilder hql = new StringBuilder();
+        for (int i = 0; i < accounts.size(); i++) {
+            if (i > 0) hql.append(" union all ");
+            hql.append("(select t.id, t.accountId, t.type, t.amount, t.createdAt, t.linkId from Transaction t")
+                    .append(" where t.accountId = :a").append(i)
+                    .append(" order by t.createdAt desc, t.id desc limit :limit)");
+        }
+        TypedQuery<Object[]> query = entityManager.createQuery(hql.toString(), Object[].class)
+                .setParameter("limit", limit);
+        for (int i = 0; i < accounts.size(); i++) {
+            query.setParameter("a" + i, accounts.get(i).id());
+        }
+        List<RecentTransaction> legs = new ArrayList<>();
+        for (Object[] row : query.getResultList()) {
+            legs.add(new RecentTransaction((Long) row[0], (Long) row[1], (TransactionType) row[2], (Long) row[3],
+                    (Instant) row[4], (Long) row[5]));
+        }
+        return legs;
+    }
+}
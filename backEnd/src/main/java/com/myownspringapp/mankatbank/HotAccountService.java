@@ -0,0 +1,160 @@
+package com.myownspringapp.mankatbank;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Hot accounts (merchant collection accounts and the like) take credits on N shard rows instead of
+// their own row, so concurrent incoming transfers don't all queue on one row lock.
+//
+// effective balance = accounts.balance + sum(account_balance_shards.balance)
+//
+// Shards only ever grow, except in fold(), which needs the account row lock. So anyone holding that
+// lock can trust a plain read of the shard total not to shrink under them, which is all a debit needs.
+@Service
+public class HotAccountService {
+
+    private final AccountRepository accountRepository;
+    private final AccountBalanceShardRepository shardRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxShards;
+
+    // this instance's view of which accounts are hot. A stale "not hot" just means the row gets
+    // locked and credited directly, which is still correct.
+    private final Map<Long, Integer> shardCounts = new ConcurrentHashMap<>();
+
+    private final Counter credits;
+    private final Counter folds;
+
+    public HotAccountService(AccountRepository accountRepository,
+                             AccountBalanceShardRepository shardRepository,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.accounts.hot.maxShards:64}") int maxShards) {
+        this.accountRepository = accountRepository;
+        this.shardRepository = shardRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxShards = maxShards;
+
+        this.credits = Counter.builder("bank.hot.credits").register(meterRegistry);
+        this.folds = Counter.builder("bank.hot.folds")
+                .description("Shard balances moved back into their account row")
+                .register(meterRegistry);
+        Gauge.builder("bank.hot.accounts", shardCounts, Map::size).register(meterRegistry);
+    }
+
+    public int shardCount(Long accountId) {
+        return shardCounts.getOrDefault(accountId, 0);
+    }
+
+    // Splits the account's incoming money across `shards` rows. Shard count can only grow, so a
+    // credit racing with this never targets a shard that has gone away.
+    public void makeHot(Long accountId, int shards) {
+        if (shards < 1 || shards > maxShards) {
+            throw new IllegalArgumentException("shards must be between 1 and " + maxShards);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            Account account = accountRepository.findByIdForUpdate(accountId)
+                    .orElseThrow(() -> new RuntimeException("Account not found"));
+            if (shards < account.getShardCount()) {
+                throw new IllegalArgumentException("Shard count can only grow");
+            }
+            for (int i = account.getShardCount(); i < shards; i++) {
+                shardRepository.save(new AccountBalanceShard(accountId, i));
+            }
+            account.setShardCount(shards);
+        });
+        // only after commit, otherwise a credit could look for shard rows that were rolled back
+        shardCounts.put(accountId, shards);
+    }
+
+    // runs in the caller's transaction; holds one shard row lock until it commits
+    public void credit(Long accountId, int shardCount, long amount) {
+        if (amount <= 0) throw new IllegalArgumentException("Deposit amount must be positive");
+        int shard = ThreadLocalRandom.current().nextInt(shardCount);
+        int updated = jdbcTemplate.update(
+                "update account_balance_shards set balance = balance + ?, version = version + 1 " +
+                        "where account_id = ? and shard_index = ?",
+                amount, accountId, shard);
+        if (updated == 0) {
+            throw new IllegalStateException("Missing balance shard " + shard + " for account " + accountId);
+        }
+        credits.increment();
+    }
+
+    // money credited to shards but not folded yet
+    public long shardBalance(Long accountId) {
+        Long total = jdbcTemplate.queryForObject(
+                "select coalesce(sum(balance), 0) from account_balance_shards where account_id = ?",
+                Long.class, accountId);
+        return total == null ? 0 : total;
+    }
+
+    // one statement, so a fold committing halfway through can't be counted twice or missed
+    public long balance(Long accountId) {
+        Long total = jdbcTemplate.queryForObject(
+                "select a.balance + coalesce((select sum(s.balance) from account_balance_shards s " +
+                        "where s.account_id = a.id), 0) from accounts a where a.id = ?",
+                Long.class, accountId);
+        return total == null ? 0 : total;
+    }
+
+    // Moves every shard's balance into the account row. Needs a transaction; locks the account
+    // row first and the shards after, the same order every debit uses.
+    public long fold(Long accountId) {
+        Account account = accountRepository.findByIdForUpdate(accountId)
+                .orElseThrow(() -> new RuntimeException("Account not found"));
+
+        Map<Integer, Long> balances = new HashMap<>();
+        jdbcTemplate.query("select shard_index, balance from account_balance_shards " +
+                        "where account_id = ? order by shard_index for update",
+                rs -> { balances.put(rs.getInt(1), rs.getLong(2)); }, accountId);
+
+        List<Object[]> args = balances.entrySet().stream()
+                .filter(e -> e.getValue() != 0)
+                .map(e -> new Object[]{e.getValue(), accountId, e.getKey()})
+                .toList();
+        if (args.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate("update account_balance_shards set balance = balance - ?, version = version + 1 " +
+                "where account_id = ? and shard_index = ?", args);
+
+        long total = args.stream().mapToLong(a -> (Long) a[0]).sum();
+        account.deposit(total);
+        folds.increment();
+        return total;
+    }
+
+    // keeps the account row close to the real balance so most debits don't need the shard total,
+    // and picks up accounts made hot on other instances
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${app.accounts.hot.foldMillis:5000}",
+            initialDelayString = "${app.accounts.hot.foldMillis:5000}")
+    public void foldAll() {
+        Map<Long, Integer> current = new HashMap<>();
+        jdbcTemplate.query("select id, shard_count from accounts where shard_count > 0",
+                rs -> { current.put(rs.getLong(1), rs.getInt(2)); });
+        shardCounts.putAll(current);
+
+        for (Long accountId : current.keySet()) {
+            transactionTemplate.executeWithoutResult(status -> fold(accountId));
+        }
+    }
+}
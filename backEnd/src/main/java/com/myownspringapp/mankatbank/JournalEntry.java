@@ -0,0 +1,25 @@
+package com.myownspringapp.mankatbank;
+
+import java.time.Instant;
+import java.util.List;
+
+// One money movement, double-entry style: every leg shares linkId and createdAt, and the legs of a
+// transfer cancel out. Build these through JournalService, which hands out link ids.
+public record JournalEntry(long linkId, Instant createdAt, List<Transaction> legs) {
+
+    static JournalEntry deposit(long linkId, Long accountId, long amount, Instant at) {
+        return new JournalEntry(linkId, at, List.of(
+                new Transaction(accountId, TransactionType.DEPOSIT, amount, at, linkId)));
+    }
+
+    static JournalEntry withdraw(long linkId, Long accountId, long amount, Instant at) {
+        return new JournalEntry(linkId, at, List.of(
+                new Transaction(accountId, TransactionType.WITHDRAW, amount, at, linkId)));
+    }
+
+    static JournalEntry transfer(long linkId, Long fromId, Long toId, long amount, Instant at) {
+        return new JournalEntry(linkId, at, List.of(
+                new Transaction(fromId, TransactionType.TRANSFER_OUT, amount, at, linkId),
+                new Transaction(toId, TransactionType.TRANSFER_IN, amount, at, linkId)));
+    }
+}
@@ -0,0 +1,78 @@
+package com.myownspringapp.mankatbank;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// Brings rows written before the journal model up to date: the old `type` varchar becomes
+// type_code, and every row gets a link_id. Legacy transfers were saved as TRANSFER_OUT immediately
+// followed by TRANSFER_IN, so an IN row whose id - 1 is an OUT of the same amount joins that OUT's
+// link; anything unpaired links to itself. Idempotent, runs in id-range chunks, and does nothing
+// once the `type` column is gone (drop it when you're happy with the result).
+@Component
+public class JournalMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalMigration.class);
+    private static final long CHUNK = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // the repository parameter only makes sure Hibernate has created the new columns first
+    public JournalMigration(JdbcTemplate jdbcTemplate, TransactionRepository transactionRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        if (!hasLegacyTypeColumn()) {
+            return;
+        }
+        Map<String, Object> range = jdbcTemplate.queryForMap(
+                "select min(id) lo, max(id) hi from transactions where type_code is null or link_id is null");
+        if (range.get("lo") == null) {
+            return;
+        }
+        long lo = ((Number) range.get("lo")).longValue();
+        long hi = ((Number) range.get("hi")).longValue();
+        log.info("Migrating transactions {}..{} to the journal model", lo, hi);
+
+        long migrated = 0;
+        for (long start = lo; start <= hi; start += CHUNK) {
+            long end = Math.min(start + CHUNK - 1, hi);
+            migrated += jdbcTemplate.update("""
+                    update transactions set type_code = case type
+                        when 'DEPOSIT' then 1 when 'WITHDRAW' then 2
+                        when 'TRANSFER_OUT' then 3 when 'TRANSFER_IN' then 4 end
+                    where type_code is null and id between ? and ?
+                    """, start, end);
+            jdbcTemplate.update("""
+                    update transactions set link_id = id
+                    where link_id is null and (type_code is null or type_code <> 4) and id between ? and ?
+                    """, start, end);
+            // the OUT at id - 1 was linked by the statement above, even at a chunk boundary
+            jdbcTemplate.update("""
+                    update transactions set link_id = (
+                        select o.link_id from transactions o
+                        where o.id = transactions.id - 1 and o.type_code = 3
+                          and o.amount = transactions.amount and o.account_id <> transactions.account_id)
+                    where link_id is null and type_code = 4 and id between ? and ?
+                    """, start, end);
+            jdbcTemplate.update("update transactions set link_id = id where link_id is null and id between ? and ?",
+                    start, end);
+        }
+        log.info("Journal migration done, {} rows got a type_code; the legacy transactions.type column can be dropped",
+                migrated);
+    }
+
+    private boolean hasLegacyTypeColumn() {
+        Integer count = jdbcTemplate.queryForObject("""
+                select count(*) from information_schema.columns
+                where lower(table_name) = 'transactions' and lower(column_name) = 'type'
+                """, Integer.class);
+        return count != null && count > 0;
+    }
+}
@@ -0,0 +1,7 @@
+package com.myownspringapp.mankatbank;
+
+import java.util.List;
+
+// published by JournalService.record(); listeners that only care about committed legs use
+// @TransactionalEventListener (AFTER_COMMIT)
+public record JournalRecordedEvent(List<Transaction> legs) {}
@@ -0,0 +1,104 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.id.NodeIdLease;
+import com.myownspringapp.mankatbank.id.TimeOrderedIds;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Builds journal entries and writes their legs. All legs of all entries passed to record() go out
+// as one saveAll, i.e. one JDBC batch with hibernate.jdbc.batch_size, and then into the activity
+// rollups in the same transaction. A JournalRecordedEvent goes out for after-commit listeners.
+@Service
+public class JournalService {
+
+    // link id = millis since 2024-01-01 (41 bits) | node (10 bits) | per-millisecond sequence (12 bits),
+    // with the node id this instance leased for its entity ids (app.ids.nodeId)
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    // one allocator per node for the whole JVM, as for entity ids: contexts sharing a database in the
+    // tests must not hand out the same link id
+    private static final Map<Long, TimeOrderedIds> NODES = new ConcurrentHashMap<>();
+
+    private final TransactionRepository transactionRepository;
+    private final ActivityRollupService rollups;
+    private final ApplicationEventPublisher events;
+    private final TimeOrderedIds linkIds;
+    private volatile boolean seeded;
+
+    public JournalService(TransactionRepository transactionRepository,
+                          ActivityRollupService rollups,
+                          ApplicationEventPublisher events,
+                          NodeIdLease nodeIdLease) {
+        this.transactionRepository = transactionRepository;
+        this.rollups = rollups;
+        this.events = events;
+        this.linkIds = NODES.computeIfAbsent((long) nodeIdLease.node(),
+                node -> new TimeOrderedIds(NODE_BITS, SEQUENCE_BITS, node));
+    }
+
+    public JournalEntry deposit(Long accountId, long amount) {
+        return deposit(accountId, amount, Instant.now());
+    }
+
+    public JournalEntry deposit(Long accountId, long amount, Instant at) {
+        return JournalEntry.deposit(nextLinkId(), accountId, amount, at);
+    }
+
+    public JournalEntry withdraw(Long accountId, long amount) {
+        return withdraw(accountId, amount, Instant.now());
+    }
+
+    public JournalEntry withdraw(Long accountId, long amount, Instant at) {
+        return JournalEntry.withdraw(nextLinkId(), accountId, amount, at);
+    }
+
+    public JournalEntry transfer(Long fromId, Long toId, long amount) {
+        return transfer(fromId, toId, amount, Instant.now());
+    }
+
+    public JournalEntry transfer(Long fromId, Long toId, long amount, Instant at) {
+        return JournalEntry.transfer(nextLinkId(), fromId, toId, amount, at);
+    }
+
+    public void record(JournalEntry entry) {
+        transactionRepository.saveAll(entry.legs());
+        rollups.apply(entry.legs());
+        events.publishEvent(new JournalRecordedEvent(entry.legs()));
+    }
+
+    public void record(Collection<JournalEntry> entries) {
+        List<Transaction> legs = new ArrayList<>(entries.size() * 2);
+        for (JournalEntry entry : entries) {
+            legs.addAll(entry.legs());
+        }
+        transactionRepository.saveAll(legs);
+        rollups.apply(legs);
+        events.publishEvent(new JournalRecordedEvent(legs));
+    }
+
+    long nextLinkId() {
+        if (!seeded) {
+            seed();
+        }
+        return linkIds.next();
+    }
+
+    // same as TimeOrderedIdGenerator: a previous run may have left link ids of this node ahead of the clock
+    private synchronized void seed() {
+        if (seeded) {
+            return;
+        }
+        for (Long linkId : transactionRepository.findLinkIdsFrom(linkIds.firstIdAt(Instant.now()))) {
+            linkIds.advancePast(linkId);
+        }
+        seeded = true;
+    }
+}
@@ -0,0 +1,13 @@
+package com.myownspringapp.mankatbank;
+
+import java.time.Instant;
+
+// same JSON shape as a Transaction, built straight from the query without an entity
+public record RecentTransaction(
+        Long id,
+        Long accountId,
+        TransactionType type,
+        long amount,
+        Instant createdAt,
+        Long linkId
+) {}
@@ -0,0 +1,38 @@
+package com.myownspringapp.mankatbank;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// Progress of ActivityRollupService's one-off backfill. The row is created once, by whichever
+// instance starts first, and fixes which legs the backfill owns: ids up to cutoffId, i.e. the legs
+// that existed before any instance counted legs as they were written. Each chunk locks the row,
+// does the accounts from nextAccount on and moves nextAccount past them in the same transaction.
+@Entity
+@Table(name = "rollup_backfills")
+public class RollupBackfill {
+
+    @Id
+    @Column(length = 30)
+    private String name;
+
+    // null when there were no legs at all
+    @Column(name = "cutoff_id")
+    private Long cutoffId;
+
+    @Column(name = "next_account", nullable = false)
+    private long nextAccount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    protected RollupBackfill() {}
+
+    public String getName() { return name; }
+    public Long getCutoffId() { return cutoffId; }
+    public long getNextAccount() { return nextAccount; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+}
@@ -0,0 +1,24 @@
+package com.myownspringapp.mankatbank;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+// periods are UTC calendar days / months
+public enum RollupGranularity {
+    DAY,
+    MONTH;
+
+    public LocalDate periodStart(Instant at) {
+        LocalDate day = LocalDate.ofInstant(at, ZoneOffset.UTC);
+        return this == DAY ? day : day.withDayOfMonth(1);
+    }
+
+    public static RollupGranularity parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("granularity must be day or month");
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.archive.TransactionArchive;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+// Writes a full statement straight from a DB cursor to the response; every row is detached
+// right after it is written, so heap use does not grow with the size of the history. Archived legs
+// go out first, one month's block at a time.
+@Service
+public class StatementExportService {
+
+    public enum Format { CSV, NDJSON }
+
+    private static final Instant END_OF_TIME = Instant.parse("9999-12-31T23:59:59Z");
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionArchive archive;
+    private final EntityManager entityManager;
+    private final TransactionTemplate exportTransaction;
+
+    public StatementExportService(TransactionRepository transactionRepository,
+                                  TransactionArchive archive,
+                                  EntityManager entityManager,
+                                  PlatformTransactionManager transactionManager) {
+        this.transactionRepository = transactionRepository;
+        this.archive = archive;
+        this.entityManager = entityManager;
+        // deliberately not read-only: the body is written on an async thread, where ReadYourWrites
+        // can't tell who is asking, and a replica read could leave out a leg the client just wrote
+        this.exportTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    public static Format parseFormat(String format) {
+        try {
+            return Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("format must be csv or ndjson");
+        }
+    }
+
+    // runs later on an MVC async thread, so it opens its own transaction for the cursor. Both bounds are
+    // inclusive, as in the history filter and balance-as-of; `upper` is the exclusive bound just past `to`
+    public StreamingResponseBody export(Long accountId, Format format, Instant from, Instant to) {
+        Instant lower = (from == null) ? Instant.EPOCH : from;
+        Instant upper = (to == null) ? END_OF_TIME : to.plusNanos(1);
+
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+            if (format == Format.CSV) {
+                writer.write("id,accountId,type,amount,createdAt,linkId\n");
+            }
+            try {
+                Instant cutoff = archive.cutoff();
+                Instant hotFrom = lower;
+                if (cutoff != null && lower.isBefore(cutoff)) {
+                    archive.forEach(accountId, lower, upper.isBefore(cutoff) ? upper : cutoff,
+                            leg -> write(writer, format, Transaction.archived(leg)));
+                    hotFrom = cutoff;
+                }
+                Instant hotLower = hotFrom;
+                exportTransaction.executeWithoutResult(status -> {
+                    try (Stream<Transaction> rows = transactionRepository.streamByAccountId(accountId, hotLower, upper)) {
+                        rows.forEach(t -> {
+                            write(writer, format, t);
+                            entityManager.detach(t);
+                        });
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            writer.flush();
+        };
+    }
+
+    private static void write(Writer writer, Format format, Transaction t) {
+        try {
+            if (format == Format.CSV) {
+                writer.write(t.getId() + "," + t.getAccountId() + "," + t.getType() + ","
+                        + t.getAmount() + "," + t.getCreatedAt() + "," + t.getLinkId() + "\n");
+            } else {
+                writer.write("{\"id\":" + t.getId() + ",\"accountId\":" + t.getAccountId()
+                        + ",\"type\":\"" + t.getType() + "\",\"amount\":" + t.getAmount()
+                        + ",\"createdAt\":\"" + t.getCreatedAt() + "\",\"linkId\":" + t.getLinkId() + "}\n");
+            }
+        } catch (IOException ex) {
+            // client went away; abort the cursor instead of reading the rest of the table
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
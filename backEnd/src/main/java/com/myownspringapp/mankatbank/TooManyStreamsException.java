@@ -0,0 +1,15 @@
+package com.myownspringapp.mankatbank;
+
+public class TooManyStreamsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyStreamsException(long retryAfterSeconds) {
+        super("Too many open streams");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,38 +1,66 @@
 package com.myownspringapp.mankatbank;
 
+import com.myownspringapp.mankatbank.archive.ArchivedLeg;
+import com.myownspringapp.mankatbank.id.TimeOrderedId;
 import jakarta.persistence.*;
 import java.time.Instant;
 
+// One leg of a JournalEntry. A transfer is two legs (TRANSFER_OUT + TRANSFER_IN) with the same
+// linkId and createdAt; deposits and withdrawals are single-leg entries.
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        // keyset pagination: WHERE account_id = ? AND (created_at, id) < (?, ?) ORDER BY created_at DESC, id DESC
+        @Index(name = "idx_transactions_account_created", columnList = "account_id, created_at, id"),
+        @Index(name = "idx_transactions_account_type_created", columnList = "account_id, type_code, created_at, id"),
+        @Index(name = "idx_transactions_link", columnList = "link_id"),
+        // balance snapshot job reads one day of legs at a time across all accounts
+        @Index(name = "idx_transactions_created", columnList = "created_at, id")
+})
 public class Transaction {
 
+    // assigned in the application, so Hibernate can batch inserts and ids follow creation time
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
 
     private Long accountId;
 
-    private String type; // "DEPOSIT" or "WITHDRAW" (we’ll improve later)
+    // smallint via TransactionTypeConverter; replaces the old free-form `type` varchar (see JournalMigration)
+    @Column(name = "type_code")
+    private TransactionType type;
 
     private long amount;
 
     private Instant createdAt;
 
+    // shared by every leg of one journal entry
+    @Column(name = "link_id")
+    private Long linkId;
+
     protected Transaction() {
         // JPA needs this
     }
 
-    public Transaction(Long accountId, String type, long amount) {
+    // legs are only built by JournalEntry
+    Transaction(Long accountId, TransactionType type, long amount, Instant createdAt, long linkId) {
         this.accountId = accountId;
         this.type = type;
         this.amount = amount;
-        this.createdAt = Instant.now();
+        this.createdAt = createdAt;
+        this.linkId = linkId;
+    }
+
+    // a leg read back from the archive tier, for callers that deal in Transactions; never persisted
+    public static Transaction archived(ArchivedLeg leg) {
+        Transaction transaction = new Transaction(leg.accountId(), leg.type(), leg.amount(), leg.createdAt(), leg.linkId());
+        transaction.id = leg.id();
+        return transaction;
     }
 
     public Long getId() { return id; }
     public Long getAccountId() { return accountId; }
-    public String getType() { return type; }
+    public TransactionType getType() { return type; }
     public long getAmount() { return amount; }
     public Instant getCreatedAt() { return createdAt; }
+    public Long getLinkId() { return linkId; }
 }
@@ -0,0 +1,12 @@
+package com.myownspringapp.mankatbank;
+
+import java.time.Instant;
+
+// all fields optional; amounts and dates are inclusive bounds
+public record TransactionFilter(
+        String type,
+        Long minAmount,
+        Long maxAmount,
+        Instant from,
+        Instant to
+) {}
@@ -0,0 +1,156 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.archive.ArchivedLeg;
+import com.myownspringapp.mankatbank.archive.TransactionArchive;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+// Newest-first keyset pagination over (accountId, createdAt, id). Each page is a bounded index range scan,
+// so page 10 000 costs the same as page 1 (unlike OFFSET paging). Legs older than the archive cutoff
+// come from TransactionArchive once the hot rows run out, so a page can span both tiers.
+@Service
+public class TransactionHistoryService {
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionArchive archive;
+    private final int maxPageSize;
+
+    public TransactionHistoryService(TransactionRepository transactionRepository,
+                                     TransactionArchive archive,
+                                     @Value("${app.transactions.maxPageSize:500}") int maxPageSize) {
+        this.transactionRepository = transactionRepository;
+        this.archive = archive;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @Transactional(readOnly = true)
+    public TransactionPage page(Long accountId, String cursor, int limit, TransactionFilter filter) {
+        if (limit <= 0 || limit > maxPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+        }
+
+        Cursor after = (cursor != null && !cursor.isBlank()) ? Cursor.decode(cursor) : null;
+        Instant cutoff = archive.cutoff();
+        Specification<Transaction> spec = matching(accountId, filter);
+        if (after != null) {
+            spec = spec.and(before(after));
+        }
+        if (cutoff != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("createdAt"), cutoff));
+        }
+
+        // fetch one extra row to know whether there is a next page without a count query
+        List<Transaction> rows = new ArrayList<>();
+        if (cutoff == null || after == null || !after.createdAt().isBefore(cutoff)) {
+            rows.addAll(transactionRepository.findBy(spec, q -> q.sortBy(NEWEST_FIRST).limit(limit + 1).all()));
+        }
+        if (cutoff != null && rows.size() <= limit) {
+            TransactionType type = (filter.type() != null && !filter.type().isBlank()) ? TransactionType.parse(filter.type()) : null;
+            Instant to = (after != null && (filter.to() == null || after.createdAt().isBefore(filter.to())))
+                    ? after.createdAt() : filter.to();
+            for (ArchivedLeg leg : archive.newest(accountId, filter.from(), to,
+                    leg -> matches(leg, type, filter, after), limit + 1 - rows.size())) {
+                rows.add(Transaction.archived(leg));
+            }
+        }
+
+        if (rows.size() <= limit) {
+            return new TransactionPage(List.copyOf(rows), null);
+        }
+        List<Transaction> items = rows.subList(0, limit);
+        Transaction last = items.get(limit - 1);
+        return new TransactionPage(List.copyOf(items), new Cursor(last.getCreatedAt(), last.getId()).encode());
+    }
+
+    // every leg of the account, archived ones first
+    @Transactional(readOnly = true)
+    public List<Transaction> all(Long accountId) {
+        Instant cutoff = archive.cutoff();
+        if (cutoff == null) {
+            return transactionRepository.findByAccountId(accountId);
+        }
+        List<Transaction> legs = new ArrayList<>();
+        archive.forEach(accountId, null, cutoff, leg -> legs.add(Transaction.archived(leg)));
+        legs.addAll(transactionRepository.findByAccountIdAndCreatedAtGreaterThanEqual(accountId, cutoff));
+        return legs;
+    }
+
+    private static Specification<Transaction> matching(Long accountId, TransactionFilter filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("accountId"), accountId));
+
+            if (filter.type() != null && !filter.type().isBlank()) {
+                predicates.add(cb.equal(root.get("type"), TransactionType.parse(filter.type())));
+            }
+            if (filter.minAmount() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("amount"), filter.minAmount()));
+            }
+            if (filter.maxAmount() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("amount"), filter.maxAmount()));
+            }
+            if (filter.from() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), filter.from()));
+            }
+            if (filter.to() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("createdAt"), filter.to()));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    // the same filter as matching() and before(), for archived legs
+    private static boolean matches(ArchivedLeg leg, TransactionType type, TransactionFilter filter, Cursor after) {
+        return (type == null || leg.type() == type)
+                && (filter.minAmount() == null || leg.amount() >= filter.minAmount())
+                && (filter.maxAmount() == null || leg.amount() <= filter.maxAmount())
+                && (after == null || leg.createdAt().isBefore(after.createdAt())
+                    || (leg.createdAt().equals(after.createdAt()) && leg.id() < after.id()));
+    }
+
+    // (createdAt, id) < (cursor.createdAt, cursor.id); the extra createdAt <= bound keeps it an index range
+    private static Specification<Transaction> before(Cursor cursor) {
+        return (root, query, cb) -> {
+            Path<Instant> createdAt = root.get("createdAt");
+            Path<Long> id = root.get("id");
+            return cb.and(
+                    cb.lessThanOrEqualTo(createdAt, cursor.createdAt()),
+                    cb.or(
+                            cb.lessThan(createdAt, cursor.createdAt()),
+                            cb.and(cb.equal(createdAt, cursor.createdAt()), cb.lessThan(id, cursor.id()))
+                    )
+            );
+        };
+    }
+
+    record Cursor(Instant createdAt, long id) {
+
+        String encode() {
+            String raw = createdAt.getEpochSecond() + ":" + createdAt.getNano() + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(":");
+                Instant createdAt = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                return new Cursor(createdAt, Long.parseLong(parts[2]));
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.myownspringapp.mankatbank;
+
+import java.util.List;
+
+// nextCursor is null on the last page
+public record TransactionPage(
+        List<Transaction> items,
+        String nextCursor
+) {}
@@ -1,9 +1,39 @@
 package com.myownspringapp.mankatbank;
 
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, JpaSpecificationExecutor<Transaction> {
 
     List<Transaction> findByAccountId(Long accountId);
+
+    List<Transaction> findByAccountIdAndCreatedAtGreaterThanEqual(Long accountId, Instant from);
+
+    @Query("select t.linkId from Transaction t where t.linkId >= :from")
+    List<Long> findLinkIdsFrom(@Param("from") long from);
+
+    // from <= createdAt < to; server-side cursor: must be consumed inside a transaction and closed afterwards
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select t from Transaction t
+            where t.accountId = :accountId and t.createdAt >= :from and t.createdAt < :to
+            order by t.createdAt, t.id
+            """)
+    Stream<Transaction> streamByAccountId(@Param("accountId") Long accountId,
+                                          @Param("from") Instant from,
+                                          @Param("to") Instant to);
 }
@@ -0,0 +1,46 @@
+package com.myownspringapp.mankatbank;
+
+// Stored as a smallint (see TransactionTypeConverter). Codes are part of the schema: never renumber,
+// only append.
+public enum TransactionType {
+    DEPOSIT(1, true),
+    WITHDRAW(2, false),
+    TRANSFER_OUT(3, false),
+    TRANSFER_IN(4, true);
+
+    // amount with the sign it has on the account's balance, for SQL sums over transactions
+    public static final String SIGNED_AMOUNT_SQL = "case when type_code in ("
+            + DEPOSIT.code + ", " + TRANSFER_IN.code + ") then amount else -amount end";
+
+    private final short code;
+    private final boolean credit;
+
+    TransactionType(int code, boolean credit) {
+        this.code = (short) code;
+        this.credit = credit;
+    }
+
+    public short code() {
+        return code;
+    }
+
+    public long signed(long amount) {
+        return credit ? amount : -amount;
+    }
+
+    public static TransactionType fromCode(short code) {
+        for (TransactionType type : values()) {
+            if (type.code == code) return type;
+        }
+        throw new IllegalStateException("Unknown transaction type code " + code);
+    }
+
+    // for request params, where a typo should be a 400 and not an empty result
+    public static TransactionType parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown transaction type: " + name);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.myownspringapp.mankatbank;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+// explicit codes instead of @Enumerated(ORDINAL), so reordering the enum can't corrupt history
+@Converter(autoApply = true)
+public class TransactionTypeConverter implements AttributeConverter<TransactionType, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(TransactionType type) {
+        return type == null ? null : type.code();
+    }
+
+    @Override
+    public TransactionType convertToEntityAttribute(Short code) {
+        return code == null ? null : TransactionType.fromCode(code);
+    }
+}
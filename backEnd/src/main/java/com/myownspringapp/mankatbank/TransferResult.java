@@ -0,0 +1,10 @@
+package com.myownspringapp.mankatbank;
+
+public record TransferResult(
+        int index,
+        Long fromId,
+        Long toId,
+        long amount,
+        boolean success,
+        String error
+) {}
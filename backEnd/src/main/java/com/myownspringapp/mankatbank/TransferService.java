@@ -0,0 +1,318 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.ledger.LedgerEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+@Service
+public class TransferService {
+
+    private final AccountRepository accountRepository;
+    private final HotAccountService hotAccounts;
+    private final JournalService journal;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerEngine ledgerEngine; // null unless app.ledger.enabled
+    private final int maxAttempts;
+    private final int maxBatchSize;
+
+    private final Counter completed;
+    private final Counter retries;
+    private final Counter conflicts;
+
+    public TransferService(AccountRepository accountRepository,
+                           HotAccountService hotAccounts,
+                           JournalService journal,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           ObjectProvider<LedgerEngine> ledgerEngine,
+                           @Value("${app.transfer.maxAttempts:5}") int maxAttempts,
+                           @Value("${app.transfer.maxBatchSize:1000}") int maxBatchSize) {
+        this.accountRepository = accountRepository;
+        this.hotAccounts = hotAccounts;
+        this.journal = journal;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ledgerEngine = ledgerEngine.getIfAvailable();
+        this.maxAttempts = maxAttempts;
+        this.maxBatchSize = maxBatchSize;
+
+        this.completed = Counter.builder("bank.transfers.completed").register(meterRegistry);
+        this.retries = Counter.builder("bank.transfers.retries")
+                .description("Attempts re-run after a lock or version conflict")
+                .register(meterRegistry);
+        this.conflicts = Counter.builder("bank.transfers.conflicts")
+                .description("Transfers that gave up after maxAttempts conflicts")
+                .register(meterRegistry);
+    }
+
+    public void transfer(Long userId, Long fromId, Long toId, long amount) {
+        transfer(userId, fromId, toId, amount, () -> {});
+    }
+
+    // inTransaction runs in the transfer's DB transaction (again on each retry); the Idempotency-Key
+    // response is stored through it. With the ledger engine there is no such transaction and no key
+    // (IdempotencyService refuses them), so it just runs after the engine accepted the transfer.
+    public void transfer(Long userId, Long fromId, Long toId, long amount, Runnable inTransaction) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive");
+        }
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+
+        if (ledgerEngine != null) {
+            requireOwnedSource(userId, fromId);
+            ledgerEngine.transfer(fromId, toId, amount);
+            inTransaction.run();
+            completed.increment();
+            return;
+        }
+
+        inRetryingTransaction(() -> {
+            applyTransfer(userId, fromId, toId, amount);
+            inTransaction.run();
+            return null;
+        });
+        completed.increment();
+    }
+
+    // Applies a whole payroll-style batch in one transaction: one ownership query, one locking query,
+    // and the Transaction rows go out as JDBC batch inserts. Bad items are reported, not fatal.
+    public List<TransferResult> transferBatch(Long userId, List<TransferRequest> requests) {
+        return transferBatch(userId, requests, results -> {});
+    }
+
+    public List<TransferResult> transferBatch(Long userId, List<TransferRequest> requests,
+                                              Consumer<List<TransferResult>> inTransaction) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("At least one transfer is required");
+        }
+        if (requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch is limited to " + maxBatchSize + " transfers");
+        }
+
+        List<TransferResult> results;
+        if (ledgerEngine != null) {
+            results = applyBatchOnLedger(userId, requests);
+            inTransaction.accept(results);
+        } else {
+            results = inRetryingTransaction(() -> {
+                List<TransferResult> applied = applyBatch(userId, requests);
+                inTransaction.accept(applied);
+                return applied;
+            });
+        }
+        completed.increment(results.stream().filter(TransferResult::success).count());
+        return results;
+    }
+
+    // each attempt is its own transaction, so a conflict rolls back cleanly before we try again
+    private <T> T inRetryingTransaction(Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (ConcurrencyFailureException ex) {
+                if (attempt >= maxAttempts) {
+                    conflicts.increment();
+                    throw new RuntimeException("Transfer conflict, please retry", ex);
+                }
+                retries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private List<TransferResult> applyBatch(Long userId, List<TransferRequest> requests) {
+        Set<Long> sourceIds = new HashSet<>();
+        Set<Long> lockIds = new HashSet<>();
+        for (TransferRequest request : requests) {
+            if (request.fromId() != null) sourceIds.add(request.fromId());
+            // hot destinations are credited through their shards, their row stays unlocked
+            if (request.toId() != null && hotAccounts.shardCount(request.toId()) == 0) lockIds.add(request.toId());
+        }
+
+        // only lock what this user may debit plus the destinations, in id order like single transfers
+        Set<Long> owned = new HashSet<>(accountRepository.findOwnedIds(userId, sourceIds));
+        lockIds.addAll(owned);
+
+        Map<Long, Account> accounts = new HashMap<>();
+        for (Account account : accountRepository.findAllByIdForUpdate(lockIds)) {
+            accounts.put(account.getId(), account);
+        }
+
+        List<TransferResult> results = new ArrayList<>(requests.size());
+        List<JournalEntry> entries = new ArrayList<>(requests.size());
+        // one shard credit per hot account, applied in id order so two batches can't deadlock on shards
+        Map<Long, Long> shardCredits = new TreeMap<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            String error = applyBatchItem(request, owned, accounts, shardCredits, entries);
+            results.add(new TransferResult(i, request.fromId(), request.toId(), request.amount(), error == null, error));
+        }
+
+        shardCredits.forEach((accountId, amount) ->
+                hotAccounts.credit(accountId, hotAccounts.shardCount(accountId), amount));
+        journal.record(entries);
+        return results;
+    }
+
+    // Same per-item answers as applyBatch, but each item is its own ledger command. All of them are
+    // submitted before we wait, so the batch shares group commits instead of paying one fsync per item.
+    private List<TransferResult> applyBatchOnLedger(Long userId, List<TransferRequest> requests) {
+        Set<Long> sourceIds = new HashSet<>();
+        for (TransferRequest request : requests) {
+            if (request.fromId() != null) sourceIds.add(request.fromId());
+        }
+        Set<Long> owned = new HashSet<>(accountRepository.findOwnedIds(userId, sourceIds));
+
+        List<CompletableFuture<Long>> pending = new ArrayList<>(requests.size());
+        for (TransferRequest request : requests) {
+            String error = validateBatchItem(request, owned);
+            pending.add(error != null
+                    ? CompletableFuture.failedFuture(new IllegalArgumentException(error))
+                    : ledgerEngine.transferAsync(request.fromId(), request.toId(), request.amount()));
+        }
+
+        List<TransferResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            String error = null;
+            try {
+                LedgerEngine.await(pending.get(i));
+            } catch (IllegalArgumentException ex) {
+                error = ex.getMessage();
+            }
+            results.add(new TransferResult(i, request.fromId(), request.toId(), request.amount(), error == null, error));
+        }
+        return results;
+    }
+
+    private String validateBatchItem(TransferRequest request, Set<Long> owned) {
+        if (request.fromId() == null || request.toId() == null) {
+            return "fromId and toId are required";
+        }
+        if (request.amount() <= 0) {
+            return "Transfer amount must be positive";
+        }
+        if (request.fromId().equals(request.toId())) {
+            return "Cannot transfer to the same account";
+        }
+        if (!owned.contains(request.fromId())) {
+            // unknown and foreign source accounts get the same answer
+            return "Forbidden";
+        }
+        return null;
+    }
+
+    private String applyBatchItem(TransferRequest request, Set<Long> owned, Map<Long, Account> accounts,
+                                  Map<Long, Long> shardCredits, List<JournalEntry> entries) {
+        String invalid = validateBatchItem(request, owned);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        Account from = accounts.get(request.fromId());
+        Account to = accounts.get(request.toId());
+        boolean hotTo = to == null && hotAccounts.shardCount(request.toId()) > 0;
+        if (to == null && !hotTo) {
+            return "To account not found";
+        }
+        try {
+            debit(from, request.amount());
+        } catch (IllegalArgumentException ex) {
+            return ex.getMessage();
+        }
+
+        if (hotTo) {
+            shardCredits.merge(request.toId(), request.amount(), Long::sum);
+        } else {
+            to.deposit(request.amount());
+        }
+
+        entries.add(journal.transfer(request.fromId(), request.toId(), request.amount()));
+        return null;
+    }
+
+    private void applyTransfer(Long userId, Long fromId, Long toId, long amount) {
+        int toShards = hotAccounts.shardCount(toId);
+        if (toShards > 0) {
+            // hot destination: only the source row is locked, the credit lands on a random shard
+            Account from = lock(fromId, fromId);
+            if (from.getUser() == null || !from.getUser().getId().equals(userId)) {
+                throw new RuntimeException("Forbidden");
+            }
+            debit(from, amount);
+            hotAccounts.credit(toId, toShards, amount);
+
+            journal.record(journal.transfer(fromId, toId, amount));
+            return;
+        }
+
+        // always lock the lower id first so two opposite transfers can't deadlock each other
+        Account first = lock(Math.min(fromId, toId), fromId);
+        Account second = lock(Math.max(fromId, toId), fromId);
+
+        Account from = fromId.equals(first.getId()) ? first : second;
+        Account to = fromId.equals(first.getId()) ? second : first;
+
+        if (from.getUser() == null || !from.getUser().getId().equals(userId)) {
+            throw new RuntimeException("Forbidden");
+        }
+
+        // for now allow transfer into any existing account
+        debit(from, amount);
+        to.deposit(amount);
+
+        journal.record(journal.transfer(fromId, toId, amount));
+    }
+
+    // caller holds the row lock, so a hot source's shards can only grow while we look at them
+    private void debit(Account from, long amount) {
+        if (from.isHot()) {
+            from.withdraw(amount, hotAccounts.shardBalance(from.getId()));
+        } else {
+            from.withdraw(amount);
+        }
+    }
+
+    private void requireOwnedSource(Long userId, Long fromId) {
+        if (accountRepository.findOwnedIds(userId, List.of(fromId)).isEmpty()) {
+            if (!accountRepository.existsById(fromId)) {
+                throw new RuntimeException("Account not found");
+            }
+            throw new RuntimeException("Forbidden");
+        }
+    }
+
+    private Account lock(Long id, Long fromId) {
+        return accountRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new RuntimeException(id.equals(fromId) ? "Account not found" : "To account not found"));
+    }
+
+    private void backoff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Transfer interrupted", e);
+        }
+    }
+}
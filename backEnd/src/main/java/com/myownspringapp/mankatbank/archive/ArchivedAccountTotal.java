@@ -0,0 +1,26 @@
+package com.myownspringapp.mankatbank.archive;
+
+import jakarta.persistence.*;
+
+// Signed sum and count of an account's legs whose hot rows have been dropped, so the balance check
+// (reconciliation) doesn't have to read the archive. Written with plain JDBC in the purge transaction.
+@Entity
+@Table(name = "account_archived_totals")
+public class ArchivedAccountTotal {
+
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Column(name = "signed_sum", nullable = false)
+    private long signedSum;
+
+    @Column(name = "leg_count", nullable = false)
+    private long legCount;
+
+    protected ArchivedAccountTotal() {}
+
+    public Long getAccountId() { return accountId; }
+    public long getSignedSum() { return signedSum; }
+    public long getLegCount() { return legCount; }
+}
@@ -0,0 +1,9 @@
+package com.myownspringapp.mankatbank.archive;
+
+import com.myownspringapp.mankatbank.TransactionType;
+
+import java.time.Instant;
+
+// A journal leg as kept in the archive tier; same fields as Transaction.
+public record ArchivedLeg(long id, long accountId, TransactionType type, long amount, Instant createdAt, long linkId) {
+}
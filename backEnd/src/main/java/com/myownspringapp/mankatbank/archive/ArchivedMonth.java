@@ -0,0 +1,56 @@
+package com.myownspringapp.mankatbank.archive;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+// Catalog of the archive tier: one row per archived UTC month. Its legs are read from `fileName`
+// from archivedAt on, and their hot rows are dropped once purgedAt is set.
+@Entity
+@Table(name = "transaction_archive")
+public class ArchivedMonth {
+
+    // first day of the month
+    @Id
+    @Column(name = "period_start")
+    private LocalDate periodStart;
+
+    @Column(name = "file_name", nullable = false, length = 100)
+    private String fileName;
+
+    @Column(name = "leg_count", nullable = false)
+    private long legCount;
+
+    @Column(name = "account_count", nullable = false)
+    private int accountCount;
+
+    @Column(name = "file_bytes", nullable = false)
+    private long fileBytes;
+
+    @Column(name = "archived_at", nullable = false)
+    private Instant archivedAt;
+
+    @Column(name = "purged_at")
+    private Instant purgedAt;
+
+    protected ArchivedMonth() {}
+
+    public ArchivedMonth(LocalDate periodStart, String fileName, long legCount, int accountCount, long fileBytes,
+                         Instant archivedAt) {
+        this.periodStart = periodStart;
+        this.fileName = fileName;
+        this.legCount = legCount;
+        this.accountCount = accountCount;
+        this.fileBytes = fileBytes;
+        this.archivedAt = archivedAt;
+    }
+
+    public LocalDate getPeriodStart() { return periodStart; }
+    public String getFileName() { return fileName; }
+    public long getLegCount() { return legCount; }
+    public int getAccountCount() { return accountCount; }
+    public long getFileBytes() { return fileBytes; }
+    public Instant getArchivedAt() { return archivedAt; }
+    public Instant getPurgedAt() { return purgedAt; }
+}
@@ -0,0 +1,20 @@
+package com.myownspringapp.mankatbank.archive;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ArchivedMonthRepository extends JpaRepository<ArchivedMonth, LocalDate> {
+
+    List<ArchivedMonth> findAllByOrderByPeriodStart();
+
+    // the purge claim: only one instance gets 1 back for a month
+    @Modifying
+    @Query("update ArchivedMonth m set m.purgedAt = :at where m.periodStart = :periodStart and m.purgedAt is null")
+    int markPurged(@Param("periodStart") LocalDate periodStart, @Param("at") Instant at);
+}
@@ -0,0 +1,295 @@
+package com.myownspringapp.mankatbank.archive;
+
+import com.myownspringapp.mankatbank.TransactionType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// One month of journal legs, read-only once written, memory-mapped for reading.
+//
+// On disk: a 32-byte header (magic, legs, accounts, directory offset), then one deflated block per
+// account, then a directory of fixed-size entries sorted by account id, so finding an account is a
+// binary search over the mapping and reading it inflates only that account's block. Inside a block
+// the legs are ordered by (createdAt, id) and stored column by column: id, createdAt (epoch nanos)
+// and linkId as zigzag deltas, then type codes, then amounts, all as varints.
+public final class SegmentFile {
+
+    private static final long MAGIC = 0x4d4b415243485631L; // "MKARCHV1"
+    private static final int HEADER_SIZE = 32;
+    // accountId, offset, compressed length, raw length, legs, signed sum, crc
+    private static final int ENTRY_SIZE = 8 + 8 + 4 + 4 + 4 + 8 + 4;
+
+    // per account, for checking the hot rows before they are dropped and for the archived totals
+    public record AccountTotal(long accountId, int legs, long signedSum) {}
+
+    private final Path file;
+    private final MappedByteBuffer map;
+    private final long legs;
+    private final int accounts;
+    private final int directory;
+
+    private SegmentFile(Path file, MappedByteBuffer map, long legs, int accounts, int directory) {
+        this.file = file;
+        this.map = map;
+        this.legs = legs;
+        this.accounts = accounts;
+        this.directory = directory;
+    }
+
+    public static SegmentFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not an archive segment: " + file);
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            long legs = map.getLong(8);
+            int accounts = map.getInt(16);
+            long directory = map.getLong(24);
+            if (map.getLong(0) != MAGIC || directory + (long) accounts * ENTRY_SIZE != size) {
+                throw new IOException("Not an archive segment, or an incomplete one: " + file);
+            }
+            return new SegmentFile(file, map, legs, accounts, (int) directory);
+        }
+    }
+
+    public long legCount() {
+        return legs;
+    }
+
+    public int accountCount() {
+        return accounts;
+    }
+
+    // oldest first; empty if the account has no legs in this segment
+    public List<ArchivedLeg> legs(long accountId) {
+        int lo = 0;
+        int hi = accounts - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long id = map.getLong(entry(mid));
+            if (id < accountId) lo = mid + 1;
+            else if (id > accountId) hi = mid - 1;
+            else return decode(mid);
+        }
+        return List.of();
+    }
+
+    public List<AccountTotal> totals() {
+        List<AccountTotal> totals = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            int entry = entry(i);
+            totals.add(new AccountTotal(map.getLong(entry), map.getInt(entry + 24), map.getLong(entry + 28)));
+        }
+        return totals;
+    }
+
+    private int entry(int index) {
+        return directory + index * ENTRY_SIZE;
+    }
+
+    private List<ArchivedLeg> decode(int index) {
+        int entry = entry(index);
+        long accountId = map.getLong(entry);
+        int offset = (int) map.getLong(entry + 8);
+        int compressed = map.getInt(entry + 16);
+        int raw = map.getInt(entry + 20);
+        int count = map.getInt(entry + 24);
+        int crc = map.getInt(entry + 36);
+
+        ByteBuffer block = map.slice(offset, compressed);
+        CRC32 check = new CRC32();
+        check.update(block.duplicate());
+        if ((int) check.getValue() != crc) {
+            throw new IllegalStateException("Corrupt block for account " + accountId + " in " + file);
+        }
+        byte[] bytes = new byte[raw];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(block);
+            if (inflater.inflate(bytes) != raw) {
+                throw new IllegalStateException("Short block for account " + accountId + " in " + file);
+            }
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Corrupt block for account " + accountId + " in " + file, ex);
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        long[] ids = new long[count];
+        long[] nanos = new long[count];
+        long[] links = new long[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) ids[i] = previous += readZigzag(in);
+        previous = 0;
+        for (int i = 0; i < count; i++) nanos[i] = previous += readZigzag(in);
+        previous = 0;
+        for (int i = 0; i < count; i++) links[i] = previous += readZigzag(in);
+        TransactionType[] types = new TransactionType[count];
+        for (int i = 0; i < count; i++) types[i] = TransactionType.fromCode(in.get());
+
+        List<ArchivedLeg> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new ArchivedLeg(ids[i], accountId, types[i], readZigzag(in),
+                    Instant.ofEpochSecond(0, nanos[i]), links[i]));
+        }
+        return result;
+    }
+
+    // Streams legs into a new segment; they must arrive ordered by (accountId, createdAt, id).
+    // Nothing is readable until finish() has written the directory and header and fsynced.
+    public static final class Writer implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteArrayOutputStream directory = new ByteArrayOutputStream();
+        private final List<ArchivedLeg> current = new ArrayList<>();
+        private final Deflater deflater = new Deflater();
+        private long position = HEADER_SIZE;
+        private long legs;
+        private int accounts;
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        public static Writer create(Path file) throws IOException {
+            return new Writer(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE));
+        }
+
+        public void add(ArchivedLeg leg) throws IOException {
+            if (!current.isEmpty() && current.get(0).accountId() != leg.accountId()) {
+                if (leg.accountId() < current.get(0).accountId()) {
+                    throw new IllegalArgumentException("Legs must be ordered by account id");
+                }
+                flush();
+            }
+            current.add(leg);
+        }
+
+        public long legCount() {
+            return legs + current.size();
+        }
+
+        public int accountCount() {
+            return accounts + (current.isEmpty() ? 0 : 1);
+        }
+
+        // returns the file size
+        public long finish() throws IOException {
+            flush();
+            byte[] entries = directory.toByteArray();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putLong(MAGIC).putLong(legs).putInt(accounts).putInt(0).putLong(position).flip();
+            write(ByteBuffer.wrap(entries), position);
+            write(header, 0);
+            channel.force(true);
+            return position + entries.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            channel.close();
+        }
+
+        private void flush() throws IOException {
+            if (current.isEmpty()) {
+                return;
+            }
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(current.size() * 16);
+            long signedSum = 0;
+            long previous = 0;
+            for (ArchivedLeg leg : current) {
+                writeZigzag(raw, leg.id() - previous);
+                previous = leg.id();
+            }
+            previous = 0;
+            for (ArchivedLeg leg : current) {
+                long nanos = Math.addExact(Math.multiplyExact(leg.createdAt().getEpochSecond(), 1_000_000_000L),
+                        leg.createdAt().getNano());
+                writeZigzag(raw, nanos - previous);
+                previous = nanos;
+            }
+            previous = 0;
+            for (ArchivedLeg leg : current) {
+                writeZigzag(raw, leg.linkId() - previous);
+                previous = leg.linkId();
+            }
+            for (ArchivedLeg leg : current) {
+                raw.write(leg.type().code());
+            }
+            for (ArchivedLeg leg : current) {
+                writeZigzag(raw, leg.amount());
+                signedSum += leg.type().signed(leg.amount());
+            }
+
+            byte[] input = raw.toByteArray();
+            deflater.reset();
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(input.length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+            byte[] block = compressed.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(block);
+
+            write(ByteBuffer.wrap(block), position);
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE)
+                    .putLong(current.get(0).accountId()).putLong(position).putInt(block.length).putInt(input.length)
+                    .putInt(current.size()).putLong(signedSum).putInt((int) crc.getValue());
+            directory.write(entry.array(), 0, ENTRY_SIZE);
+
+            position += block.length;
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException("Archive segment over 2 GB; archive smaller periods");
+            }
+            legs += current.size();
+            accounts++;
+            current.clear();
+        }
+
+        private void write(ByteBuffer buffer, long at) throws IOException {
+            while (buffer.hasRemaining()) {
+                at += channel.write(buffer, at);
+            }
+        }
+    }
+
+    private static void writeZigzag(ByteArrayOutputStream out, long value) {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readZigzag(ByteBuffer in) {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
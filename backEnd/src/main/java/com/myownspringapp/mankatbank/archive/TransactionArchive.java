@@ -0,0 +1,379 @@
+package com.myownspringapp.mankatbank.archive;
+
+import com.myownspringapp.mankatbank.BalanceSnapshotRepository;
+import com.myownspringapp.mankatbank.TransactionType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// Cold tier of the journal. Whole UTC months older than app.archive.afterMonths, and already covered
+// by the daily balance snapshots, are written to one SegmentFile each under app.archive.dir and
+// recorded in transaction_archive. From then on legs before cutoff() are read from the segments and
+// only the rest from the hot table.
+//
+// The hot rows stay until purgeGrace after archiving, so every instance has reloaded the catalog
+// (refreshMillis) before they go; until then an instance with an older catalog still finds them in
+// the hot table. They are dropped (a partition drop on Postgres, see TransactionPartitions) in the
+// same transaction that adds the month to account_archived_totals. The directory has to be shared
+// by all instances.
+@Service
+public class TransactionArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionArchive.class);
+
+    private static final String MONTH_LEGS = """
+            select id, account_id, type_code, amount, created_at, link_id from transactions
+            where created_at >= ? and created_at < ? order by account_id, created_at, id
+            """;
+    private static final String MONTH_TOTALS = "select account_id, count(*), sum(" + TransactionType.SIGNED_AMOUNT_SQL
+            + ") from transactions where created_at >= ? and created_at < ? group by account_id";
+
+    // the archived months by first day, and the end of the newest one
+    private record Catalog(NavigableMap<LocalDate, ArchivedMonth> months, Instant cutoff) {}
+
+    private final ArchivedMonthRepository archivedMonths;
+    private final BalanceSnapshotRepository snapshots;
+    private final TransactionPartitions partitions;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final Path dir;
+    private final boolean enabled;
+    private final int afterMonths;
+    private final Duration purgeGrace;
+    private final int fetchSize;
+
+    private volatile Catalog catalog = new Catalog(new TreeMap<>(), null);
+    private final Map<LocalDate, SegmentFile> segments = new ConcurrentHashMap<>();
+
+    private final Counter archived;
+    private final Counter purged;
+    private final Counter reads;
+
+    public TransactionArchive(ArchivedMonthRepository archivedMonths,
+                              BalanceSnapshotRepository snapshots,
+                              TransactionPartitions partitions,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.archive.dir:./data/archive}") Path dir,
+                              @Value("${app.archive.enabled:false}") boolean enabled,
+                              @Value("${app.archive.afterMonths:12}") int afterMonths,
+                              @Value("${app.archive.purgeGrace:PT10M}") Duration purgeGrace,
+                              @Value("${app.archive.fetchSize:5000}") int fetchSize) {
+        if (afterMonths < 1) {
+            throw new IllegalArgumentException("app.archive.afterMonths must be at least 1");
+        }
+        this.archivedMonths = archivedMonths;
+        this.snapshots = snapshots;
+        this.partitions = partitions;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.readTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.dir = dir;
+        this.enabled = enabled;
+        this.afterMonths = afterMonths;
+        this.purgeGrace = purgeGrace;
+        this.fetchSize = fetchSize;
+
+        this.archived = Counter.builder("bank.archive.archived")
+                .description("legs written to archive segments").register(meterRegistry);
+        this.purged = Counter.builder("bank.archive.purged")
+                .description("hot legs dropped after archiving").register(meterRegistry);
+        this.reads = Counter.builder("bank.archive.reads")
+                .description("account blocks read from archive segments").register(meterRegistry);
+        Gauge.builder("bank.archive.months", this, a -> a.catalog.months().size()).register(meterRegistry);
+    }
+
+    // picks up months archived by other instances
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${app.archive.refreshMillis:60000}",
+            initialDelayString = "${app.archive.refreshMillis:60000}")
+    public void refresh() {
+        NavigableMap<LocalDate, ArchivedMonth> months = new TreeMap<>();
+        for (ArchivedMonth month : archivedMonths.findAllByOrderByPeriodStart()) {
+            months.put(month.getPeriodStart(), month);
+        }
+        Instant cutoff = months.isEmpty() ? null : end(months.lastKey());
+        catalog = new Catalog(months, cutoff);
+    }
+
+    @PreDestroy
+    public void close() {
+        segments.clear();
+    }
+
+    // legs created before this are read from the archive; null while nothing is archived
+    public Instant cutoff() {
+        return catalog.cutoff();
+    }
+
+    // the account's legs with from <= createdAt < until, oldest first, one month in memory at a
+    // time; null bounds are open
+    public void forEach(long accountId, Instant from, Instant until, Consumer<ArchivedLeg> action) {
+        for (ArchivedMonth month : catalog.months().values()) {
+            Instant start = start(month.getPeriodStart());
+            if (until != null && !start.isBefore(until)) break;
+            if (from != null && !end(month.getPeriodStart()).isAfter(from)) continue;
+            for (ArchivedLeg leg : read(month, accountId)) {
+                if ((from == null || !leg.createdAt().isBefore(from)) && (until == null || leg.createdAt().isBefore(until))) {
+                    action.accept(leg);
+                }
+            }
+        }
+    }
+
+    public List<ArchivedLeg> legs(long accountId, Instant from, Instant until) {
+        List<ArchivedLeg> legs = new ArrayList<>();
+        forEach(accountId, from, until, legs::add);
+        return legs;
+    }
+
+    // up to `limit` of the account's legs with from <= createdAt <= to that match, newest first
+    public List<ArchivedLeg> newest(long accountId, Instant from, Instant to, Predicate<ArchivedLeg> matches, int limit) {
+        List<ArchivedLeg> result = new ArrayList<>();
+        for (ArchivedMonth month : catalog.months().descendingMap().values()) {
+            if (result.size() >= limit) break;
+            if (from != null && !end(month.getPeriodStart()).isAfter(from)) break;
+            if (to != null && start(month.getPeriodStart()).isAfter(to)) continue;
+            List<ArchivedLeg> legs = read(month, accountId);
+            for (int i = legs.size() - 1; i >= 0 && result.size() < limit; i--) {
+                ArchivedLeg leg = legs.get(i);
+                if ((from == null || !leg.createdAt().isBefore(from)) && (to == null || !leg.createdAt().isAfter(to))
+                        && matches.test(leg)) {
+                    result.add(leg);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${app.archive.intervalMillis:86400000}",
+            initialDelayString = "${app.archive.initialDelayMillis:3600000}")
+    public void scheduled() {
+        if (enabled) {
+            run(Instant.now());
+        }
+    }
+
+    // archives every due month, then purges the hot rows of those archived more than purgeGrace ago
+    public synchronized void run(Instant now) {
+        refresh();
+        int months = archiveDue(now);
+        int dropped = purgeDue(now);
+        if (months > 0 || dropped > 0) {
+            log.info("Archived {} months, purged the hot rows of {}", months, dropped);
+        }
+    }
+
+    private int archiveDue(Instant now) {
+        YearMonth limit = YearMonth.from(now.atZone(ZoneOffset.UTC)).minusMonths(afterMonths);
+        Instant watermark = snapshots.findWatermark().orElse(null);
+        Instant cutoff = catalog.cutoff();
+        Timestamp first = (cutoff == null)
+                ? jdbcTemplate.queryForObject("select min(created_at) from transactions", Timestamp.class)
+                : jdbcTemplate.queryForObject("select min(created_at) from transactions where created_at >= ?",
+                Timestamp.class, Timestamp.from(cutoff));
+        if (first == null || watermark == null) {
+            return 0;
+        }
+
+        int count = 0;
+        // only months the balance snapshots already cover, so balances as of any day stay answerable
+        for (YearMonth month = YearMonth.from(first.toInstant().atZone(ZoneOffset.UTC));
+             month.isBefore(limit) && !end(month.atDay(1)).isAfter(watermark);
+             month = month.plusMonths(1)) {
+            if (archiveMonth(month)) count++;
+        }
+        refresh();
+        return count;
+    }
+
+    private boolean archiveMonth(YearMonth month) {
+        String fileName = String.format("transactions-%04d-%02d-%d.seg", month.getYear(), month.getMonthValue(),
+                System.currentTimeMillis());
+        Path file = dir.resolve(fileName);
+        Path partial = dir.resolve(fileName + ".tmp");
+        Instant from = start(month.atDay(1));
+        Instant until = end(month.atDay(1));
+        long legs;
+        int accounts;
+        long bytes;
+        try {
+            Files.createDirectories(dir);
+            try (SegmentFile.Writer writer = SegmentFile.Writer.create(partial)) {
+                // one snapshot of the month, streamed through a cursor
+                readTransaction.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+                    PreparedStatement statement = con.prepareStatement(MONTH_LEGS);
+                    statement.setFetchSize(fetchSize);
+                    statement.setTimestamp(1, Timestamp.from(from));
+                    statement.setTimestamp(2, Timestamp.from(until));
+                    return statement;
+                }, rs -> {
+                    try {
+                        writer.add(new ArchivedLeg(rs.getLong(1), rs.getLong(2), TransactionType.fromCode(rs.getShort(3)),
+                                rs.getLong(4), rs.getTimestamp(5).toInstant(), rs.getLong(6)));
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }));
+                legs = writer.legCount();
+                accounts = writer.accountCount();
+                bytes = (legs == 0) ? 0 : writer.finish();
+            }
+            if (legs == 0) {
+                Files.delete(partial);
+                return false;
+            }
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UncheckedIOException ex) {
+            throw new IllegalStateException("Could not write archive segment " + file, ex);
+        }
+
+        try {
+            jdbcTemplate.update("""
+                    insert into transaction_archive (period_start, file_name, leg_count, account_count, file_bytes, archived_at)
+                    values (?, ?, ?, ?, ?, ?)
+                    """, month.atDay(1), fileName, legs, accounts, bytes, Timestamp.from(Instant.now()));
+        } catch (DuplicateKeyException ex) {
+            log.info("{} was archived by another instance meanwhile", month);
+            deleteQuietly(file);
+            return false;
+        }
+        archived.increment(legs);
+        log.info("Archived {}: {} legs of {} accounts in {} KB", month, legs, accounts, bytes >> 10);
+        return true;
+    }
+
+    private int purgeDue(Instant now) {
+        int count = 0;
+        for (ArchivedMonth month : catalog.months().values()) {
+            if (month.getPurgedAt() == null && !month.getArchivedAt().plus(purgeGrace).isAfter(now) && purge(month, now)) {
+                count++;
+            }
+        }
+        refresh();
+        return count;
+    }
+
+    private boolean purge(ArchivedMonth month, Instant now) {
+        YearMonth period = YearMonth.from(month.getPeriodStart());
+        SegmentFile segment = segment(month);
+        Boolean done = writeTransaction.execute(status -> {
+            if (archivedMonths.markPurged(month.getPeriodStart(), now) != 1) {
+                return false;
+            }
+            // the rows about to go have to be exactly what the segment holds
+            Map<Long, long[]> hot = new HashMap<>();
+            jdbcTemplate.query(MONTH_TOTALS, rs -> {
+                hot.put(rs.getLong(1), new long[]{rs.getLong(2), rs.getLong(3)});
+            }, Timestamp.from(start(month.getPeriodStart())), Timestamp.from(end(month.getPeriodStart())));
+            List<SegmentFile.AccountTotal> totals = segment.totals();
+            boolean same = hot.size() == totals.size() && totals.stream().allMatch(t -> {
+                long[] h = hot.get(t.accountId());
+                return h != null && h[0] == t.legs() && h[1] == t.signedSum();
+            });
+            if (!same) {
+                throw new IllegalStateException("Hot legs of " + period + " no longer match " + month.getFileName()
+                        + "; not purging");
+            }
+
+            addTotals(totals);
+            int dropped = partitions.drop(period);
+            if (dropped != segment.legCount()) {
+                throw new IllegalStateException("Dropped " + dropped + " hot legs of " + period + " but "
+                        + month.getFileName() + " holds " + segment.legCount());
+            }
+            purged.increment(dropped);
+            return true;
+        });
+        return Boolean.TRUE.equals(done);
+    }
+
+    private void addTotals(List<SegmentFile.AccountTotal> totals) {
+        List<Object[]> args = new ArrayList<>(totals.size());
+        for (SegmentFile.AccountTotal t : totals) {
+            args.add(new Object[]{t.signedSum(), t.legs(), t.accountId()});
+        }
+        int[] updated = jdbcTemplate.batchUpdate("update account_archived_totals set signed_sum = signed_sum + ?, "
+                + "leg_count = leg_count + ? where account_id = ?", args);
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                SegmentFile.AccountTotal t = totals.get(i);
+                missing.add(new Object[]{t.accountId(), t.signedSum(), t.legs()});
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into account_archived_totals (account_id, signed_sum, leg_count) values (?, ?, ?)",
+                missing);
+    }
+
+    private List<ArchivedLeg> read(ArchivedMonth month, long accountId) {
+        List<ArchivedLeg> legs = segment(month).legs(accountId);
+        if (!legs.isEmpty()) reads.increment();
+        return legs;
+    }
+
+    private SegmentFile segment(ArchivedMonth month) {
+        return segments.computeIfAbsent(month.getPeriodStart(), start -> {
+            Path file = dir.resolve(month.getFileName());
+            try {
+                return SegmentFile.open(file);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not open archive segment " + file, ex);
+            }
+        });
+    }
+
+    private static Instant start(LocalDate month) {
+        return month.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static Instant end(LocalDate month) {
+        return month.plusMonths(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("Could not delete {}", file, ex);
+        }
+    }
+}
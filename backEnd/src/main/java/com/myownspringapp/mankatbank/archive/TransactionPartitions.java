@@ -0,0 +1,159 @@
+package com.myownspringapp.mankatbank.archive;
+
+import com.myownspringapp.mankatbank.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+// On Postgres, transactions is range-partitioned on created_at with one partition per UTC month
+// (transactions_p2024_01), created app.archive.partitionsAhead months ahead, plus a default
+// partition. Purging an archived month drops its partition, so the hot table and its indexes stay
+// the same size however many years of history there are.
+//
+// An existing unpartitioned table is converted once at startup: it becomes transactions_legacy, a
+// partition holding everything before next month; months inside it are purged with a DELETE. The
+// unique index and the range check the attach needs are built first without blocking writers.
+// Other databases (H2 in the tests) keep a plain table and purging is always a DELETE.
+@Component
+public class TransactionPartitions {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionPartitions.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final boolean postgres;
+
+    // the repository parameter only makes sure Hibernate has created the table first
+    public TransactionPartitions(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 TransactionRepository transactionRepository,
+                                 @Value("${app.archive.partitioning:true}") boolean enabled,
+                                 @Value("${app.archive.partitionsAhead:3}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+        this.postgres = "PostgreSQL".equals(jdbcTemplate.execute(
+                (ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName()));
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${app.archive.partitionMillis:86400000}",
+            initialDelayString = "${app.archive.partitionMillis:86400000}")
+    public void maintain() {
+        if (!enabled || !postgres) {
+            return;
+        }
+        if (!partitioned()) {
+            convert();
+        }
+        YearMonth month = YearMonth.now(ZoneOffset.UTC);
+        for (int i = 0; i <= monthsAhead; i++) {
+            create(month.plusMonths(i));
+        }
+    }
+
+    // Runs inside the caller's transaction. Returns how many hot legs went.
+    public int drop(YearMonth month) {
+        String partition = name(month);
+        if (postgres && partitioned() && exists(partition)) {
+            Integer legs = jdbcTemplate.queryForObject("select count(*) from " + partition, Integer.class);
+            jdbcTemplate.execute("alter table transactions detach partition " + partition);
+            jdbcTemplate.execute("drop table " + partition);
+            log.info("Dropped partition {} ({} legs)", partition, legs);
+            return legs == null ? 0 : legs;
+        }
+        return jdbcTemplate.update("delete from transactions where created_at >= ? and created_at < ?",
+                Timestamp.from(start(month)), Timestamp.from(start(month.plusMonths(1))));
+    }
+
+    static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static String name(YearMonth month) {
+        return String.format("transactions_p%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+
+    private boolean partitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                select exists (select 1 from pg_partitioned_table p join pg_class c on c.oid = p.partrelid
+                               where c.relname = 'transactions' and pg_table_is_visible(c.oid))
+                """, Boolean.class));
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select to_regclass(?) is not null", Boolean.class, table));
+    }
+
+    private void create(YearMonth month) {
+        String partition = name(month);
+        if (exists(partition)) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute("create table " + partition + " partition of transactions for values from ('"
+                    + start(month) + "') to ('" + start(month.plusMonths(1)) + "')");
+            log.info("Created partition {}", partition);
+        } catch (DataAccessException ex) {
+            // still inside transactions_legacy, or rows for it already sit in the default partition
+            log.debug("Not creating partition {}: {}", partition, ex.getMessage());
+        }
+    }
+
+    private void convert() {
+        Instant bound = start(YearMonth.now(ZoneOffset.UTC).plusMonths(1));
+        log.info("Partitioning transactions by month; existing rows stay in transactions_legacy (before {})", bound);
+
+        // the partitioned table's primary key has to include created_at
+        jdbcTemplate.execute("create unique index concurrently if not exists transactions_legacy_id_created "
+                + "on transactions (id, created_at)");
+        jdbcTemplate.execute("alter table transactions drop constraint if exists transactions_legacy_bound");
+        jdbcTemplate.execute("alter table transactions add constraint transactions_legacy_bound "
+                + "check (created_at is not null and created_at < '" + bound + "') not valid");
+        jdbcTemplate.execute("alter table transactions validate constraint transactions_legacy_bound");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<String> names = jdbcTemplate.queryForList(
+                    "select indexname from pg_indexes where tablename = 'transactions' and schemaname = current_schema()",
+                    String.class);
+            // recreated as-is on the new parent, from the definitions Hibernate made
+            List<String> definitions = jdbcTemplate.queryForList("""
+                    select pg_get_indexdef(i.indexrelid) from pg_index i join pg_class c on c.oid = i.indrelid
+                    where c.relname = 'transactions' and pg_table_is_visible(c.oid) and not i.indisprimary
+                      and not i.indisunique
+                    """, String.class);
+
+            jdbcTemplate.execute("alter table transactions rename to transactions_legacy");
+            for (String index : names) {
+                jdbcTemplate.execute("alter index " + index + " rename to " + index + "_legacy");
+            }
+            jdbcTemplate.execute("create table transactions (like transactions_legacy including defaults) "
+                    + "partition by range (created_at)");
+            jdbcTemplate.execute("alter table transactions add primary key (id, created_at)");
+            for (String definition : definitions) {
+                jdbcTemplate.execute(definition.replaceFirst(" ON (\\S+\\.)?transactions ", " ON transactions "));
+            }
+            jdbcTemplate.execute("alter table transactions attach partition transactions_legacy "
+                    + "for values from (minvalue) to ('" + bound + "')");
+            jdbcTemplate.execute("create table transactions_default partition of transactions default");
+        });
+    }
+}
@@ -0,0 +1,15 @@
+package com.myownspringapp.mankatbank.audit;
+
+// Stored by name in audit_events.action and the log files: only append, never rename.
+public enum AuditAction {
+    REGISTER,
+    LOGIN,
+    LOGIN_FAILED,
+    LOGOUT,
+    ACCOUNT_CREATED,
+    ACCOUNT_ASSIGNED,
+    ACCOUNT_HOT,
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER
+}
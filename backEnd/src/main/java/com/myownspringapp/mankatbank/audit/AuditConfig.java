@@ -0,0 +1,42 @@
+package com.myownspringapp.mankatbank.audit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class AuditConfig {
+
+    @Bean(destroyMethod = "close")
+    public AuditLog auditLog(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.audit.file.enabled:true}") boolean fileEnabled,
+                             @Value("${app.audit.dir:./data/audit}") String dir,
+                             @Value("${app.audit.maxFileBytes:67108864}") long maxFileBytes,
+                             @Value("${app.audit.fsync:true}") boolean fsync,
+                             @Value("${app.audit.table.enabled:true}") boolean tableEnabled,
+                             @Value("${app.audit.ringSize:16384}") int ringSize,
+                             @Value("${app.audit.batchSize:512}") int batchSize,
+                             @Value("${app.audit.maxWait:PT0.005S}") Duration maxWait) throws IOException {
+        List<AuditSink> sinks = new ArrayList<>();
+        if (fileEnabled) {
+            sinks.add(new AuditFileSink(Path.of(dir), maxFileBytes, fsync));
+        }
+        if (tableEnabled) {
+            sinks.add(new AuditTableSink(jdbcTemplate, transactionManager));
+        }
+        AuditLog auditLog = new AuditLog(sinks, ringSize, batchSize, maxWait, meterRegistry);
+        auditLog.start();
+        return auditLog;
+    }
+}
@@ -0,0 +1,24 @@
+package com.myownspringapp.mankatbank.audit;
+
+import java.time.Instant;
+
+// Who did what to which account. Only action and at are always set; detail is free text (the
+// email of a login attempt, the shard count of a hot account).
+public record AuditEvent(
+        Instant at,
+        AuditAction action,
+        Long userId,
+        Long accountId,
+        Long counterpartyId,
+        Long amount,
+        String detail
+) {
+
+    public static AuditEvent of(AuditAction action, Long userId, Long accountId, Long counterpartyId, Long amount) {
+        return new AuditEvent(Instant.now(), action, userId, accountId, counterpartyId, amount, null);
+    }
+
+    public static AuditEvent of(AuditAction action, Long userId, String detail) {
+        return new AuditEvent(Instant.now(), action, userId, null, null, null, detail);
+    }
+}
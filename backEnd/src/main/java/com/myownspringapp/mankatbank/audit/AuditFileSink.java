@@ -0,0 +1,149 @@
+package com.myownspringapp.mankatbank.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// One JSON object per line in audit-<UTC day>.<n>.log. Files are only ever appended to; a new one
+// starts at midnight UTC and whenever the current one passes maxFileBytes, and a restart carries on
+// with the newest file of the day. With fsync on, every batch is forced to disk before the next.
+public final class AuditFileSink implements AuditSink {
+
+    private static final Pattern FILE_NAME = Pattern.compile("audit-(\\d{4}-\\d{2}-\\d{2})\\.(\\d+)\\.log");
+
+    private final Path dir;
+    private final long maxFileBytes;
+    private final boolean fsync;
+    private final StringBuilder line = new StringBuilder(256);
+
+    private FileChannel file;
+    private LocalDate day;
+    private int index;
+    private long size;
+
+    public AuditFileSink(Path dir, long maxFileBytes, boolean fsync) throws IOException {
+        this.dir = dir;
+        this.maxFileBytes = maxFileBytes;
+        this.fsync = fsync;
+        Files.createDirectories(dir);
+    }
+
+    @Override
+    public void write(List<AuditEvent> events) throws IOException {
+        line.setLength(0);
+        for (AuditEvent event : events) {
+            LocalDate eventDay = LocalDate.ofInstant(event.at(), ZoneOffset.UTC);
+            if (file == null || eventDay.isAfter(day) || size + line.length() >= maxFileBytes) {
+                flush();
+                roll(eventDay);
+            }
+            appendJson(line, event);
+        }
+        flush();
+        if (fsync && file != null) {
+            file.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.force(true);
+            file.close();
+            file = null;
+        }
+    }
+
+    private void flush() throws IOException {
+        if (line.isEmpty()) {
+            return;
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(line));
+        while (bytes.hasRemaining()) {
+            size += file.write(bytes);
+        }
+        line.setLength(0);
+    }
+
+    private void roll(LocalDate eventDay) throws IOException {
+        if (file == null) {
+            // restarted: continue with today's newest file
+            day = eventDay;
+            index = newestIndex(eventDay);
+        } else if (eventDay.isAfter(day)) {
+            day = eventDay;
+            index = 0;
+        } else {
+            index++;
+        }
+        open();
+        if (size >= maxFileBytes) {
+            index++;
+            open();
+        }
+    }
+
+    private void open() throws IOException {
+        close();
+        file = FileChannel.open(dir.resolve("audit-" + day + "." + index + ".log"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = file.size();
+    }
+
+    private int newestIndex(LocalDate eventDay) throws IOException {
+        int newest = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : files.toList()) {
+                Matcher m = FILE_NAME.matcher(path.getFileName().toString());
+                if (m.matches() && m.group(1).equals(eventDay.toString())) {
+                    newest = Math.max(newest, Integer.parseInt(m.group(2)));
+                }
+            }
+        }
+        return newest;
+    }
+
+    static void appendJson(StringBuilder out, AuditEvent event) {
+        out.append("{\"at\":\"").append(event.at()).append("\",\"action\":\"").append(event.action()).append('"');
+        appendField(out, "userId", event.userId());
+        appendField(out, "accountId", event.accountId());
+        appendField(out, "counterpartyId", event.counterpartyId());
+        appendField(out, "amount", event.amount());
+        if (event.detail() != null) {
+            out.append(",\"detail\":\"");
+            escape(out, event.detail());
+            out.append('"');
+        }
+        out.append("}\n");
+    }
+
+    private static void appendField(StringBuilder out, String name, Long value) {
+        if (value != null) {
+            out.append(",\"").append(name).append("\":").append(value.longValue());
+        }
+    }
+
+    private static void escape(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
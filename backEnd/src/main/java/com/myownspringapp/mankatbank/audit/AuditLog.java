@@ -0,0 +1,176 @@
+package com.myownspringapp.mankatbank.audit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// The audit trail. Request threads only put the event into an AuditRing; one writer thread drains
+// it in batches of up to batchSize and hands every batch to each sink (rotated files, the
+// audit_events table), so the cost of formatting, I/O, fsync and commits is paid once per batch
+// and off the request path.
+//
+// Backpressure: when the ring is full the publisher waits up to maxWait for the writer to make
+// room and then drops the event. Both are counted (bank.audit.overflows, bank.audit.dropped), as
+// are batches a sink failed to write, which are not retried.
+public final class AuditLog implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long ERROR_LOG_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final List<AuditSink> sinks;
+    private final AuditRing ring;
+    private final int batchSize;
+    private final long maxWaitNanos;
+    private final Thread writer;
+    private volatile boolean running;
+    // set while the writer is parked on an empty ring, so publish() knows to wake it
+    private volatile boolean sleeping;
+    private volatile long idleParks;
+    private long lastErrorLogged = System.nanoTime() - ERROR_LOG_NANOS;
+
+    private final Counter published;
+    private final Counter overflows;
+    private final Counter dropped;
+    private final List<Counter> written = new ArrayList<>();
+    private final List<Counter> failed = new ArrayList<>();
+    private final Timer flushes;
+
+    public AuditLog(List<AuditSink> sinks, int ringSize, int batchSize, Duration maxWait, MeterRegistry meterRegistry) {
+        this.sinks = List.copyOf(sinks);
+        this.ring = new AuditRing(ringSize);
+        this.batchSize = batchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.writer = new Thread(this::run, "audit-writer");
+        this.writer.setDaemon(true);
+
+        this.published = Counter.builder("bank.audit.published").register(meterRegistry);
+        this.overflows = Counter.builder("bank.audit.overflows")
+                .description("publishes that found the ring full").register(meterRegistry);
+        this.dropped = Counter.builder("bank.audit.dropped").tag("reason", "overflow").tag("sink", "all")
+                .description("events lost").register(meterRegistry);
+        for (AuditSink sink : this.sinks) {
+            String name = sink.getClass().getSimpleName();
+            written.add(Counter.builder("bank.audit.written").tag("sink", name).register(meterRegistry));
+            failed.add(Counter.builder("bank.audit.dropped").tag("reason", "write").tag("sink", name)
+                    .description("events lost").register(meterRegistry));
+        }
+        this.flushes = Timer.builder("bank.audit.flush").register(meterRegistry);
+        Gauge.builder("bank.audit.backlog", ring, AuditRing::size).register(meterRegistry);
+    }
+
+    public void start() {
+        if (sinks.isEmpty()) {
+            log.info("No audit sinks configured; audit events are discarded");
+            return;
+        }
+        running = true;
+        writer.start();
+    }
+
+    public void publish(AuditEvent event) {
+        if (!running) {
+            return;
+        }
+        if (ring.offer(event)) {
+            published.increment();
+            if (sleeping) {
+                LockSupport.unpark(writer);
+            }
+            return;
+        }
+        overflows.increment();
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(RETRY_NANOS);
+            if (ring.offer(event)) {
+                published.increment();
+                return;
+            }
+        }
+        dropped.increment();
+    }
+
+    // Stops taking events and waits for the writer to write out what is already queued.
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (AuditSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (Exception e) {
+                log.warn("Could not close audit sink {}", sink.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    // An idle writer parks a little longer each time (1ms doubling up to 50ms) rather than waking
+    // every millisecond for nothing; the first publish() into the empty ring wakes it straight away.
+    private void run() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        long idleNanos = IDLE_NANOS;
+        while (running || ring.size() > 0) {
+            int taken = ring.drain(batch, batchSize);
+            if (taken > 0) {
+                flushes.record(() -> write(batch));
+                batch.clear();
+                idleNanos = IDLE_NANOS;
+                // a partial batch: let events collect for a moment, so one write and one fsync
+                // cover many of them
+                if (taken < batchSize) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+                continue;
+            }
+            sleeping = true;
+            if (running && ring.size() == 0) {
+                idleParks++;
+                LockSupport.parkNanos(idleNanos);
+                idleNanos = Math.min(idleNanos * 2, MAX_IDLE_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    // times the writer found nothing to do and went back to sleep
+    long idleParks() {
+        return idleParks;
+    }
+
+    private void write(List<AuditEvent> batch) {
+        for (int i = 0; i < sinks.size(); i++) {
+            AuditSink sink = sinks.get(i);
+            try {
+                sink.write(batch);
+                written.get(i).increment(batch.size());
+            } catch (Exception e) {
+                failed.get(i).increment(batch.size());
+                // a sink that is down fails every batch; once a minute in the log is enough
+                if (System.nanoTime() - lastErrorLogged >= ERROR_LOG_NANOS) {
+                    lastErrorLogged = System.nanoTime();
+                    log.error("Audit sink {} failed, {} events lost", sink.getClass().getSimpleName(), batch.size(), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.myownspringapp.mankatbank.audit;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+// Queryable copy of the audit trail; rows are only ever inserted, in batches by AuditTableSink.
+@Entity
+@Table(name = "audit_events", indexes = {
+        @Index(name = "idx_audit_user_at", columnList = "user_id, occurred_at"),
+        @Index(name = "idx_audit_account_at", columnList = "account_id, occurred_at")
+})
+public class AuditRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "occurred_at", nullable = false)
+    private Instant at;
+
+    @Column(length = 32, nullable = false)
+    private String action;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Column(name = "counterparty_id")
+    private Long counterpartyId;
+
+    private Long amount;
+
+    @Column(length = 320)
+    private String detail;
+
+    protected AuditRecord() {}
+
+    public Long getId() { return id; }
+    public Instant getAt() { return at; }
+    public String getAction() { return action; }
+    public Long getUserId() { return userId; }
+    public Long getAccountId() { return accountId; }
+    public Long getCounterpartyId() { return counterpartyId; }
+    public Long getAmount() { return amount; }
+    public String getDetail() { return detail; }
+}
@@ -0,0 +1,80 @@
+package com.myownspringapp.mankatbank.audit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bounded many-producer / one-consumer ring without locks (Vyukov's bounded queue). Every slot has
+// a sequence number: a producer claims the next position with one CAS on tail, fills the slot and
+// publishes it by bumping the slot's sequence; the consumer takes slots in order for as long as
+// they are published. offer() never blocks: a full ring just says no.
+final class AuditRing {
+
+    private final AtomicReferenceArray<AuditEvent> events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong(); // only written by the consumer
+
+    AuditRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Audit ring size must be a power of two, got " + capacity);
+        }
+        this.events = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    boolean offer(AuditEvent event) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    events.lazySet(slot, event);
+                    sequences.lazySet(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // the slot still holds an event from one lap ago: full
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    // consumer thread only; moves up to max published events into `into`
+    int drain(List<AuditEvent> into, int max) {
+        long position = head.get();
+        int taken = 0;
+        while (taken < max) {
+            int slot = (int) (position & mask);
+            if (sequences.get(slot) != position + 1) {
+                break;
+            }
+            into.add(events.get(slot));
+            events.lazySet(slot, null);
+            sequences.lazySet(slot, position + mask + 1);
+            position++;
+            taken++;
+        }
+        head.lazySet(position);
+        return taken;
+    }
+
+    // claimed but not yet drained; approximate while producers are running
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
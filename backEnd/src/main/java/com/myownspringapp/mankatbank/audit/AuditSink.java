@@ -0,0 +1,14 @@
+package com.myownspringapp.mankatbank.audit;
+
+import java.io.IOException;
+import java.util.List;
+
+// Where AuditLog's writer thread puts each batch. Only ever called from that one thread.
+public interface AuditSink extends AutoCloseable {
+
+    void write(List<AuditEvent> events) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
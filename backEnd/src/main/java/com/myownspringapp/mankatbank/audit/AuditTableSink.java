@@ -0,0 +1,49 @@
+package com.myownspringapp.mankatbank.audit;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+// One JDBC batch and one commit per writer batch into audit_events.
+public final class AuditTableSink implements AuditSink {
+
+    private static final String INSERT = "insert into audit_events "
+            + "(occurred_at, action, user_id, account_id, counterparty_id, amount, detail) values (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public AuditTableSink(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void write(List<AuditEvent> events) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                AuditEvent event = events.get(i);
+                ps.setTimestamp(1, Timestamp.from(event.at()));
+                ps.setString(2, event.action().name());
+                ps.setObject(3, event.userId(), Types.BIGINT);
+                ps.setObject(4, event.accountId(), Types.BIGINT);
+                ps.setObject(5, event.counterpartyId(), Types.BIGINT);
+                ps.setObject(6, event.amount(), Types.BIGINT);
+                ps.setString(7, event.detail());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return events.size();
+            }
+        }));
+    }
+}
@@ -1,39 +1,54 @@
 package com.myownspringapp.mankatbank.auth;
 
 import com.myownspringapp.mankatbank.Account;
+import com.myownspringapp.mankatbank.AccountOwnershipCache;
 import com.myownspringapp.mankatbank.AccountRepository;
+import com.myownspringapp.mankatbank.audit.AuditAction;
+import com.myownspringapp.mankatbank.audit.AuditEvent;
+import com.myownspringapp.mankatbank.audit.AuditLog;
 import com.myownspringapp.mankatbank.user.User;
 import com.myownspringapp.mankatbank.user.UserRepository;
 import io.jsonwebtoken.Claims;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @RestController
 @RequestMapping("/auth")
 public class AuthController {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashing;
     private final JwtService jwtService;
     private final AccountRepository accountRepository;
-    private final RevokedTokenRepository revokedTokenRepository;
+    private final RevocationCache revocationCache;
+    private final AccountOwnershipCache ownershipCache;
+    private final AuditLog audit;
+    private final Executor taskExecutor;
 
     public AuthController(UserRepository userRepository,
-                          PasswordEncoder passwordEncoder,
+                          PasswordHashingService passwordHashing,
                           JwtService jwtService,
                           AccountRepository accountRepository,
-                          RevokedTokenRepository revokedTokenRepository) {
+                          RevocationCache revocationCache,
+                          AccountOwnershipCache ownershipCache,
+                          AuditLog audit,
+                          @Qualifier("applicationTaskExecutor") Executor taskExecutor) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashing = passwordHashing;
         this.jwtService = jwtService;
         this.accountRepository = accountRepository;
-        this.revokedTokenRepository = revokedTokenRepository;
+        this.revocationCache = revocationCache;
+        this.ownershipCache = ownershipCache;
+        this.audit = audit;
+        this.taskExecutor = taskExecutor;
     }
 
     @PostMapping("/register")
-    public UserResponse register(@RequestBody RegisterRequest request) {
+    public CompletableFuture<UserResponse> register(@RequestBody RegisterRequest request) {
         if (request.email() == null || request.email().isBlank()) {
             throw new IllegalArgumentException("Email is required");
         }
@@ -48,20 +63,25 @@ public class AuthController {
             throw new IllegalArgumentException("Email already in use");
         }
 
-        String hash = passwordEncoder.encode(request.password());
-        User user = new User(request.email(), request.fullName(), hash);
-        User savedUser = userRepository.save(user);
-
-        // create default account for the user
-        Account account = new Account(savedUser.getFullName());
-        account.setUser(savedUser);
-        accountRepository.save(account);
-
-        return new UserResponse(savedUser.getId(), savedUser.getEmail(), savedUser.getFullName());
+        // hashing runs on the password pool; the inserts go to the general task pool so a slow DB
+        // never holds a hashing thread
+        return passwordHashing.encode(request.password()).thenApplyAsync(hash -> {
+            User user = new User(request.email(), request.fullName(), hash);
+            User savedUser = userRepository.save(user);
+
+            // create default account for the user
+            Account account = new Account(savedUser.getFullName());
+            account.setUser(savedUser);
+            accountRepository.save(account);
+            ownershipCache.invalidate(savedUser.getId());
+            audit.publish(AuditEvent.of(AuditAction.REGISTER, savedUser.getId(), savedUser.getEmail()));
+
+            return new UserResponse(savedUser.getId(), savedUser.getEmail(), savedUser.getFullName());
+        }, taskExecutor);
     }
 
     @PostMapping("/login")
-    public LoginResponse login(@RequestBody LoginRequest request) {
+    public CompletableFuture<LoginResponse> login(@RequestBody LoginRequest request) {
         if (request.email() == null || request.email().isBlank()) {
             throw new IllegalArgumentException("Email is required");
         }
@@ -69,15 +89,22 @@ public class AuthController {
             throw new IllegalArgumentException("Password is required");
         }
 
-        User user = userRepository.findByEmail(request.email())
-                .orElseThrow(() -> new RuntimeException("Invalid credentials"));
-
-        if (!passwordEncoder.matches(request.password(), user.getPasswordHash())) {
+        User user = userRepository.findByEmail(request.email()).orElse(null);
+        if (user == null) {
+            audit.publish(AuditEvent.of(AuditAction.LOGIN_FAILED, null, request.email()));
             throw new RuntimeException("Invalid credentials");
         }
 
-        String token = jwtService.createToken(user.getId(), user.getEmail());
-        return new LoginResponse(user.getId(), user.getEmail(), token);
+        return passwordHashing.matches(request.password(), user.getPasswordHash()).thenApply(matches -> {
+            if (!matches) {
+                audit.publish(AuditEvent.of(AuditAction.LOGIN_FAILED, user.getId(), request.email()));
+                throw new RuntimeException("Invalid credentials");
+            }
+
+            audit.publish(AuditEvent.of(AuditAction.LOGIN, user.getId(), null));
+            String token = jwtService.createToken(user.getId(), user.getEmail());
+            return new LoginResponse(user.getId(), user.getEmail(), token);
+        });
     }
 
     // ✅ Logout = revoke the current token (server will reject it afterwards)
@@ -93,9 +120,10 @@ public class AuthController {
         String jti = claims.getId();
         Instant expiresAt = claims.getExpiration().toInstant();
 
-        if (jti != null && !revokedTokenRepository.existsByJti(jti)) {
-            revokedTokenRepository.save(new RevokedToken(jti, expiresAt));
+        if (jti != null) {
+            revocationCache.revoke(jti, expiresAt);
         }
+        audit.publish(AuditEvent.of(AuditAction.LOGOUT, Long.valueOf(claims.getSubject()), null));
 
         return java.util.Map.of("message", "Logged out");
     }
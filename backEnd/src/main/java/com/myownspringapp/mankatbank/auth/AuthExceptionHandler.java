@@ -17,4 +17,10 @@ public class AuthExceptionHandler {
         }
         throw ex; // let other runtime exceptions behave normally
     }
+
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(PasswordHashingOverloadedException.class)
+    public Map<String, String> handleHashingOverload(PasswordHashingOverloadedException ex) {
+        return Map.of("message", ex.getMessage());
+    }
 }
@@ -1,16 +1,26 @@
 package com.myownspringapp.mankatbank.auth;
 
+import com.myownspringapp.mankatbank.BoundedCaches;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class JwtService {
@@ -18,12 +28,32 @@ public class JwtService {
     private final SecretKey key;
     private final long ttlSeconds;
 
+    // thread-safe and immutable, so one instance serves every request
+    private final JwtParser parser;
+
+    // sha256(token) -> claims that already passed signature + expiry checks; keyed by digest so
+    // bearer tokens themselves are never kept around in memory
+    private final Map<String, VerifiedClaims> verified = new ConcurrentHashMap<>();
+    private final int cacheSize;
+    private final Counter hits;
+    private final Counter misses;
+
+    private record VerifiedClaims(Claims claims, long expiresAtMillis) {}
+
     public JwtService(
             @Value("${app.jwt.secret}") String secret,
-            @Value("${app.jwt.ttlSeconds:3600}") long ttlSeconds
+            @Value("${app.jwt.ttlSeconds:3600}") long ttlSeconds,
+            @Value("${app.jwt.cacheSize:10000}") int cacheSize,
+            MeterRegistry meterRegistry
     ) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
         this.ttlSeconds = ttlSeconds;
+        this.parser = Jwts.parser().verifyWith(key).build();
+        this.cacheSize = cacheSize;
+
+        this.hits = Counter.builder("bank.jwt.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("bank.jwt.cache").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("bank.jwt.cache.size", verified, Map::size).register(meterRegistry);
     }
 
     public String createToken(Long userId, String email) {
@@ -41,11 +71,48 @@ public class JwtService {
                 .compact();
     }
 
+    // Same contract as verify(), but a token seen before is answered from the cache until its exp.
+    // Revocation is not cached here — callers still check the jti on every request.
     public Claims parse(String token) {
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        String digest = digest(token);
+        VerifiedClaims cached = verified.get(digest);
+        if (cached != null) {
+            if (cached.expiresAtMillis() > System.currentTimeMillis()) {
+                hits.increment();
+                return cached.claims();
+            }
+            verified.remove(digest, cached);
+        }
+
+        misses.increment();
+        Claims claims = verify(token);
+        Date exp = claims.getExpiration();
+        if (exp != null) {
+            remember(digest, new VerifiedClaims(claims, exp.getTime()));
+        }
+        return claims;
+    }
+
+    // full signature check and claim decoding, no cache
+    public Claims verify(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    private void remember(String digest, VerifiedClaims claims) {
+        if (verified.size() >= cacheSize) {
+            long now = System.currentTimeMillis();
+            verified.values().removeIf(c -> c.expiresAtMillis() <= now);
+        }
+        BoundedCaches.makeRoom(verified, cacheSize);
+        verified.put(digest, claims);
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
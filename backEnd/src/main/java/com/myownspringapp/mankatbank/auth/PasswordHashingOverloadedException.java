@@ -0,0 +1,8 @@
+package com.myownspringapp.mankatbank.auth;
+
+public class PasswordHashingOverloadedException extends RuntimeException {
+
+    public PasswordHashingOverloadedException() {
+        super("Too many login attempts in progress, please retry");
+    }
+}
@@ -0,0 +1,91 @@
+package com.myownspringapp.mankatbank.auth;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-process copy of revoked_tokens so the auth filter never hits the DB for a live token.
+// Only unexpired jtis are kept: once a token's exp has passed the JWT check rejects it anyway.
+//
+// A logout on another instance reaches this one with the next refresh, so a revoked token can keep
+// working here for up to refreshMillis. If refreshes stop (DB down, scheduler stuck) for longer than
+// twice that, every check goes to the table instead of trusting the stale copy.
+@Component
+public class RevocationCache {
+
+    // revokedAt comes from the revoking instance's clock and commits land a little after it
+    private static final Duration OVERLAP = Duration.ofSeconds(5);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final Duration maxStaleness;
+    private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+    // when the last successful refresh started
+    private volatile Instant refreshedAt = Instant.EPOCH;
+
+    public RevocationCache(RevokedTokenRepository revokedTokenRepository,
+                           @Value("${app.jwt.revocation.refreshMillis:1000}") long refreshMillis) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.maxStaleness = Duration.ofMillis(2 * refreshMillis);
+    }
+
+    public boolean isRevoked(String jti) {
+        Instant now = Instant.now();
+        Instant expiresAt = revoked.get(jti);
+        if (expiresAt != null) {
+            return expiresAt.isAfter(now);
+        }
+        if (refreshedAt.plus(maxStaleness).isBefore(now)) {
+            return revokedTokenRepository.findById(jti)
+                    .map(token -> {
+                        revoked.putIfAbsent(jti, token.getExpiresAt());
+                        return token.getExpiresAt().isAfter(now);
+                    })
+                    .orElse(false);
+        }
+        return false;
+    }
+
+    public void revoke(String jti, Instant expiresAt) {
+        if (revoked.putIfAbsent(jti, expiresAt) == null && !revokedTokenRepository.existsByJti(jti)) {
+            revokedTokenRepository.save(new RevokedToken(jti, expiresAt));
+        }
+    }
+
+    @PostConstruct
+    public void load() {
+        Instant started = Instant.now();
+        for (RevokedToken token : revokedTokenRepository.findByExpiresAtAfter(started)) {
+            revoked.putIfAbsent(token.getJti(), token.getExpiresAt());
+        }
+        refreshedAt = started;
+    }
+
+    // picks up logouts done on other instances since the last refresh; the table stays the source of truth
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.refreshMillis:1000}",
+            initialDelayString = "${app.jwt.revocation.refreshMillis:1000}")
+    public void refresh() {
+        Instant started = Instant.now();
+        for (RevokedToken token : revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(
+                refreshedAt.minus(OVERLAP), started)) {
+            revoked.putIfAbsent(token.getJti(), token.getExpiresAt());
+        }
+        refreshedAt = started;
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.purgeMillis:3600000}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        revoked.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+        revokedTokenRepository.deleteExpired(now);
+    }
+
+    int size() {
+        return revoked.size();
+    }
+}
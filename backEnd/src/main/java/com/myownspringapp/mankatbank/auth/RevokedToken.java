@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "revoked_tokens")
+@Table(name = "revoked_tokens", indexes = @Index(name = "idx_revoked_tokens_revoked_at", columnList = "revoked_at"))
 public class RevokedToken {
 
     @Id
@@ -14,11 +14,15 @@ public class RevokedToken {
     @Column(nullable = false)
     private Instant expiresAt;
 
+    // null on rows written before the column existed; RevocationCache's full load still sees those
+    private Instant revokedAt;
+
     protected RevokedToken() {}
 
     public RevokedToken(String jti, Instant expiresAt) {
         this.jti = jti;
         this.expiresAt = expiresAt;
+        this.revokedAt = Instant.now();
     }
 
     public String getJti() {
@@ -28,4 +32,8 @@ public class RevokedToken {
     public Instant getExpiresAt() {
         return expiresAt;
     }
+
+    public Instant getRevokedAt() {
+        return revokedAt;
+    }
 }
@@ -0,0 +1,76 @@
+package com.myownspringapp.mankatbank.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Users who wrote something in the last `stickiness`: their reads stay on the primary so they
+// see their own writes while the replica catches up. Only consulted when a replica is configured.
+//
+// The guarantee is per instance and per request thread. The map lives in this JVM, so a read that
+// the load balancer sends to another instance can hit the replica. The user comes from the
+// SecurityContext, so work handed to another thread (streamed export bodies, SSE pushes) counts as
+// anonymous; those paths read outside read-only transactions and so stay on the primary.
+@Component
+public class ReadYourWrites {
+
+    private final long stickinessNanos;
+    private final int maxUsers;
+
+    // userId -> System.nanoTime() until which that user reads from the primary
+    private final Map<Long, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    public ReadYourWrites(MeterRegistry meterRegistry,
+                          @Value("${app.datasource.replica.stickiness:PT5S}") Duration stickiness,
+                          @Value("${app.datasource.replica.maxStickyUsers:100000}") int maxUsers) {
+        this.stickinessNanos = stickiness.toNanos();
+        this.maxUsers = maxUsers;
+        Gauge.builder("bank.datasource.sticky.users", stickyUntil, Map::size).register(meterRegistry);
+    }
+
+    public void stick(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (stickyUntil.size() >= maxUsers) {
+            stickyUntil.values().removeIf(until -> until - now <= 0);
+        }
+        stickyUntil.put(userId, now + stickinessNanos);
+    }
+
+    public boolean isSticky(Long userId) {
+        if (userId == null) {
+            return false;
+        }
+        Long until = stickyUntil.get(userId);
+        if (until == null) {
+            return false;
+        }
+        if (until - System.nanoTime() > 0) {
+            return true;
+        }
+        stickyUntil.remove(userId, until);
+        return false;
+    }
+
+    // the authenticated user of the current request, if any (JwtAuthFilter puts the id in the details)
+    public Long currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication.getDetails() == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(authentication.getDetails().toString());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
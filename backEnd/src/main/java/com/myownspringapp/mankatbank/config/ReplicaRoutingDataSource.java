@@ -0,0 +1,61 @@
+package com.myownspringapp.mankatbank.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+// Read-only transactions go to the replica unless the current user wrote within the stickiness
+// window; everything else goes to the primary. Must sit behind a LazyConnectionDataSourceProxy so
+// the lookup happens at the first statement, once the transaction's readOnly flag is known.
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    private final ReadYourWrites readYourWrites;
+    private final Counter toPrimary;
+    private final Counter toReplica;
+    private final Counter keptOnPrimary;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReadYourWrites readYourWrites,
+                                    MeterRegistry meterRegistry) {
+        this.readYourWrites = readYourWrites;
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+
+        this.toPrimary = Counter.builder("bank.datasource.routed").tag("pool", PRIMARY).register(meterRegistry);
+        this.toReplica = Counter.builder("bank.datasource.routed").tag("pool", REPLICA).register(meterRegistry);
+        this.keptOnPrimary = Counter.builder("bank.datasource.sticky.reads")
+                .description("Read-only transactions kept on the primary because the user just wrote")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Long userId = readYourWrites.currentUser();
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (!readYourWrites.isSticky(userId)) {
+                toReplica.increment();
+                return REPLICA;
+            }
+            keptOnPrimary.increment();
+        } else if (userId != null && TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            // the window starts when the write is visible on the primary
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    readYourWrites.stick(userId);
+                }
+            });
+        }
+        toPrimary.increment();
+        return PRIMARY;
+    }
+}
@@ -0,0 +1,72 @@
+package com.myownspringapp.mankatbank.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+// Listens for JFR jdk.VirtualThreadPinned events (Java 21+) and reports where a virtual thread
+// blocked while pinned to its carrier, e.g. inside a synchronized block around JDBC work.
+@Component
+@ConditionalOnProperty(name = "app.virtual.pinning-detection", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String APP_PACKAGE = "com.myownspringapp";
+
+    private final Duration threshold;
+    private final Counter pinned;
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(@Value("${app.virtual.pinning-threshold:20ms}") Duration threshold,
+                                       MeterRegistry meterRegistry) {
+        this.threshold = threshold;
+        this.pinned = Counter.builder("bank.virtual.pinned").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (Runtime.version().feature() < 21) {
+            log.info("Virtual thread pinning detection needs Java 21+, running on {}", Runtime.version());
+            return;
+        }
+        stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", this::report);
+        stream.startAsync();
+    }
+
+    private void report(RecordedEvent event) {
+        pinned.increment();
+        if (event.getStackTrace() == null) {
+            return;
+        }
+        // our own frames are the actionable part; fall back to the top of the stack
+        String frames = event.getStackTrace().getFrames().stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .map(f -> f.getMethod().getType().getName() + "." + f.getMethod().getName() + ":" + f.getLineNumber())
+                .filter(f -> f.startsWith(APP_PACKAGE))
+                .limit(5)
+                .collect(Collectors.joining(" <- "));
+        log.warn("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(),
+                frames.isEmpty() ? event.getStackTrace().getFrames().get(0).getMethod().getName() : frames);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+}
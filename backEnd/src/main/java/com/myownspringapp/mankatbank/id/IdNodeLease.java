@@ -0,0 +1,27 @@
+package com.myownspringapp.mankatbank.id;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// Which running JVM uses an app.ids.nodeId. Held and renewed by NodeIdLease; a row whose renewedAt
+// is older than app.ids.leaseTtl belongs to an instance that is gone.
+@Entity
+@Table(name = "id_node_leases")
+public class IdNodeLease {
+
+    @Id
+    @Column(name = "node_id")
+    private Integer nodeId;
+
+    @Column(nullable = false, length = 36)
+    private String instance;
+
+    @Column(name = "renewed_at", nullable = false)
+    private Instant renewedAt;
+
+    protected IdNodeLease() {}
+
+    public Integer getNodeId() { return nodeId; }
+    public String getInstance() { return instance; }
+    public Instant getRenewedAt() { return renewedAt; }
+}
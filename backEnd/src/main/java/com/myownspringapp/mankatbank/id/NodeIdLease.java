@@ -0,0 +1,120 @@
+package com.myownspringapp.mankatbank.id;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+// Two instances with the same app.ids.nodeId hand out the same ids, and nothing else would notice
+// until inserts fail. So each JVM leases its node id in id_node_leases and keeps renewing it. At
+// startup a lease left by a crashed instance is waited out (at most leaseTtl); one that is still
+// being renewed means another live instance has this node id, and startup fails.
+@Component
+public class NodeIdLease {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeIdLease.class);
+
+    // one per JVM, like the allocators: contexts sharing a JVM share its ids safely
+    static final String INSTANCE = UUID.randomUUID().toString();
+
+    private record Holder(String instance, Instant renewedAt) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String instance;
+    private final int node;
+    private final Duration ttl;
+    private final long pollMillis;
+
+    @Autowired
+    public NodeIdLease(JdbcTemplate jdbcTemplate,
+                       @Value("${app.ids.nodeId:0}") int node,
+                       @Value("${app.ids.leaseTtl:PT30S}") Duration ttl,
+                       @Value("${app.ids.leasePollMillis:1000}") long pollMillis) {
+        this(jdbcTemplate, INSTANCE, node, ttl, pollMillis);
+    }
+
+    // tests stand in for other JVMs with their own instance names
+    NodeIdLease(JdbcTemplate jdbcTemplate, String instance, int node, Duration ttl, long pollMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.instance = instance;
+        this.node = node;
+        this.ttl = ttl;
+        this.pollMillis = pollMillis;
+    }
+
+    public int node() {
+        return node;
+    }
+
+    @PostConstruct
+    public void acquire() throws InterruptedException {
+        Instant firstSeen = null;
+        while (true) {
+            Holder holder = tryClaim();
+            if (holder == null) {
+                return;
+            }
+            if (firstSeen == null) {
+                firstSeen = holder.renewedAt();
+                log.info("app.ids.nodeId={} was last renewed by {} at {}; waiting for that lease to run out",
+                        node, holder.instance(), firstSeen);
+            } else if (holder.renewedAt().isAfter(firstSeen)) {
+                throw new IllegalStateException("app.ids.nodeId=" + node + " is in use by another running instance ("
+                        + holder.instance() + "); every instance needs its own node id between 0 and 31");
+            }
+            Thread.sleep(pollMillis);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.ids.leaseRenewMillis:10000}")
+    public void renew() {
+        Holder holder = tryClaim();
+        if (holder != null) {
+            log.error("app.ids.nodeId={} is now leased by {}; ids from this instance may collide with its ids",
+                    node, holder.instance());
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        jdbcTemplate.update("delete from id_node_leases where node_id = ? and instance = ?", node, instance);
+    }
+
+    // null once the lease is ours, otherwise whoever holds it
+    Holder tryClaim() {
+        while (true) {
+            Instant now = Instant.now();
+            int updated = jdbcTemplate.update("update id_node_leases set instance = ?, renewed_at = ? "
+                            + "where node_id = ? and (instance = ? or renewed_at < ?)",
+                    instance, Timestamp.from(now), node, instance, Timestamp.from(now.minus(ttl)));
+            if (updated == 1) {
+                return null;
+            }
+            try {
+                jdbcTemplate.update("insert into id_node_leases (node_id, instance, renewed_at) values (?, ?, ?)",
+                        node, instance, Timestamp.from(now));
+                return null;
+            } catch (DuplicateKeyException ex) {
+                List<Holder> holders = jdbcTemplate.query(
+                        "select instance, renewed_at from id_node_leases where node_id = ?",
+                        (rs, i) -> new Holder(rs.getString(1), rs.getTimestamp(2).toInstant()), node);
+                if (!holders.isEmpty()) {
+                    return holders.get(0);
+                }
+                // released in between; try again
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.myownspringapp.mankatbank.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Put on an @Id Long field instead of @GeneratedValue: the id is assigned in the application by
+// TimeOrderedIdGenerator before the insert, so inserts batch and ids sort by creation time.
+@IdGeneratorType(TimeOrderedIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TimeOrderedId {
+}
@@ -0,0 +1,90 @@
+package com.myownspringapp.mankatbank.id;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.generator.GeneratorCreationContext;
+
+import java.lang.reflect.Member;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Hibernate side of @TimeOrderedId. Entity ids are 41 bits of millis | 5 bits of node | 7 bits of
+// sequence = 53 bits, so they survive being a JavaScript number in the frontend. That is 128 ids
+// per millisecond per node before a node starts running ahead of the clock.
+//
+// Hibernate builds the generator, not Spring, so the node id comes from the Hibernate settings
+// (spring.jpa.properties.app.ids.nodeId, which application.properties points at app.ids.nodeId).
+//
+// Before its first id each generator looks at its table for ids of this node that are still ahead
+// of the clock: a previous run that outpaced 128 ids/ms (a big batch), or a clock that stepped back
+// across the restart, left them there, and counting from the clock alone would hand them out again.
+public class TimeOrderedIdGenerator implements BeforeExecutionGenerator {
+
+    public static final String NODE_ID = "app.ids.nodeId";
+    static final int NODE_BITS = 5;
+    static final int SEQUENCE_BITS = 7;
+
+    // one allocator per node for the whole JVM: every entity and every SessionFactory draws from it,
+    // so two contexts on one database (as in the tests) can't hand out the same id
+    private static final Map<Long, TimeOrderedIds> NODES = new ConcurrentHashMap<>();
+
+    private final TimeOrderedIds ids;
+    private final String table;
+    private volatile boolean seeded;
+
+    public TimeOrderedIdGenerator(TimeOrderedId config, Member member, GeneratorCreationContext context) {
+        Object nodeId = context.getServiceRegistry().requireService(ConfigurationService.class)
+                .getSettings().get(NODE_ID);
+        long node = (nodeId == null) ? 0 : Long.parseLong(nodeId.toString().trim());
+        if (node < 0 || node >= (1L << NODE_BITS)) {
+            throw new IllegalArgumentException(NODE_ID + " must be between 0 and " + ((1L << NODE_BITS) - 1));
+        }
+        this.ids = forNode(node);
+        this.table = context.getPersistentClass().getRootClass().getTable().getName();
+    }
+
+    public static TimeOrderedIds forNode(long node) {
+        return NODES.computeIfAbsent(node, n -> new TimeOrderedIds(NODE_BITS, SEQUENCE_BITS, n));
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        if (!seeded) {
+            seed(session);
+        }
+        return ids.next();
+    }
+
+    // only ids at or after the current millisecond can collide, and the primary key finds them
+    private synchronized void seed(SharedSessionContractImplementor session) {
+        if (seeded) {
+            return;
+        }
+        long from = ids.firstIdAt(Instant.now());
+        session.doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "select id from " + table + " where id >= ?")) {
+                ps.setLong(1, from);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ids.advancePast(rs.getLong(1));
+                    }
+                }
+            }
+        });
+        seeded = true;
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
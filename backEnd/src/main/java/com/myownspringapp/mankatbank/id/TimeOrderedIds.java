@@ -0,0 +1,61 @@
+package com.myownspringapp.mankatbank.id;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// id = millis since 2024-01-01 | node | per-millisecond sequence. Unique per node without a DB round
+// trip, and one CAS per id however many threads ask. Ids from one allocator only ever go up: past
+// 2^sequenceBits ids in a millisecond, or if the clock steps back, we keep counting from the last
+// value (running slightly ahead of the clock) instead of reusing ids. That state is in memory, so
+// after a restart advancePast() has to be told about ids the previous run handed out ahead of the clock.
+public final class TimeOrderedIds {
+
+    public static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+    private final int sequenceBits;
+    private final int timeShift;
+    private final long node;
+    // (millis << sequenceBits) | sequence of the last id handed out
+    private final AtomicLong last = new AtomicLong();
+
+    public TimeOrderedIds(int nodeBits, int sequenceBits, long node) {
+        if (node < 0 || node >= (1L << nodeBits)) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + ((1L << nodeBits) - 1));
+        }
+        this.sequenceBits = sequenceBits;
+        this.timeShift = nodeBits + sequenceBits;
+        this.node = node;
+    }
+
+    public long next() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << sequenceBits;
+        long next = last.updateAndGet(prev -> Math.max(prev + 1, now));
+        long millis = next >>> sequenceBits;
+        long sequence = next & ((1L << sequenceBits) - 1);
+        return (millis << timeShift) | (node << sequenceBits) | sequence;
+    }
+
+    // never hand out `id` or anything below it again; ids of other nodes are ignored
+    public void advancePast(long id) {
+        if (((id >>> sequenceBits) & ((1L << (timeShift - sequenceBits)) - 1)) != node) {
+            return;
+        }
+        long issued = ((id >>> timeShift) << sequenceBits) | (id & ((1L << sequenceBits) - 1));
+        last.accumulateAndGet(issued, Math::max);
+    }
+
+    public long node() {
+        return node;
+    }
+
+    // when the id was handed out, give or take how far its node ran ahead of the clock
+    public Instant timestampOf(long id) {
+        return Instant.ofEpochMilli((id >>> timeShift) + EPOCH_MILLIS);
+    }
+
+    // smallest id any node can hand out at or after `at`, so "id >= firstIdAt(t)" is a time filter
+    // that only needs the primary key
+    public long firstIdAt(Instant at) {
+        return Math.max(0, at.toEpochMilli() - EPOCH_MILLIS) << timeShift;
+    }
+}
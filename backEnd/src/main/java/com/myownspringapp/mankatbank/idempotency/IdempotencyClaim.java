@@ -0,0 +1,55 @@
+package com.myownspringapp.mankatbank.idempotency;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Handed to the work behind an Idempotency-Key. complete() has to run inside the DB transaction
+// that moves the money, so the stored response commits (or rolls back) together with it.
+public final class IdempotencyClaim<T> {
+
+    private final IdempotencyService service; // null when the request had no key
+    private final long id;
+    private T response;
+    private boolean committed;
+
+    IdempotencyClaim(IdempotencyService service, long id) {
+        this.service = service;
+        this.id = id;
+    }
+
+    static <T> IdempotencyClaim<T> none() {
+        return new IdempotencyClaim<>(null, 0);
+    }
+
+    // may run once per attempt when the caller retries its transaction; the last commit wins
+    public void complete(T response) {
+        if (service == null) {
+            return;
+        }
+        service.complete(id, response);
+        this.response = response;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            committed = false;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    committed = status == STATUS_COMMITTED;
+                }
+            });
+        } else {
+            committed = true;
+        }
+    }
+
+    long id() {
+        return id;
+    }
+
+    T response() {
+        return response;
+    }
+
+    boolean isCommitted() {
+        return committed;
+    }
+}
@@ -0,0 +1,20 @@
+package com.myownspringapp.mankatbank.idempotency;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+// ahead of AuthExceptionHandler, whose RuntimeException handler would otherwise win
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RestControllerAdvice
+public class IdempotencyExceptionHandler {
+
+    @ExceptionHandler(IdempotencyException.class)
+    public ResponseEntity<Map<String, String>> handle(IdempotencyException ex) {
+        return ResponseEntity.status(ex.getStatus()).body(Map.of("message", ex.getMessage()));
+    }
+}
@@ -0,0 +1,71 @@
+package com.myownspringapp.mankatbank.idempotency;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+// One row per (user, Idempotency-Key). Written by IdempotencyService with plain JDBC: claimed with
+// no response, then completed in the same DB transaction that moved the money.
+@Entity
+@Table(name = "idempotency_keys",
+        uniqueConstraints = @UniqueConstraint(name = "uk_idempotency_user_key", columnNames = {"user_id", "idem_key"}),
+        indexes = @Index(name = "idx_idempotency_expires", columnList = "expires_at"))
+public class IdempotencyRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "idem_key", length = 100, nullable = false)
+    private String key;
+
+    // SHA-256 of what the request asked for, so a key can't be reused for a different request
+    @Column(name = "request_hash", length = 64, nullable = false)
+    private String requestHash;
+
+    // JSON; null while the first attempt is still running
+    @JdbcTypeCode(SqlTypes.LONG32VARCHAR)
+    private String response;
+
+    // an unfinished claim older than this is taken to be abandoned (crashed instance)
+    @Column(name = "locked_until")
+    private Instant lockedUntil;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    protected IdempotencyRecord() {}
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public Instant getLockedUntil() {
+        return lockedUntil;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,326 @@
+package com.myownspringapp.mankatbank.idempotency;
+
+import com.myownspringapp.mankatbank.BoundedCaches;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Idempotency-Key support for the money-moving endpoints. A replay is answered from a bounded
+// in-memory cache, or from the idempotency_keys table on a miss, without touching accounts.
+// Duplicates that arrive while the first attempt is running wait for it: on this instance on a
+// future, across instances by polling the claimed row.
+//
+// Not offered with the ledger engine: it moves money outside any DB transaction, so the stored
+// response can't commit together with it, and a claim taken over after a crash would move it again.
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final String IN_PROGRESS = "A request with this Idempotency-Key is still in progress";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate claimTransaction;
+    private final JsonMapper jsonMapper;
+    private final Duration ttl;
+    private final Duration lease;
+    private final Duration waitTimeout;
+    private final long pollMillis;
+    private final int cacheSize;
+    private final boolean ledgerEnabled;
+
+    // "userId:key" -> completed response, and the attempts currently running on this instance
+    private final Map<String, Completed> completed = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter executed;
+    private final Counter cachedReplays;
+    private final Counter storedReplays;
+    private final Counter rejected;
+
+    private record Completed(String requestHash, Object response, Instant expiresAt) {}
+
+    private record Stored(long id, String requestHash, String response, Instant lockedUntil, Instant expiresAt) {}
+
+    public IdempotencyService(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              JsonMapper jsonMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.idempotency.ttl:PT24H}") Duration ttl,
+                              @Value("${app.idempotency.lease:PT1M}") Duration lease,
+                              @Value("${app.idempotency.waitTimeout:PT10S}") Duration waitTimeout,
+                              @Value("${app.idempotency.pollMillis:50}") long pollMillis,
+                              @Value("${app.idempotency.cacheSize:10000}") int cacheSize,
+                              @Value("${app.ledger.enabled:false}") boolean ledgerEnabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // claims must be visible to other requests right away, whatever the caller is inside of
+        this.claimTransaction = new TransactionTemplate(transactionManager);
+        this.claimTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.jsonMapper = jsonMapper;
+        this.ttl = ttl;
+        this.lease = lease;
+        this.waitTimeout = waitTimeout;
+        this.pollMillis = pollMillis;
+        this.cacheSize = cacheSize;
+        this.ledgerEnabled = ledgerEnabled;
+
+        this.executed = Counter.builder("bank.idempotency.requests").tag("result", "executed").register(meterRegistry);
+        this.cachedReplays = Counter.builder("bank.idempotency.requests").tag("result", "cached").register(meterRegistry);
+        this.storedReplays = Counter.builder("bank.idempotency.requests").tag("result", "stored").register(meterRegistry);
+        this.rejected = Counter.builder("bank.idempotency.requests").tag("result", "rejected").register(meterRegistry);
+        Gauge.builder("bank.idempotency.cache.size", completed, Map::size).register(meterRegistry);
+    }
+
+    // For work that needs nothing but a transaction: runs it and stores its response in that transaction.
+    public <T> T executeInTransaction(Long userId, String key, String request, TypeReference<T> type, Supplier<T> work) {
+        return execute(userId, key, request, type, claim -> transactionTemplate.execute(status -> {
+            T response = work.get();
+            claim.complete(response);
+            return response;
+        }));
+    }
+
+    // `request` describes what is being asked for; the same key with a different request is rejected.
+    // The work must call claim.complete(response) inside the transaction that moves the money.
+    public <T> T execute(Long userId, String key, String request, TypeReference<T> type,
+                         Function<IdempotencyClaim<T>, T> work) {
+        if (key == null) {
+            return work.apply(IdempotencyClaim.none());
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        if (ledgerEnabled) {
+            throw new IdempotencyException(HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key is not supported while the ledger engine is enabled");
+        }
+
+        String scope = userId + ":" + key;
+        String requestHash = sha256(request);
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            Completed done = completed.get(scope);
+            if (done != null && done.expiresAt().isAfter(Instant.now())) {
+                requireSameRequest(done.requestHash(), requestHash);
+                cachedReplays.increment();
+                @SuppressWarnings("unchecked")
+                T response = (T) done.response();
+                return response;
+            }
+
+            CompletableFuture<Void> mine = new CompletableFuture<>();
+            CompletableFuture<Void> running = inFlight.putIfAbsent(scope, mine);
+            if (running != null) {
+                // the first attempt either cached its response or released the key; look again
+                await(running, deadline);
+                continue;
+            }
+            try {
+                return attempt(userId, key, scope, requestHash, type, work, deadline);
+            } finally {
+                inFlight.remove(scope, mine);
+                mine.complete(null);
+            }
+        }
+    }
+
+    private <T> T attempt(Long userId, String key, String scope, String requestHash, TypeReference<T> type,
+                          Function<IdempotencyClaim<T>, T> work, long deadline) {
+        while (true) {
+            Long claimId = claim(userId, key, requestHash);
+            if (claimId != null) {
+                return run(claimId, scope, requestHash, work);
+            }
+
+            Stored stored = find(userId, key);
+            if (stored == null) {
+                continue; // released or purged since our insert failed
+            }
+            requireSameRequest(stored.requestHash(), requestHash);
+            if (stored.response() != null) {
+                T response = jsonMapper.readValue(stored.response(), type);
+                remember(scope, requestHash, response, stored.expiresAt());
+                storedReplays.increment();
+                return response;
+            }
+            if (stored.lockedUntil().isBefore(Instant.now()) && takeOver(stored.id())) {
+                return run(stored.id(), scope, requestHash, work);
+            }
+
+            // still running on another instance
+            if (System.nanoTime() - deadline > 0) {
+                throw new IdempotencyException(HttpStatus.CONFLICT, IN_PROGRESS);
+            }
+            sleep(pollMillis);
+        }
+    }
+
+    private <T> T run(long claimId, String scope, String requestHash, Function<IdempotencyClaim<T>, T> work) {
+        IdempotencyClaim<T> claim = new IdempotencyClaim<>(this, claimId);
+        T response;
+        try {
+            response = work.apply(claim);
+        } catch (RuntimeException | Error ex) {
+            release(claim.id());
+            throw ex;
+        }
+        if (!claim.isCommitted()) {
+            // the work finished without recording anything, so there is nothing to replay
+            release(claim.id());
+            return response;
+        }
+        executed.increment();
+        remember(scope, requestHash, claim.response(), Instant.now().plus(ttl));
+        return response;
+    }
+
+    // Called from IdempotencyClaim inside the caller's transaction. Zero rows means our claim went
+    // stale and another attempt finished first; throwing rolls this attempt's money movement back.
+    void complete(long claimId, Object response) {
+        int updated = jdbcTemplate.update(
+                "update idempotency_keys set response = ?, locked_until = null, expires_at = ? where id = ? and response is null",
+                jsonMapper.writeValueAsString(response), Timestamp.from(Instant.now().plus(ttl)), claimId);
+        if (updated == 0) {
+            throw new IdempotencyException(HttpStatus.CONFLICT, "Idempotency-Key was completed by another attempt");
+        }
+    }
+
+    private Long claim(Long userId, String key, String requestHash) {
+        Instant now = Instant.now();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        try {
+            claimTransaction.executeWithoutResult(status -> jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(
+                        "insert into idempotency_keys (user_id, idem_key, request_hash, locked_until, expires_at) values (?, ?, ?, ?, ?)",
+                        new String[]{"id"});
+                ps.setLong(1, userId);
+                ps.setString(2, key);
+                ps.setString(3, requestHash);
+                ps.setTimestamp(4, Timestamp.from(now.plus(lease)));
+                ps.setTimestamp(5, Timestamp.from(now.plus(ttl)));
+                return ps;
+            }, keyHolder));
+        } catch (DuplicateKeyException ex) {
+            return null;
+        }
+        return keyHolder.getKey().longValue();
+    }
+
+    private Stored find(Long userId, String key) {
+        return jdbcTemplate.query(
+                "select id, request_hash, response, locked_until, expires_at from idempotency_keys where user_id = ? and idem_key = ?",
+                rs -> {
+                    if (!rs.next()) return null;
+                    Timestamp lockedUntil = rs.getTimestamp("locked_until");
+                    return new Stored(rs.getLong("id"), rs.getString("request_hash"), rs.getString("response"),
+                            lockedUntil == null ? Instant.MIN : lockedUntil.toInstant(),
+                            rs.getTimestamp("expires_at").toInstant());
+                },
+                userId, key);
+    }
+
+    // only one of several instances finding the same abandoned claim gets it
+    private boolean takeOver(long claimId) {
+        Instant now = Instant.now();
+        Integer updated = claimTransaction.execute(status -> jdbcTemplate.update(
+                "update idempotency_keys set locked_until = ? where id = ? and response is null and locked_until < ?",
+                Timestamp.from(now.plus(lease)), claimId, Timestamp.from(now)));
+        return updated != null && updated == 1;
+    }
+
+    // a failed attempt moved no money, so the key is free for the client's next retry
+    private void release(long claimId) {
+        claimTransaction.executeWithoutResult(status ->
+                jdbcTemplate.update("delete from idempotency_keys where id = ? and response is null", claimId));
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purgeMillis:3600000}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        completed.values().removeIf(done -> !done.expiresAt().isAfter(now));
+        jdbcTemplate.update("delete from idempotency_keys where expires_at <= ?", Timestamp.from(now));
+    }
+
+    private void remember(String scope, String requestHash, Object response, Instant expiresAt) {
+        BoundedCaches.makeRoom(completed, cacheSize);
+        completed.put(scope, new Completed(requestHash, response, expiresAt));
+    }
+
+    void clearCache() {
+        completed.clear();
+    }
+
+    int cacheSize() {
+        return completed.size();
+    }
+
+    private void requireSameRequest(String expected, String actual) {
+        if (!expected.equals(actual)) {
+            rejected.increment();
+            throw new IdempotencyException(HttpStatus.UNPROCESSABLE_CONTENT,
+                    "Idempotency-Key was already used for a different request");
+        }
+    }
+
+    private static void await(CompletableFuture<Void> running, long deadline) {
+        try {
+            running.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            throw new IdempotencyException(HttpStatus.CONFLICT, IN_PROGRESS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyException(HttpStatus.CONFLICT, IN_PROGRESS);
+        } catch (ExecutionException ex) {
+            // never completed exceptionally
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyException(HttpStatus.CONFLICT, IN_PROGRESS);
+        }
+    }
+
+    private static String sha256(String request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(request.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.myownspringapp.mankatbank.ledger;
+
+import jakarta.persistence.*;
+
+// how far the journal has been copied into accounts/transactions; written in the same DB transaction
+// as the rows it covers, so projection is exactly-once across restarts
+@Entity
+@Table(name = "ledger_projection")
+public class LedgerCheckpoint {
+
+    @Id
+    @Column(length = 32)
+    private String name;
+
+    @Column(nullable = false)
+    private long lastSeq;
+
+    protected LedgerCheckpoint() {}
+
+    public LedgerCheckpoint(String name, long lastSeq) {
+        this.name = name;
+        this.lastSeq = lastSeq;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public void setLastSeq(long lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+}
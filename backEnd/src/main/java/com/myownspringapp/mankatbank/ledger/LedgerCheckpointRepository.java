@@ -0,0 +1,6 @@
+package com.myownspringapp.mankatbank.ledger;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface LedgerCheckpointRepository extends JpaRepository<LedgerCheckpoint, String> {
+}
@@ -0,0 +1,83 @@
+package com.myownspringapp.mankatbank.ledger;
+
+import com.myownspringapp.mankatbank.JournalService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Off by default (app.ledger.enabled). When on, money movements go through LedgerEngine and the
+// accounts/transactions tables become a projection that trails the journal by a few milliseconds.
+@Configuration
+@ConditionalOnProperty(name = "app.ledger.enabled", havingValue = "true")
+public class LedgerConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerConfig.class);
+
+    @Bean(destroyMethod = "")
+    public LedgerJournal ledgerJournal(@Value("${app.ledger.dir:./data/ledger}") String dir,
+                                       @Value("${app.ledger.ringSize:4096}") int ringSize,
+                                       @Value("${app.ledger.groupCommitMax:512}") int groupCommitMax,
+                                       @Value("${app.ledger.snapshotEvery:100000}") long snapshotEvery) throws IOException {
+        // closed by the engine, which has to stop its partitions first
+        return LedgerJournal.open(Path.of(dir), ringSize, groupCommitMax, snapshotEvery);
+    }
+
+    @Bean(destroyMethod = "close")
+    public LedgerProjector ledgerProjector(JdbcTemplate jdbcTemplate,
+                                           JournalService journalService,
+                                           LedgerCheckpointRepository checkpointRepository,
+                                           PlatformTransactionManager transactionManager,
+                                           LedgerJournal journal,
+                                           @Value("${app.ledger.groupCommitMax:512}") int groupCommitMax) throws IOException {
+        LedgerProjector projector = new LedgerProjector(jdbcTemplate, journalService, checkpointRepository,
+                transactionManager, journal, groupCommitMax);
+        projector.catchUp();
+        journal.onDurable(projector::enqueue);
+        projector.start();
+        return projector;
+    }
+
+    // depends on the projector, so it is destroyed first: partitions stop, journal drains, then the
+    // projector flushes whatever the last group commits produced
+    @Bean(destroyMethod = "close")
+    public LedgerEngine ledgerEngine(LedgerJournal journal,
+                                     LedgerProjector projector,
+                                     JdbcTemplate jdbcTemplate,
+                                     @Value("${app.ledger.partitions:4}") int partitions,
+                                     @Value("${app.ledger.ringSize:4096}") int ringSize) {
+        // shards left over from when the account was hot still count
+        LedgerEngine.BalanceLoader loader = id -> jdbcTemplate.query(
+                "select a.balance + coalesce((select sum(s.balance) from account_balance_shards s " +
+                        "where s.account_id = a.id), 0) from accounts a where a.id = ?",
+                rs -> rs.next() ? rs.getLong(1) : null, id);
+
+        // anything changed in the DB while the engine was off wins over what the journal remembers
+        Map<Long, Long> dbBalances = new HashMap<>();
+        jdbcTemplate.query("select a.id, a.balance + coalesce((select sum(s.balance) from account_balance_shards s " +
+                        "where s.account_id = a.id), 0) from accounts a",
+                rs -> { dbBalances.put(rs.getLong(1), rs.getLong(2)); });
+        List<Map.Entry<Long, Long>> stale = journal.recoveredBalances().entrySet().stream()
+                .filter(e -> dbBalances.containsKey(e.getKey()) && !dbBalances.get(e.getKey()).equals(e.getValue()))
+                .toList();
+
+        LedgerEngine engine = new LedgerEngine(journal, loader, partitions, ringSize);
+        engine.start();
+        for (Map.Entry<Long, Long> e : stale) {
+            log.warn("Ledger balance for account {} was {}, DB has {}; rebasing", e.getKey(), e.getValue(),
+                    dbBalances.get(e.getKey()));
+            engine.rebase(e.getKey(), dbBalances.get(e.getKey()));
+        }
+        return engine;
+    }
+}
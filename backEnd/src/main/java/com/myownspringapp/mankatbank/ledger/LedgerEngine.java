@@ -0,0 +1,289 @@
+package com.myownspringapp.mankatbank.ledger;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+// In-memory balances, one writer thread per partition (accountId % partitions), so a balance is only
+// ever touched by a single thread and needs no locks. Every change goes to the journal and only lands
+// in memory once that entry is fsync'd: until then a debit is held (later commands can't spend it)
+// and a failed fsync just releases the hold, so memory never runs ahead of what recovery would rebuild.
+//
+// A transfer runs on the source partition: hold the debit and journal the TRANSFER; once it is durable,
+// apply the debit and hand the credit to the destination partition through its unbounded queue of
+// durable work (never the bounded ring, so two partitions can't block on each other). The credit
+// can't fail: the destination was loaded before we started.
+public final class LedgerEngine implements AutoCloseable {
+
+    // returns the DB balance, or null if the account doesn't exist
+    public interface BalanceLoader {
+        Long load(long accountId);
+    }
+
+    private enum Op { OPEN, READ, DEPOSIT, WITHDRAW, TRANSFER, REBASE }
+
+    private record Command(Op op, long accountId, long counterpartyId, long amount, CompletableFuture<Long> result) {}
+
+    private final LedgerJournal journal;
+    private final BalanceLoader loader;
+    private final Partition[] partitions;
+    private final Set<Long> known = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+
+    public LedgerEngine(LedgerJournal journal, BalanceLoader loader, int partitionCount, int ringSize) {
+        this.journal = journal;
+        this.loader = loader;
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i, ringSize);
+        }
+        journal.recoveredBalances().forEach((id, balance) -> {
+            partitionOf(id).balances.put(id, new long[]{balance, 0});
+            known.add(id);
+        });
+    }
+
+    public void start() {
+        running = true;
+        journal.start();
+        for (Partition partition : partitions) {
+            partition.thread.start();
+        }
+    }
+
+    public long balance(long accountId) {
+        return await(submit(Op.READ, accountId, 0, 0));
+    }
+
+    public long deposit(long accountId, long amount) {
+        if (amount <= 0) throw new IllegalArgumentException("Deposit amount must be positive");
+        return await(submit(Op.DEPOSIT, accountId, 0, amount));
+    }
+
+    public long withdraw(long accountId, long amount) {
+        if (amount <= 0) throw new IllegalArgumentException("Withdraw amount must be positive");
+        return await(submit(Op.WITHDRAW, accountId, 0, amount));
+    }
+
+    public void transfer(long fromId, long toId, long amount) {
+        await(transferAsync(fromId, toId, amount));
+    }
+
+    // Completes with the source balance once the TRANSFER entry is durable. Loading an unknown
+    // destination happens here on the caller thread so partition threads never wait on each other.
+    public CompletableFuture<Long> transferAsync(long fromId, long toId, long amount) {
+        if (amount <= 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Transfer amount must be positive"));
+        }
+        if (fromId == toId) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Cannot transfer to the same account"));
+        }
+        if (!known.contains(toId)) {
+            try {
+                await(submit(Op.OPEN, toId, 0, 0));
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException("To account not found"));
+            }
+        }
+        return submit(Op.TRANSFER, fromId, toId, amount);
+    }
+
+    // resets an account to its DB balance, used at startup when the DB was changed behind our back
+    public void rebase(long accountId, long balance) {
+        await(submit(Op.REBASE, accountId, 0, balance));
+    }
+
+    // unwraps future failures so callers see the same IllegalArgumentExceptions as the JPA path
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for the ledger", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private CompletableFuture<Long> submit(Op op, long accountId, long counterpartyId, long amount) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Ledger engine is not running"));
+        }
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        Partition partition = partitionOf(accountId);
+        try {
+            partition.ring.put(new Command(op, accountId, counterpartyId, amount, result));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+            return result;
+        }
+        LockSupport.unpark(partition.thread);
+        return result;
+    }
+
+    private Partition partitionOf(long accountId) {
+        return partitions[(int) Math.floorMod(accountId, (long) partitions.length)];
+    }
+
+    private static long nowMicros() {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+    }
+
+    @Override
+    public void close() throws IOException {
+        stopPartitions();
+        journal.close();
+    }
+
+    // crash simulation for tests: partitions stop, nothing queued gets written, no snapshot
+    void halt() throws IOException {
+        stopPartitions();
+        journal.halt();
+    }
+
+    private void stopPartitions() {
+        running = false;
+        for (Partition partition : partitions) {
+            LockSupport.unpark(partition.thread);
+            try {
+                partition.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final class Partition implements Runnable {
+
+        private final BlockingQueue<Command> ring;
+        // runs on this thread for entries the journal already has: settling our own appends, credits
+        private final Queue<Runnable> durable = new ConcurrentLinkedQueue<>();
+        // {balance, held}: held is what journaled-but-not-yet-durable debits will take out
+        private final Map<Long, long[]> balances = new HashMap<>();
+        private final Thread thread;
+        private int inFlight;
+
+        Partition(int index, int ringSize) {
+            this.ring = new ArrayBlockingQueue<>(ringSize);
+            this.thread = new Thread(this, "ledger-partition-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running || !ring.isEmpty() || !durable.isEmpty() || inFlight > 0) {
+                // durable work first: it is already committed and frees held money
+                Runnable settled = durable.poll();
+                if (settled != null) {
+                    settled.run();
+                    continue;
+                }
+                Command command = ring.poll();
+                if (command == null) {
+                    LockSupport.parkNanos(100_000);
+                    continue;
+                }
+                try {
+                    execute(command);
+                } catch (RuntimeException e) {
+                    command.result().completeExceptionally(e);
+                }
+            }
+        }
+
+        private void execute(Command c) {
+            switch (c.op()) {
+                case OPEN -> c.result().complete(load(c.accountId())[0]);
+                case READ -> c.result().complete(load(c.accountId())[0]);
+                case DEPOSIT -> append(LedgerEntry.Kind.DEPOSIT, c, load(c.accountId()), 0);
+                case WITHDRAW -> append(LedgerEntry.Kind.WITHDRAW, c, available(c), c.amount());
+                case TRANSFER -> append(LedgerEntry.Kind.TRANSFER, c, available(c), c.amount());
+                case REBASE -> {
+                    long[] balance = balances.computeIfAbsent(c.accountId(), id -> new long[2]);
+                    known.add(c.accountId());
+                    inFlight++;
+                    journal.append(new LedgerEntry(0, LedgerEntry.Kind.OPEN, c.accountId(), 0, c.amount(), nowMicros()))
+                            .whenComplete((entry, failure) -> settle(() -> {
+                                if (failure == null) balance[0] = c.amount();
+                                finish(c.result(), balance[0], failure);
+                            }));
+                }
+            }
+        }
+
+        // first touch pulls the DB balance and journals it as OPEN, so replay never needs the DB
+        private long[] load(long accountId) {
+            long[] balance = balances.get(accountId);
+            if (balance != null) return balance;
+
+            Long stored = loader.load(accountId);
+            if (stored == null) throw new IllegalArgumentException("Account not found");
+            balance = new long[]{stored, 0};
+            balances.put(accountId, balance);
+            known.add(accountId);
+            journal.append(new LedgerEntry(0, LedgerEntry.Kind.OPEN, accountId, 0, stored, nowMicros()));
+            return balance;
+        }
+
+        private long[] available(Command c) {
+            long[] balance = load(c.accountId());
+            if (balance[0] - balance[1] < c.amount()) throw new IllegalArgumentException("Insufficient funds");
+            return balance;
+        }
+
+        // the balance moves, and a transfer's credit is sent, only once the entry is durable
+        private void append(LedgerEntry.Kind kind, Command c, long[] balance, long hold) {
+            balance[1] += hold;
+            inFlight++;
+            journal.append(new LedgerEntry(0, kind, c.accountId(), c.counterpartyId(), c.amount(), nowMicros()))
+                    .whenComplete((entry, failure) -> settle(() -> {
+                        balance[1] -= hold;
+                        if (failure == null) {
+                            balance[0] += (kind == LedgerEntry.Kind.DEPOSIT) ? c.amount() : -c.amount();
+                            if (kind == LedgerEntry.Kind.TRANSFER) credit(c.counterpartyId(), c.amount());
+                        }
+                        finish(c.result(), balance[0], failure);
+                    }));
+        }
+
+        private void credit(long accountId, long amount) {
+            Partition target = partitionOf(accountId);
+            if (target == this) {
+                balances.get(accountId)[0] += amount;
+            } else {
+                target.durable.add(() -> target.balances.get(accountId)[0] += amount);
+                LockSupport.unpark(target.thread);
+            }
+        }
+
+        // called on the journal writer thread; the work itself runs back on this partition's thread
+        private void settle(Runnable work) {
+            durable.add(() -> {
+                inFlight--;
+                work.run();
+            });
+            LockSupport.unpark(thread);
+        }
+
+        private void finish(CompletableFuture<Long> result, long value, Throwable failure) {
+            if (failure != null) result.completeExceptionally(failure);
+            else result.complete(value);
+        }
+    }
+}
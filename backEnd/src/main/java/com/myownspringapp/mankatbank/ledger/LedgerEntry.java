@@ -0,0 +1,56 @@
+package com.myownspringapp.mankatbank.ledger;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+// One durable journal record. OPEN carries the balance an account had in the DB when the engine first
+// touched it; every later entry is a delta on top of that.
+public record LedgerEntry(
+        long seq,
+        Kind kind,
+        long accountId,
+        long counterpartyId,
+        long amount,
+        long timestampMicros
+) {
+
+    public enum Kind { OPEN, DEPOSIT, WITHDRAW, TRANSFER }
+
+    // crc(4) + seq(8) + kind(1) + account(8) + counterparty(8) + amount(8) + timestamp(8)
+    static final int RECORD_SIZE = 45;
+    static final int PAYLOAD_SIZE = RECORD_SIZE - 4;
+
+    LedgerEntry withSeq(long newSeq) {
+        return new LedgerEntry(newSeq, kind, accountId, counterpartyId, amount, timestampMicros);
+    }
+
+    void apply(Map<Long, Long> balances) {
+        switch (kind) {
+            case OPEN -> balances.put(accountId, amount);
+            case DEPOSIT -> balances.merge(accountId, amount, Long::sum);
+            case WITHDRAW -> balances.merge(accountId, -amount, Long::sum);
+            case TRANSFER -> {
+                balances.merge(accountId, -amount, Long::sum);
+                balances.merge(counterpartyId, amount, Long::sum);
+            }
+        }
+    }
+
+    void writePayload(ByteBuffer buf) {
+        buf.putLong(seq)
+                .put((byte) kind.ordinal())
+                .putLong(accountId)
+                .putLong(counterpartyId)
+                .putLong(amount)
+                .putLong(timestampMicros);
+    }
+
+    static LedgerEntry readPayload(ByteBuffer buf) {
+        long seq = buf.getLong();
+        int kind = buf.get();
+        if (kind < 0 || kind >= Kind.values().length) {
+            throw new IllegalStateException("Unknown ledger entry kind " + kind);
+        }
+        return new LedgerEntry(seq, Kind.values()[kind], buf.getLong(), buf.getLong(), buf.getLong(), buf.getLong());
+    }
+}
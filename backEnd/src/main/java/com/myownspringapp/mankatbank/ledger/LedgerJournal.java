@@ -0,0 +1,418 @@
+package com.myownspringapp.mankatbank.ledger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead journal. A single writer thread drains whatever has queued up, assigns
+// sequence numbers, writes the batch and fsyncs once (group commit) before completing any future.
+//
+// On disk: journal-<firstSeq>.log segments of fixed-size CRC'd records, plus snapshot-<seq>.bin
+// holding every balance as of <seq>. Recovery = newest valid snapshot + the records after it; a torn
+// record at the tail (crash mid-write) is cut off, which is safe because it was never acknowledged.
+public final class LedgerJournal implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerJournal.class);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final long SNAPSHOT_MAGIC = 0x4d4b4c4544474552L; // "MKLEDGER"
+
+    private record Pending(LedgerEntry entry, CompletableFuture<LedgerEntry> done) {}
+
+    private final Path dir;
+    private final int maxBatch;
+    private final long snapshotEvery;
+    private final BlockingQueue<Pending> queue;
+    private final ByteBuffer buffer;
+    private Consumer<List<LedgerEntry>> onDurable = entries -> { };
+
+    // owned by the writer thread once started
+    private final Map<Long, Long> durableBalances;
+    private long lastSeq;
+    private long snapshotSeq;
+    private FileChannel segment;
+
+    private volatile long projectedSeq;
+    private volatile boolean running;
+    private volatile Exception failure;
+    private volatile IOException syncFailure;
+    private Thread writer;
+
+    private LedgerJournal(Path dir, int capacity, int maxBatch, long snapshotEvery,
+                          Map<Long, Long> balances, long snapshotSeq, long lastSeq) {
+        this.dir = dir;
+        this.maxBatch = maxBatch;
+        this.snapshotEvery = snapshotEvery;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.buffer = ByteBuffer.allocate(maxBatch * LedgerEntry.RECORD_SIZE);
+        this.durableBalances = balances;
+        this.snapshotSeq = snapshotSeq;
+        this.lastSeq = lastSeq;
+    }
+
+    public static LedgerJournal open(Path dir, int capacity, int maxBatch, long snapshotEvery) throws IOException {
+        Files.createDirectories(dir);
+
+        Map<Long, Long> balances = new HashMap<>();
+        long snapshotSeq = loadNewestSnapshot(dir, balances);
+        long lastSeq = snapshotSeq;
+
+        List<Path> segments = segments(dir);
+        for (int i = 0; i < segments.size(); i++) {
+            long expected = firstSeq(segments.get(i));
+            long validBytes = 0;
+            boolean torn = false;
+            for (LedgerEntry entry : readSegment(segments.get(i))) {
+                if (entry == null || entry.seq() != expected) {
+                    torn = true;
+                    break;
+                }
+                if (entry.seq() > snapshotSeq) {
+                    entry.apply(balances);
+                }
+                lastSeq = Math.max(lastSeq, entry.seq());
+                expected++;
+                validBytes += LedgerEntry.RECORD_SIZE;
+            }
+            if (torn || Files.size(segments.get(i)) != validBytes) {
+                log.warn("Ledger journal {} has an incomplete tail after seq {}; truncating", segments.get(i), lastSeq);
+                try (FileChannel ch = FileChannel.open(segments.get(i), StandardOpenOption.WRITE)) {
+                    ch.truncate(validBytes);
+                    ch.force(true);
+                }
+                for (Path later : segments.subList(i + 1, segments.size())) {
+                    Files.delete(later);
+                }
+                break;
+            }
+        }
+
+        LedgerJournal journal = new LedgerJournal(dir, capacity, maxBatch, snapshotEvery, balances, snapshotSeq, lastSeq);
+        journal.segment = openSegment(dir, lastSeq + 1);
+        return journal;
+    }
+
+    // must be called before start(); the callback runs on the writer thread after each fsync
+    public void onDurable(Consumer<List<LedgerEntry>> onDurable) {
+        this.onDurable = onDurable;
+    }
+
+    public Map<Long, Long> recoveredBalances() {
+        return Map.copyOf(durableBalances);
+    }
+
+    public long lastSeq() {
+        return lastSeq;
+    }
+
+    // Feeds every retained entry after afterSeq to the consumer, in order. Only valid before start().
+    public void replay(long afterSeq, int batchSize, Consumer<List<LedgerEntry>> consumer) throws IOException {
+        List<LedgerEntry> batch = new ArrayList<>(batchSize);
+        for (Path path : segments(dir)) {
+            for (LedgerEntry entry : readSegment(path)) {
+                if (entry == null) break;
+                if (entry.seq() <= afterSeq) continue;
+                batch.add(entry);
+                if (batch.size() == batchSize) {
+                    consumer.accept(List.copyOf(batch));
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) consumer.accept(List.copyOf(batch));
+    }
+
+    public void start() {
+        running = true;
+        writer = new Thread(this::run, "ledger-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Completes once the entry is on disk; the returned entry carries its sequence number.
+    public CompletableFuture<LedgerEntry> append(LedgerEntry entry) {
+        CompletableFuture<LedgerEntry> done = new CompletableFuture<>();
+        if (failure != null || !running) {
+            done.completeExceptionally(new IllegalStateException("Ledger journal is not accepting writes", failure));
+            return done;
+        }
+        Pending pending = new Pending(entry, done);
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            done.completeExceptionally(e);
+            return done;
+        }
+        if (failure != null && queue.remove(pending)) {
+            done.completeExceptionally(new IllegalStateException("Ledger journal failed", failure));
+        }
+        return done;
+    }
+
+    // segments are only deleted once both a snapshot and the DB projection have moved past them
+    public void markProjected(long seq) {
+        if (seq > projectedSeq) projectedSeq = seq;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        try {
+            while (running || !queue.isEmpty()) {
+                Pending first = queue.poll(20, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                commit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Ledger journal write failed; no further writes are accepted", e);
+            failure = e;
+            batch.forEach(p -> p.done().completeExceptionally(e));
+            Pending p;
+            while ((p = queue.poll()) != null) {
+                p.done().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) throws IOException {
+        buffer.clear();
+        List<LedgerEntry> entries = new ArrayList<>(batch.size());
+        CRC32 crc = new CRC32();
+        for (Pending pending : batch) {
+            LedgerEntry entry = pending.entry().withSeq(++lastSeq);
+            entries.add(entry);
+
+            int start = buffer.position();
+            buffer.position(start + 4);
+            entry.writePayload(buffer);
+            crc.reset();
+            crc.update(buffer.array(), start + 4, LedgerEntry.PAYLOAD_SIZE);
+            buffer.putInt(start, (int) crc.getValue());
+        }
+        buffer.flip();
+        long committed = segment.position();
+        try {
+            while (buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+            IOException injected = syncFailure;
+            if (injected != null) {
+                syncFailure = null;
+                throw injected;
+            }
+            segment.force(false);
+        } catch (IOException e) {
+            // nobody was told this batch happened, so recovery must not find it either
+            try {
+                segment.truncate(committed);
+            } catch (IOException truncate) {
+                e.addSuppressed(truncate);
+            }
+            throw e;
+        }
+
+        for (LedgerEntry entry : entries) {
+            entry.apply(durableBalances);
+        }
+        onDurable.accept(entries);
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).done().complete(entries.get(i));
+        }
+
+        if (lastSeq - snapshotSeq >= snapshotEvery) {
+            checkpoint();
+        }
+    }
+
+    // snapshot the durable balances, start a new segment and drop what neither recovery nor projection needs
+    private void checkpoint() throws IOException {
+        segment.force(true);
+        segment.close();
+        segment = openSegment(dir, lastSeq + 1);
+
+        writeSnapshot(dir, lastSeq, durableBalances);
+        snapshotSeq = lastSeq;
+
+        long keepAfter = Math.min(snapshotSeq, projectedSeq);
+        List<Path> segments = segments(dir);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSeq(segments.get(i + 1)) - 1 <= keepAfter) {
+                Files.delete(segments.get(i));
+            }
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path old : files.filter(p -> isSnapshot(p) && snapshotSeq(p) < snapshotSeq).toList()) {
+                Files.delete(old);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure == null && lastSeq > snapshotSeq) {
+            checkpoint();
+        }
+        segment.close();
+    }
+
+    // simulates a crash: stop at once, no snapshot, no draining; for recovery tests
+    void halt() throws IOException {
+        running = false;
+        queue.clear();
+        if (writer != null) {
+            writer.interrupt();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        segment.close();
+    }
+
+    // fault injection for tests: the next group commit fails its fsync with this
+    void failNextSync(IOException e) {
+        syncFailure = e;
+    }
+
+    // ---- files ----
+
+    private static FileChannel openSegment(Path dir, long firstSeq) throws IOException {
+        Path path = dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSeq, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted(Comparator.comparingLong(LedgerJournal::firstSeq))
+                    .toList();
+        }
+    }
+
+    private static long firstSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // valid records in order; a null element marks a corrupt record (nothing after it is returned)
+    private static List<LedgerEntry> readSegment(Path path) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        List<LedgerEntry> entries = new ArrayList<>(data.capacity() / LedgerEntry.RECORD_SIZE);
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= LedgerEntry.RECORD_SIZE) {
+            int start = data.position();
+            int stored = data.getInt();
+            crc.reset();
+            crc.update(data.array(), start + 4, LedgerEntry.PAYLOAD_SIZE);
+            if ((int) crc.getValue() != stored) {
+                entries.add(null);
+                return entries;
+            }
+            try {
+                entries.add(LedgerEntry.readPayload(data));
+            } catch (IllegalStateException e) {
+                entries.add(null);
+                return entries;
+            }
+        }
+        return entries;
+    }
+
+    private static boolean isSnapshot(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+    }
+
+    private static long snapshotSeq(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    private static void writeSnapshot(Path dir, long seq, Map<Long, Long> balances) throws IOException {
+        Path target = dir.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, seq, SNAPSHOT_SUFFIX));
+        Path tmp = dir.resolve(target.getFileName() + ".tmp");
+
+        ByteBuffer data = ByteBuffer.allocate(8 + 8 + 4 + balances.size() * 16 + 8);
+        data.putLong(SNAPSHOT_MAGIC).putLong(seq).putInt(balances.size());
+        balances.forEach((id, balance) -> data.putLong(id).putLong(balance));
+        CRC32 crc = new CRC32();
+        crc.update(data.array(), 0, data.position());
+        data.putLong(crc.getValue());
+        data.flip();
+
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            while (data.hasRemaining()) ch.write(data);
+            ch.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // newest snapshot that passes its checksum; 0 if there is none
+    private static long loadNewestSnapshot(Path dir, Map<Long, Long> balances) throws IOException {
+        List<Path> snapshots;
+        try (Stream<Path> files = Files.list(dir)) {
+            snapshots = files.filter(LedgerJournal::isSnapshot)
+                    .sorted(Comparator.comparingLong(LedgerJournal::snapshotSeq).reversed())
+                    .toList();
+        }
+        for (Path path : snapshots) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (data.capacity() < 28 || data.getLong() != SNAPSHOT_MAGIC) {
+                log.warn("Ignoring unreadable ledger snapshot {}", path);
+                continue;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data.array(), 0, data.capacity() - 8);
+            if (crc.getValue() != data.getLong(data.capacity() - 8)) {
+                log.warn("Ignoring ledger snapshot {} with a bad checksum", path);
+                continue;
+            }
+            long seq = data.getLong();
+            int count = data.getInt();
+            for (int i = 0; i < count; i++) {
+                balances.put(data.getLong(), data.getLong());
+            }
+            return seq;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,171 @@
+package com.myownspringapp.mankatbank.ledger;
+
+import com.myownspringapp.mankatbank.JournalEntry;
+import com.myownspringapp.mankatbank.JournalService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Copies durable journal entries into accounts/transactions in the background. Balances are applied as
+// per-account deltas (balance = balance + ?) so one DB round trip covers many transfers on a hot account.
+public class LedgerProjector implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerProjector.class);
+    static final String CHECKPOINT = "accounts";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JournalService journalService;
+    private final LedgerCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerJournal journal;
+    private final int maxBatch;
+
+    private final BlockingQueue<List<LedgerEntry>> queue = new ArrayBlockingQueue<>(1024);
+    private final Thread thread = new Thread(this::run, "ledger-projector");
+    private volatile boolean running;
+
+    public LedgerProjector(JdbcTemplate jdbcTemplate,
+                           JournalService journalService,
+                           LedgerCheckpointRepository checkpointRepository,
+                           PlatformTransactionManager transactionManager,
+                           LedgerJournal journal,
+                           int maxBatch) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.journalService = journalService;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journal = journal;
+        this.maxBatch = maxBatch;
+        thread.setDaemon(true);
+    }
+
+    public long checkpoint() {
+        return checkpointRepository.findById(CHECKPOINT).map(LedgerCheckpoint::getLastSeq).orElse(0L);
+    }
+
+    // synchronous catch-up at startup, before the engine takes traffic
+    public void catchUp() throws IOException {
+        long from = checkpoint();
+        if (from > journal.lastSeq()) {
+            // journal directory was replaced; new entries will move the checkpoint along again
+            log.warn("Ledger checkpoint {} is ahead of the journal ({})", from, journal.lastSeq());
+        }
+        journal.replay(from, maxBatch, this::project);
+        journal.markProjected(journal.lastSeq());
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    // journal writer callback; blocking here is the backpressure if the DB falls behind
+    public void enqueue(List<LedgerEntry> entries) {
+        try {
+            queue.put(entries);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<List<LedgerEntry>> drained = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                List<LedgerEntry> first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                drained.add(first);
+                queue.drainTo(drained);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            List<LedgerEntry> batch = new ArrayList<>();
+            drained.forEach(batch::addAll);
+            drained.clear();
+
+            // the DB being down must not lose entries: keep retrying the same batch
+            while (true) {
+                try {
+                    project(batch);
+                    break;
+                } catch (RuntimeException e) {
+                    log.warn("Ledger projection of {} entries failed, retrying", batch.size(), e);
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    void project(List<LedgerEntry> entries) {
+        if (entries.isEmpty()) return;
+
+        Map<Long, Long> deltas = new HashMap<>();
+        List<JournalEntry> rows = new ArrayList<>(entries.size());
+        for (LedgerEntry e : entries) {
+            Instant at = Instant.EPOCH.plus(e.timestampMicros(), ChronoUnit.MICROS);
+            switch (e.kind()) {
+                case OPEN -> { } // the DB already has this balance
+                case DEPOSIT -> {
+                    deltas.merge(e.accountId(), e.amount(), Long::sum);
+                    rows.add(journalService.deposit(e.accountId(), e.amount(), at));
+                }
+                case WITHDRAW -> {
+                    deltas.merge(e.accountId(), -e.amount(), Long::sum);
+                    rows.add(journalService.withdraw(e.accountId(), e.amount(), at));
+                }
+                case TRANSFER -> {
+                    deltas.merge(e.accountId(), -e.amount(), Long::sum);
+                    deltas.merge(e.counterpartyId(), e.amount(), Long::sum);
+                    rows.add(journalService.transfer(e.accountId(), e.counterpartyId(), e.amount(), at));
+                }
+            }
+        }
+        long lastSeq = entries.get(entries.size() - 1).seq();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // sorted so concurrent projections and row locks always go in the same order
+            List<Object[]> args = deltas.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .map(d -> new Object[]{d.getValue(), d.getKey()})
+                    .toList();
+            jdbcTemplate.batchUpdate("update accounts set balance = balance + ?, version = version + 1 where id = ?", args);
+            journalService.record(rows);
+
+            LedgerCheckpoint checkpoint = checkpointRepository.findById(CHECKPOINT)
+                    .orElseGet(() -> new LedgerCheckpoint(CHECKPOINT, 0));
+            checkpoint.setLastSeq(lastSeq);
+            checkpointRepository.save(checkpoint);
+        });
+        journal.markProjected(lastSeq);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
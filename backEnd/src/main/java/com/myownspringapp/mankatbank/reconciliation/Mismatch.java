@@ -0,0 +1,4 @@
+package com.myownspringapp.mankatbank.reconciliation;
+
+// balance is the account row plus its hot-account shards; null when the legs belong to no account
+public record Mismatch(long accountId, Long balance, long journalSum) {}
@@ -0,0 +1,34 @@
+package com.myownspringapp.mankatbank.reconciliation;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+// ROLE_ADMIN only, see SecurityConfig
+@RestController
+@RequestMapping("/admin/reconciliation")
+public class ReconciliationController {
+
+    private final ReconciliationService reconciliationService;
+
+    public ReconciliationController(ReconciliationService reconciliationService) {
+        this.reconciliationService = reconciliationService;
+    }
+
+    // progress of the current run and the last finished report
+    @GetMapping
+    public ReconciliationStatus status() {
+        return reconciliationService.status();
+    }
+
+    // starts a run in the background; poll GET for the result
+    @PostMapping
+    public ResponseEntity<ReconciliationStatus> start() {
+        boolean started = reconciliationService.start();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(reconciliationService.status());
+    }
+}
@@ -0,0 +1,16 @@
+package com.myownspringapp.mankatbank.reconciliation;
+
+import java.time.Instant;
+import java.util.List;
+
+// mismatches holds at most app.reconciliation.maxReported entries; mismatchCount is the real total
+public record ReconciliationReport(
+        Instant startedAt,
+        Instant finishedAt,
+        long accounts,
+        long transactions,
+        int ranges,
+        long rowsPerSecond,
+        long mismatchCount,
+        List<Mismatch> mismatches
+) {}
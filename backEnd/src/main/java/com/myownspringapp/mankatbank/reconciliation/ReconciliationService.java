@@ -0,0 +1,349 @@
+package com.myownspringapp.mankatbank.reconciliation;
+
+import com.myownspringapp.mankatbank.TransactionType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+// Checks that every account's balance (row + hot-account shards) equals the signed sum of its
+// journal legs: the hot ones plus the total of its purged archive months (account_archived_totals).
+//
+// Accounts are cut into ranges of app.reconciliation.rangeSize accounts (ids are time-ordered and
+// sparse, so a range is bounded by every rangeSize-th id rather than a fixed id width) and the ranges
+// are reconciled in parallel on a dedicated ForkJoinPool. A range loads its accounts' balances in id
+// order, then streams its legs (account_id, type, amount) through a forward-only cursor and folds
+// each into the sum at its account's position, so memory is parallelism * rangeSize longs however
+// many legs there are. Ranges read under
+// REPEATABLE READ, but transfers keep committing while we scan, so every suspect is checked once
+// more with a single statement before it is reported.
+@Service
+public class ReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReconciliationService.class);
+
+    private static final String BALANCES = """
+            select a.id, a.balance + coalesce((select sum(s.balance) from account_balance_shards s
+                                               where s.account_id = a.id), 0),
+                   coalesce((select z.signed_sum from account_archived_totals z where z.account_id = a.id), 0)
+            from accounts a where a.id between ? and ? order by a.id
+            """;
+    private static final String RANGE_STARTS = "select id from (select id, row_number() over (order by id) rn "
+            + "from accounts) a where mod(rn - 1, ?) = 0 order by id";
+    private static final String LEGS =
+            "select account_id, type_code, amount from transactions where account_id between ? and ?";
+    private static final String RECHECK = "select (select a.balance + coalesce((select sum(s.balance) "
+            + "from account_balance_shards s where s.account_id = a.id), 0) from accounts a where a.id = ?), "
+            + "(select coalesce(sum(" + TransactionType.SIGNED_AMOUNT_SQL + "), 0) from transactions t "
+            + "where t.account_id = ?) + coalesce((select z.signed_sum from account_archived_totals z "
+            + "where z.account_id = ?), 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate rangeTransaction;
+    private final int rangeSize;
+    private final int parallelism;
+    private final int fetchSize;
+    private final int maxReported;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicInteger rangesDone = new AtomicInteger();
+    private final AtomicInteger rangesTotal = new AtomicInteger();
+    private final AtomicLong rowsScanned = new AtomicLong();
+    private final AtomicLong lastMismatches = new AtomicLong();
+    private volatile ReconciliationReport lastReport;
+    // on-demand runs from the admin endpoint, so the request thread doesn't wait for minutes
+    private final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "reconciliation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter rows;
+    private final Counter runs;
+    private final Timer duration;
+
+    public ReconciliationService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.reconciliation.rangeSize:10000}") int rangeSize,
+                                 @Value("${app.reconciliation.parallelism:4}") int parallelism,
+                                 @Value("${app.reconciliation.fetchSize:5000}") int fetchSize,
+                                 @Value("${app.reconciliation.maxReported:1000}") int maxReported) {
+        if (rangeSize < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("app.reconciliation.rangeSize and parallelism must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.rangeTransaction = new TransactionTemplate(transactionManager);
+        this.rangeTransaction.setReadOnly(true);
+        this.rangeTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.rangeSize = rangeSize;
+        this.parallelism = parallelism;
+        this.fetchSize = fetchSize;
+        this.maxReported = maxReported;
+
+        this.rows = Counter.builder("bank.reconciliation.rows")
+                .description("journal legs scanned; its rate is the job's throughput")
+                .register(meterRegistry);
+        this.runs = Counter.builder("bank.reconciliation.runs").register(meterRegistry);
+        this.duration = Timer.builder("bank.reconciliation.duration").register(meterRegistry);
+        Gauge.builder("bank.reconciliation.progress", this,
+                        s -> s.rangesTotal.get() == 0 ? 0 : (double) s.rangesDone.get() / s.rangesTotal.get())
+                .description("share of id ranges done in the current (or last) run")
+                .register(meterRegistry);
+        Gauge.builder("bank.reconciliation.mismatches", lastMismatches, AtomicLong::get)
+                .description("mismatched accounts found by the last run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.reconciliation.intervalMillis:86400000}",
+            initialDelayString = "${app.reconciliation.initialDelayMillis:3600000}")
+    public void scheduled() {
+        if (running.compareAndSet(false, true)) {
+            runClaimed();
+        } else {
+            log.info("Skipping scheduled reconciliation, one is already running");
+        }
+    }
+
+    public ReconciliationReport run() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Reconciliation already running");
+        }
+        return runClaimed();
+    }
+
+    // false if a run is already in progress
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        background.execute(this::runClaimed);
+        return true;
+    }
+
+    public ReconciliationStatus status() {
+        return new ReconciliationStatus(running.get(), rangesDone.get(), rangesTotal.get(),
+                rowsScanned.get(), lastReport);
+    }
+
+    @PreDestroy
+    public void close() {
+        background.shutdownNow();
+    }
+
+    private ReconciliationReport runClaimed() {
+        try {
+            return duration.record(this::reconcile);
+        } catch (RuntimeException ex) {
+            log.error("Reconciliation failed", ex);
+            throw ex;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private ReconciliationReport reconcile() {
+        Instant started = Instant.now();
+        rangesDone.set(0);
+        rowsScanned.set(0);
+
+        Map<String, Object> ids = jdbcTemplate.queryForMap("""
+                select (select min(id) from accounts) a_lo, (select max(id) from accounts) a_hi,
+                       (select min(account_id) from transactions) t_lo, (select max(account_id) from transactions) t_hi
+                """);
+        Long lo = min(ids.get("a_lo"), ids.get("t_lo"));
+        Long hi = max(ids.get("a_hi"), ids.get("t_hi"));
+        List<Long> starts = (lo == null) ? List.of() : jdbcTemplate.queryForList(RANGE_STARTS, Long.class, rangeSize);
+        // the first range also takes legs below the first account, the last everything up to hi
+        int ranges = (lo == null) ? 0 : Math.max(1, starts.size());
+        rangesTotal.set(ranges);
+        log.info("Reconciling accounts {}..{} in {} ranges", lo, hi, ranges);
+
+        RangeResult total = new RangeResult();
+        if (ranges > 0) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                total = pool.submit(() -> IntStream.range(0, ranges).parallel()
+                                .mapToObj(i -> reconcileRange(i == 0 ? lo : starts.get(i),
+                                        i == ranges - 1 ? hi : starts.get(i + 1) - 1))
+                                .reduce(new RangeResult(), this::merge))
+                        .get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Reconciliation interrupted");
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof RuntimeException re ? re : new RuntimeException(ex.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        Instant finished = Instant.now();
+        long millis = Math.max(1, Duration.between(started, finished).toMillis());
+        ReconciliationReport report = new ReconciliationReport(started, finished, total.accounts, total.rows,
+                ranges, total.rows * 1000 / millis, total.mismatchCount, List.copyOf(total.mismatches));
+        lastReport = report;
+        lastMismatches.set(total.mismatchCount);
+        runs.increment();
+        if (total.mismatchCount > 0) {
+            log.warn("Reconciliation found {} mismatched accounts, e.g. {}", total.mismatchCount,
+                    total.mismatches.subList(0, Math.min(10, total.mismatches.size())));
+        }
+        log.info("Reconciled {} accounts / {} legs in {} ms ({} legs/s)", total.accounts, total.rows, millis,
+                report.rowsPerSecond());
+        return report;
+    }
+
+    private RangeResult reconcileRange(long from, long to) {
+        RangeAccounts accounts = new RangeAccounts(rangeSize);
+        // legs of accounts that aren't in the accounts table
+        Map<Long, Long> orphans = new TreeMap<>();
+        long[] legs = new long[1];
+
+        rangeTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.query(BALANCES, rs -> {
+                accounts.add(rs.getLong(1), rs.getLong(2), rs.getLong(3));
+            }, from, to);
+            jdbcTemplate.query(con -> {
+                PreparedStatement statement = con.prepareStatement(LEGS);
+                statement.setFetchSize(fetchSize);
+                statement.setLong(1, from);
+                statement.setLong(2, to);
+                return statement;
+            }, rs -> {
+                long accountId = rs.getLong(1);
+                long signed = TransactionType.fromCode(rs.getShort(2)).signed(rs.getLong(3));
+                int i = Arrays.binarySearch(accounts.ids, 0, accounts.size, accountId);
+                if (i >= 0) {
+                    accounts.sums[i] += signed;
+                } else {
+                    orphans.merge(accountId, signed, Long::sum);
+                }
+                legs[0]++;
+            });
+        });
+
+        RangeResult result = new RangeResult();
+        result.accounts = accounts.size;
+        result.rows = legs[0];
+        for (int i = 0; i < accounts.size; i++) {
+            if (accounts.balances[i] != accounts.sums[i]) {
+                suspect(result, accounts.ids[i]);
+            }
+        }
+        for (Long accountId : orphans.keySet()) {
+            suspect(result, accountId);
+        }
+        rows.increment(legs[0]);
+        rowsScanned.addAndGet(legs[0]);
+        rangesDone.incrementAndGet();
+        return result;
+    }
+
+    private void suspect(RangeResult result, long accountId) {
+        Mismatch confirmed = recheck(accountId);
+        if (confirmed != null) {
+            result.mismatchCount++;
+            if (result.mismatches.size() < maxReported) result.mismatches.add(confirmed);
+        }
+    }
+
+    // one statement, so balance and legs come from the same point in time
+    private Mismatch recheck(long accountId) {
+        return jdbcTemplate.queryForObject(RECHECK, (rs, n) -> {
+            long balance = rs.getLong(1);
+            boolean exists = !rs.wasNull();
+            long sum = rs.getLong(2);
+            if (exists && balance == sum) return null;
+            return new Mismatch(accountId, exists ? balance : null, sum);
+        }, accountId, accountId, accountId);
+    }
+
+    private RangeResult merge(RangeResult a, RangeResult b) {
+        RangeResult merged = new RangeResult();
+        merged.accounts = a.accounts + b.accounts;
+        merged.rows = a.rows + b.rows;
+        merged.mismatchCount = a.mismatchCount + b.mismatchCount;
+        merged.mismatches.addAll(a.mismatches);
+        for (Mismatch m : b.mismatches) {
+            if (merged.mismatches.size() >= maxReported) break;
+            merged.mismatches.add(m);
+        }
+        return merged;
+    }
+
+    private static Long min(Object a, Object b) {
+        if (a == null) return b == null ? null : ((Number) b).longValue();
+        if (b == null) return ((Number) a).longValue();
+        return Math.min(((Number) a).longValue(), ((Number) b).longValue());
+    }
+
+    private static Long max(Object a, Object b) {
+        if (a == null) return b == null ? null : ((Number) b).longValue();
+        if (b == null) return ((Number) a).longValue();
+        return Math.max(((Number) a).longValue(), ((Number) b).longValue());
+    }
+
+    // a range's accounts in id order; usually rangeSize of them, more if some were created after the
+    // ranges were cut
+    private static final class RangeAccounts {
+        long[] ids;
+        long[] balances;
+        long[] sums;
+        int size;
+
+        RangeAccounts(int capacity) {
+            ids = new long[capacity];
+            balances = new long[capacity];
+            sums = new long[capacity];
+        }
+
+        // archived: the sum the account's legs start from
+        void add(long id, long balance, long archived) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                balances = Arrays.copyOf(balances, capacity);
+                sums = Arrays.copyOf(sums, capacity);
+            }
+            ids[size] = id;
+            balances[size] = balance;
+            sums[size] = archived;
+            size++;
+        }
+    }
+
+    private static final class RangeResult {
+        long accounts;
+        long rows;
+        long mismatchCount;
+        final List<Mismatch> mismatches = new ArrayList<>();
+    }
+}
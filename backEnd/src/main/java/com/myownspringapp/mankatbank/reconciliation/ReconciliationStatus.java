@@ -0,0 +1,9 @@
+package com.myownspringapp.mankatbank.reconciliation;
+
+public record ReconciliationStatus(
+        boolean running,
+        int rangesDone,
+        int rangesTotal,
+        long rowsScanned,
+        ReconciliationReport lastReport
+) {}
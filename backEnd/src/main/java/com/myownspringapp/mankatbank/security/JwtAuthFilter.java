@@ -1,12 +1,13 @@
 package com.myownspringapp.mankatbank.security;
 
 import com.myownspringapp.mankatbank.auth.JwtService;
-import com.myownspringapp.mankatbank.auth.RevokedTokenRepository;
+import com.myownspringapp.mankatbank.auth.RevocationCache;
 import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -14,17 +15,27 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
-    private final RevokedTokenRepository revokedTokenRepository;
+    private final RevocationCache revocationCache;
+    // users with these emails also get ROLE_ADMIN (/admin/**); there are no roles in the users table yet
+    private final Set<String> adminEmails;
 
-    public JwtAuthFilter(JwtService jwtService, RevokedTokenRepository revokedTokenRepository) {
+    public JwtAuthFilter(JwtService jwtService, RevocationCache revocationCache,
+                         @Value("${app.admin.emails:}") String[] adminEmails) {
         this.jwtService = jwtService;
-        this.revokedTokenRepository = revokedTokenRepository;
+        this.revocationCache = revocationCache;
+        this.adminEmails = Arrays.stream(adminEmails)
+                .map(email -> email.trim().toLowerCase())
+                .filter(email -> !email.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
     }
 
     @Override
@@ -45,7 +56,7 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             Claims claims = jwtService.parse(token);
 
             String jti = claims.getId();
-            if (jti != null && revokedTokenRepository.existsByJti(jti)) {
+            if (jti != null && revocationCache.isRevoked(jti)) {
                 throw new RuntimeException("Token revoked");
             }
 
@@ -55,7 +66,9 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             var auth = new UsernamePasswordAuthenticationToken(
                     email,
                     null,
-                    List.of(new SimpleGrantedAuthority("ROLE_USER"))
+                    email != null && adminEmails.contains(email.toLowerCase())
+                            ? List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN"))
+                            : List.of(new SimpleGrantedAuthority("ROLE_USER"))
             );
 
             auth.setDetails(userId);
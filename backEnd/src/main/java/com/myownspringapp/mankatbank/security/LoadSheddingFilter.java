@@ -0,0 +1,59 @@
+package com.myownspringapp.mankatbank.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Global cap on requests in flight (app.ratelimit.maxConcurrent, 0 = off). Past it we answer 503
+// straight away instead of letting requests queue for threads and DB connections, which only
+// makes everyone's latency worse. First filter in the chain, so a shed request costs almost nothing.
+// Streamed responses (SSE, exports) give their slot back when the request thread returns.
+@Component
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    private final int maxConcurrent;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter shed;
+
+    public LoadSheddingFilter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.maxConcurrent = properties.enabled() ? properties.maxConcurrent() : 0;
+        this.shed = Counter.builder("bank.requests.shed").register(meterRegistry);
+        Gauge.builder("bank.requests.inflight", inFlight, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return maxConcurrent <= 0 || request.getRequestURI().startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        if (inFlight.incrementAndGet() > maxConcurrent) {
+            inFlight.decrementAndGet();
+            shed.increment();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            response.setContentType("application/json");
+            response.getWriter().write("{\"message\":\"Server busy, try again\"}");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.myownspringapp.mankatbank.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.server.PathContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Per-route token buckets, keyed by the JWT subject (perUser) and by client IP (perIp). Runs right
+// after JwtAuthFilter so the subject is known; /auth/** requests have none and only count per IP.
+// Over the limit: 429 with Retry-After, before any controller or DB work.
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final int maxBuckets;
+    private final List<Limits> routes = new ArrayList<>();
+
+    private final Counter allowed;
+    private final Counter rejectedUser;
+    private final Counter rejectedIp;
+
+    // prefix is set for plain "/x/**" patterns, which are matched with startsWith instead of parsing the path
+    private record Limits(PathPattern pattern, String prefix, RateLimiter perUser, RateLimiter perIp) {
+
+        boolean matches(String path) {
+            if (prefix != null) {
+                return path.startsWith(prefix) && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/');
+            }
+            return pattern.matches(PathContainer.parsePath(path));
+        }
+    }
+
+    public RateLimitFilter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.enabled();
+        this.maxBuckets = properties.maxBuckets();
+        for (RateLimitProperties.Route route : properties.routes()) {
+            String pattern = route.pattern();
+            String base = pattern.endsWith("/**") ? pattern.substring(0, pattern.length() - 3) : null;
+            boolean plain = base != null && !base.contains("*") && !base.contains("{") && !base.contains("?");
+            routes.add(new Limits(PathPatternParser.defaultInstance.parse(pattern), plain ? base : null,
+                    route.perUser() > 0 ? new RateLimiter(route.perUser(), route.period(), route.burst()) : null,
+                    route.perIp() > 0 ? new RateLimiter(route.perIp(), route.period(), route.burst()) : null));
+        }
+
+        this.allowed = Counter.builder("bank.ratelimit.requests").tag("result", "allowed").register(meterRegistry);
+        this.rejectedUser = Counter.builder("bank.ratelimit.requests").tag("result", "rejected")
+                .tag("key", "user").register(meterRegistry);
+        this.rejectedIp = Counter.builder("bank.ratelimit.requests").tag("result", "rejected")
+                .tag("key", "ip").register(meterRegistry);
+        Gauge.builder("bank.ratelimit.buckets", this, RateLimitFilter::buckets).register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        Limits limits = match(request);
+        if (limits != null) {
+            long now = System.nanoTime();
+            if (limits.perUser() != null) {
+                String userId = currentUserId();
+                if (userId != null && reject(limits.perUser(), userId, now, response, rejectedUser)) return;
+            }
+            if (limits.perIp() != null && reject(limits.perIp(), request.getRemoteAddr(), now, response, rejectedIp)) {
+                return;
+            }
+            allowed.increment();
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    // full buckets carry no state, so dropping them is free; maxBuckets only bounds an IP spray
+    // between two sweeps
+    @Scheduled(fixedDelayString = "${app.ratelimit.evictMillis:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        for (Limits limits : routes) {
+            if (limits.perUser() != null) limits.perUser().evictIdle(now);
+            if (limits.perIp() != null) limits.perIp().evictIdle(now);
+        }
+    }
+
+    private boolean reject(RateLimiter limiter, String key, long now, HttpServletResponse response,
+                           Counter rejected) throws IOException {
+        if (limiter.size() >= maxBuckets) {
+            limiter.evictIdle(now);
+        }
+        long waitNanos = limiter.tryAcquire(key, now);
+        if (waitNanos == 0) {
+            return false;
+        }
+        rejected.increment();
+        response.setStatus(429);
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, (waitNanos + 999_999_999) / 1_000_000_000)));
+        response.setContentType("application/json");
+        response.getWriter().write("{\"message\":\"Too many requests\"}");
+        return true;
+    }
+
+    private Limits match(HttpServletRequest request) {
+        if (routes.isEmpty()) return null;
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (Limits limits : routes) {
+            if (limits.matches(path)) return limits;
+        }
+        return null;
+    }
+
+    private static String currentUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return (auth == null || auth.getDetails() == null) ? null : auth.getDetails().toString();
+    }
+
+    private double buckets() {
+        int total = 0;
+        for (Limits limits : routes) {
+            if (limits.perUser() != null) total += limits.perUser().size();
+            if (limits.perIp() != null) total += limits.perIp().size();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,34 @@
+package com.myownspringapp.mankatbank.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+// app.ratelimit.* — a list of routes, first match wins:
+//   app.ratelimit.routes[0].pattern=/auth/**
+//   app.ratelimit.routes[0].perIp=20        (requests per period; 0 = no limit by IP)
+//   app.ratelimit.routes[0].perUser=0       (same, keyed by the JWT subject)
+//   app.ratelimit.routes[0].period=PT1M
+//   app.ratelimit.routes[0].burst=10        (requests allowed back to back)
+@ConfigurationProperties("app.ratelimit")
+public record RateLimitProperties(
+        boolean enabled,
+        int maxConcurrent,
+        int maxBuckets,
+        List<Route> routes
+) {
+
+    public RateLimitProperties {
+        routes = (routes == null) ? List.of() : List.copyOf(routes);
+    }
+
+    public record Route(String pattern, int perUser, int perIp, Duration period, int burst) {
+
+        public Route {
+            if (pattern == null) throw new IllegalArgumentException("app.ratelimit route needs a pattern");
+            if (period == null) period = Duration.ofMinutes(1);
+            if (burst < 1) burst = 1;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.myownspringapp.mankatbank.security;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token buckets as GCRA (generic cell rate algorithm): per key, one AtomicLong holding the
+// "theoretical arrival time" of the next request. A request is allowed if that time is no more
+// than burst - 1 intervals ahead of now, and pushes it one interval further, with a single CAS.
+// No locks, no refill thread, and a bucket whose arrival time has passed is indistinguishable
+// from a new one, so idle buckets can be dropped at any time without losing state.
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    public RateLimiter(int limit, Duration period, int burst) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        this.intervalNanos = Math.max(1, period.toNanos() / limit);
+        this.toleranceNanos = intervalNanos * (burst - 1);
+    }
+
+    // 0 if allowed, else how many nanos until the key may try again
+    public long tryAcquire(String key, long nowNanos) {
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(nowNanos));
+        while (true) {
+            long tat = bucket.get();
+            long start = (tat - nowNanos > 0) ? tat : nowNanos; // nanoTime values: compare by difference
+            long ahead = start - nowNanos;
+            if (ahead > toleranceNanos) {
+                return ahead - toleranceNanos;
+            }
+            if (bucket.compareAndSet(tat, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    // drops buckets that are full again; a request racing with this may get one free pass
+    public int evictIdle(long nowNanos) {
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.get() - nowNanos <= 0);
+        return before - buckets.size();
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+}
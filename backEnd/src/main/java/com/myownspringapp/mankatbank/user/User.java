@@ -1,5 +1,6 @@
 package com.myownspringapp.mankatbank.user;
 
+import com.myownspringapp.mankatbank.id.TimeOrderedId;
 import jakarta.persistence.*;
 import java.time.Instant;
 
@@ -8,7 +9,7 @@ import java.time.Instant;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
 
     @Column(nullable = false, unique = true, length = 100)
@@ -0,0 +1,11 @@
+package com.myownspringapp.mankatbank.user;
+
+// closed projection: Spring Data selects just these columns, no User entity is built
+public interface UserProfile {
+
+    Long getId();
+
+    String getEmail();
+
+    String getFullName();
+}
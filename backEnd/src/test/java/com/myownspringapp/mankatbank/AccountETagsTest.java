@@ -0,0 +1,102 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.auth.JwtService;
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class AccountETagsTest {
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private JournalService journal;
+    @Autowired
+    private HotAccountService hotAccounts;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void unchangedPollsGet304AndChangesGetANewTag() throws Exception {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@etag.test", "ETag", "x"));
+        String token = "Bearer " + jwtService.createToken(user.getId(), user.getEmail());
+        Long id = save(user).getId();
+        Long other = save(user).getId();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<JournalEntry> history = new ArrayList<>();
+            for (int i = 0; i < 500; i++) history.add(journal.deposit(id, 1 + i));
+            journal.record(history);
+        });
+
+        List<String> urls = List.of("/accounts", "/accounts/" + id, "/accounts/" + id + "/transactions");
+        List<String> tags = new ArrayList<>();
+        for (String url : urls) {
+            MvcResult first = mvc.perform(get(url).header(HttpHeaders.AUTHORIZATION, token)).andReturn();
+            assertThat(first.getResponse().getStatus()).isEqualTo(200);
+            String tag = first.getResponse().getHeader(HttpHeaders.ETAG);
+            assertThat(tag).startsWith("\"");
+            tags.add(tag);
+
+            MvcResult again = mvc.perform(get(url).header(HttpHeaders.AUTHORIZATION, token)
+                    .header(HttpHeaders.IF_NONE_MATCH, tag)).andReturn();
+            assertThat(again.getResponse().getStatus()).as(url).isEqualTo(304);
+            assertThat(again.getResponse().getContentAsByteArray()).isEmpty();
+        }
+
+        // a deposit into the account changes all three
+        mvc.perform(post("/accounts/" + id + "/deposit").header(HttpHeaders.AUTHORIZATION, token)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":5}"));
+        for (int i = 0; i < urls.size(); i++) {
+            assertThat(status(urls.get(i), token, tags.get(i))).as(urls.get(i)).isEqualTo(200);
+        }
+
+        // a credit that only lands in a hot account's shard changes the other account's tags too
+        hotAccounts.makeHot(other, 2);
+        String otherTag = tag("/accounts/" + other, token);
+        String listTag = tag("/accounts", token);
+        hotAccounts.credit(other, 2, 10);
+        assertThat(status("/accounts/" + other, token, otherTag)).isEqualTo(200);
+        assertThat(status("/accounts", token, listTag)).isEqualTo(200);
+    }
+
+    private String tag(String url, String token) throws Exception {
+        return mvc.perform(get(url).header(HttpHeaders.AUTHORIZATION, token)).andReturn()
+                .getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private int status(String url, String token, String tag) throws Exception {
+        return mvc.perform(get(url).header(HttpHeaders.AUTHORIZATION, token)
+                .header(HttpHeaders.IF_NONE_MATCH, tag)).andReturn().getResponse().getStatus();
+    }
+
+    private Account save(User user) {
+        Account account = new Account("etag-" + UUID.randomUUID());
+        account.setUser(user);
+        return accountRepository.save(account);
+    }
+}
@@ -0,0 +1,85 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class AccountOwnershipCacheTest {
+
+    @Autowired
+    private AccountOwnershipCache ownershipCache;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void reassignmentNeverLeavesAStaleGrant() {
+        User alice = userRepository.save(new User(UUID.randomUUID() + "@own.test", "Alice", "x"));
+        User bob = userRepository.save(new User(UUID.randomUUID() + "@own.test", "Bob", "x"));
+        Account account = new Account("shared");
+        account.setUser(alice);
+        Long accountId = accountRepository.save(account).getId();
+
+        assertThat(ownershipCache.owns(alice.getId(), accountId)).isTrue();
+        assertThat(ownershipCache.owns(bob.getId(), accountId)).isFalse();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Account loaded = accountRepository.findById(accountId).orElseThrow();
+            loaded.setUser(bob);
+            ownershipCache.invalidate(alice.getId());
+            ownershipCache.invalidate(bob.getId());
+
+            // another request reads (and would cache) the pre-commit state meanwhile
+            boolean seenByOtherThread = CompletableFuture
+                    .supplyAsync(() -> ownershipCache.owns(alice.getId(), accountId))
+                    .join();
+            assertThat(seenByOtherThread).isTrue();
+        });
+
+        assertThat(ownershipCache.owns(alice.getId(), accountId)).isFalse();
+        assertThat(ownershipCache.owns(bob.getId(), accountId)).isTrue();
+    }
+
+    @Test
+    void newAccountsAreVisibleAfterInvalidation() {
+        User carol = userRepository.save(new User(UUID.randomUUID() + "@own.test", "Carol", "x"));
+        assertThat(ownershipCache.owns(carol.getId(), -1L)).isFalse();
+
+        Account account = new Account("new");
+        account.setUser(carol);
+        Long accountId = accountRepository.save(account).getId();
+        ownershipCache.invalidate(carol.getId());
+
+        assertThat(ownershipCache.owns(carol.getId(), accountId)).isTrue();
+    }
+
+    @Test
+    void aDenialIsCheckedAgainstTheDatabaseFirst() {
+        User dave = userRepository.save(new User(UUID.randomUUID() + "@own.test", "Dave", "x"));
+        Account first = new Account("first");
+        first.setUser(dave);
+        Long firstId = accountRepository.save(first).getId();
+        assertThat(ownershipCache.owns(dave.getId(), firstId)).isTrue();
+
+        // created through another instance: nobody invalidates this one's entry
+        Account second = new Account("second");
+        second.setUser(dave);
+        Long secondId = accountRepository.save(second).getId();
+
+        assertThat(ownershipCache.owns(dave.getId(), secondId)).isTrue();
+        assertThat(ownershipCache.owns(dave.getId(), -1L)).isFalse();
+    }
+}
@@ -0,0 +1,142 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.auth.JwtService;
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:stream-test;LOCK_TIMEOUT=10000",
+        "app.stream.heartbeatMillis=200",
+        "app.stream.maxConnections=1"
+})
+@DirtiesContext
+class AccountStreamServiceTest {
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Test
+    void pushesCommittedDepositsToTheOwnersStream() throws Exception {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@stream.test", "Stream", "x"));
+        Account account = new Account("stream");
+        account.setUser(user);
+        Long id = accountRepository.save(account).getId();
+        String token = jwtService.createToken(user.getId(), user.getEmail());
+
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        List<String> seen = new CopyOnWriteArrayList<>();
+        CompletableFuture<HttpResponse<Stream<String>>> stream = http.sendAsync(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/accounts/stream"))
+                        .header("Authorization", "Bearer " + token).GET().build(),
+                HttpResponse.BodyHandlers.ofLines());
+        HttpResponse<Stream<String>> response = stream.get(10, TimeUnit.SECONDS);
+        assertThat(response.statusCode()).isEqualTo(200);
+        Thread reader = new Thread(() -> response.body().forEach(line -> {
+            seen.add(line);
+            lines.add(line);
+        }));
+        reader.setDaemon(true);
+        reader.start();
+
+        // the current state comes first
+        assertThat(nextData(lines, "account")).contains("\"id\":" + id).contains("\"balance\":0");
+        assertThat(connections()).isEqualTo(1);
+
+        HttpResponse<String> deposit = http.send(HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + port + "/accounts/" + id + "/deposit"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":125}")).build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(deposit.statusCode()).isEqualTo(200);
+
+        assertThat(nextData(lines, "transaction")).contains("\"amount\":125").contains("DEPOSIT");
+        assertThat(nextData(lines, "account")).contains("\"balance\":125");
+        long heartbeatBy = System.currentTimeMillis() + 5_000;
+        while (seen.stream().noneMatch(line -> line.startsWith(":heartbeat")) && System.currentTimeMillis() < heartbeatBy) {
+            Thread.sleep(50);
+        }
+        assertThat(seen).anyMatch(line -> line.startsWith(":heartbeat"));
+
+        // once the client is gone the next heartbeat fails and the connection is dropped
+        response.body().close();
+        reader.interrupt();
+        awaitNoConnections();
+    }
+
+    @Test
+    void aFullServerAsksClientsToComeBackLater() throws Exception {
+        awaitNoConnections();
+        User user = userRepository.save(new User(UUID.randomUUID() + "@stream.test", "Stream", "x"));
+        HttpRequest open = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/accounts/stream"))
+                .header("Authorization", "Bearer " + jwtService.createToken(user.getId(), user.getEmail()))
+                .GET().build();
+
+        HttpResponse<Stream<String>> first = http.sendAsync(open, HttpResponse.BodyHandlers.ofLines()).get(10, TimeUnit.SECONDS);
+        assertThat(first.statusCode()).isEqualTo(200);
+
+        HttpResponse<String> second = http.send(open, HttpResponse.BodyHandlers.ofString());
+        assertThat(second.statusCode()).isEqualTo(503);
+        assertThat(Long.parseLong(second.headers().firstValue("Retry-After").orElseThrow())).isBetween(5L, 10L);
+        assertThat(meterRegistry.get("bank.stream.rejected").counter().count()).isEqualTo(1);
+
+        first.body().close();
+        awaitNoConnections();
+    }
+
+    private void awaitNoConnections() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (connections() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(connections()).isZero();
+    }
+
+    private double connections() {
+        return meterRegistry.get("bank.stream.connections").gauge().value();
+    }
+
+    // data line of the next event with this name, skipping heartbeats and other events
+    private static String nextData(BlockingQueue<String> lines, String event) throws InterruptedException {
+        boolean inEvent = false;
+        while (true) {
+            String line = lines.poll(10, TimeUnit.SECONDS);
+            assertThat(line).as("waiting for event " + event).isNotNull();
+            if (line.equals("event:" + event)) {
+                inEvent = true;
+            } else if (inEvent && line.startsWith("data:")) {
+                return line.substring("data:".length());
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.myownspringapp.mankatbank;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// resets the backfill marker and all rollups, so it gets its own database; two accounts per chunk
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rollup-backfill-test;LOCK_TIMEOUT=10000",
+        "app.rollups.backfillChunk=2"
+})
+@DirtiesContext
+class ActivityRollupBackfillTest {
+
+    private static final Instant START = Instant.parse("2022-03-01T00:00:00Z");
+    private static final long ACCOUNTS = 9;
+
+    @Autowired
+    private ActivityRollupService rollups;
+    @Autowired
+    private JournalService journal;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void anInterruptedBackfillResumesAndNothingIsCountedTwice() throws Exception {
+        // legs from before rollups existed
+        List<Object[]> legacy = new ArrayList<>();
+        for (long account = 1; account <= ACCOUNTS; account++) {
+            for (int n = 0; n < 20; n++) {
+                long id = account * 100 + n;
+                TransactionType type = (n % 3 == 0) ? TransactionType.WITHDRAW : TransactionType.DEPOSIT;
+                legacy.add(new Object[]{id, account, type.code(), 10L + n,
+                        Timestamp.from(START.plus(n * 5L, ChronoUnit.DAYS)), id});
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into transactions (id, account_id, type_code, amount, created_at, link_id) "
+                + "values (?, ?, ?, ?, ?, ?)", legacy);
+        jdbcTemplate.update("delete from rollup_backfills");
+        jdbcTemplate.update("delete from account_activity_rollups");
+
+        // the first instance fixes the cutoff, does one chunk and dies
+        rollups.startBackfill();
+        assertThat(rollups.backfillChunk()).isTrue();
+
+        // live traffic on another instance, counted as it is written, backdated into the same periods
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            journal.record(journal.deposit(1L, 1_000, START.plus(1, ChronoUnit.DAYS)));
+            journal.record(journal.deposit(ACCOUNTS, 2_000, START.plus(1, ChronoUnit.DAYS)));
+        });
+
+        // two instances restart together
+        CompletableFuture<Void> other = CompletableFuture.runAsync(rollups::backfill);
+        rollups.backfill();
+        other.join();
+        assertThat(rollups.backfillChunk()).isFalse();
+
+        for (long account = 1; account <= ACCOUNTS; account++) {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                LocalDate from = granularity.periodStart(START);
+                LocalDate to = from.plusDays(120);
+                assertThat(rollups.summary(account, granularity, from, to))
+                        .as("account %d by %s", account, granularity)
+                        .isEqualTo(fromLegs(account, granularity));
+            }
+        }
+    }
+
+    // the same numbers, the slow way (only deposits and withdrawals here)
+    private List<ActivitySummary> fromLegs(long accountId, RollupGranularity granularity) {
+        TreeMap<LocalDate, long[]> periods = new TreeMap<>();
+        jdbcTemplate.query("select type_code, amount, created_at from transactions where account_id = ?", rs -> {
+            long[] p = periods.computeIfAbsent(granularity.periodStart(rs.getTimestamp(3).toInstant()), k -> new long[4]);
+            int at = TransactionType.fromCode(rs.getShort(1)) == TransactionType.DEPOSIT ? 0 : 2;
+            p[at] += rs.getLong(2);
+            p[at + 1]++;
+        }, accountId);
+        List<ActivitySummary> expected = new ArrayList<>();
+        periods.forEach((period, p) -> expected.add(new ActivitySummary(period, p[0], p[1], p[2], p[3], 0, 0, 0, 0)));
+        return expected;
+    }
+}
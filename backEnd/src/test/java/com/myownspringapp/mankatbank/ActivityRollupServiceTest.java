@@ -0,0 +1,151 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class ActivityRollupServiceTest {
+
+    private static final Instant START = Instant.parse("2023-01-30T00:00:00Z");
+
+    @Autowired
+    private ActivityRollupService rollups;
+    @Autowired
+    private JournalService journal;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private HotAccountService hotAccounts;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentWritersKeepRollupsEqualToTheLegs() throws Exception {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@rollup.test", "Rollup", "x"));
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(save(user, 1_000_000).getId());
+        }
+        hotAccounts.makeHot(ids.get(0), 4);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int n = 0; n < 60; n++) {
+                    Long from = ids.get(random.nextInt(ids.size()));
+                    Long to = ids.get(random.nextInt(ids.size()));
+                    long amount = 1 + random.nextInt(100);
+                    if (n % 3 == 0) {
+                        // backdated journal entries spread the legs over a few days and months
+                        Instant at = START.plus(random.nextInt(40), ChronoUnit.DAYS);
+                        tx.executeWithoutResult(status -> journal.record(List.of(
+                                journal.deposit(to, amount, at), journal.withdraw(from, amount, at))));
+                    } else if (!from.equals(to)) {
+                        try {
+                            transferService.transfer(user.getId(), from, to, amount);
+                        } catch (RuntimeException conflict) {
+                            // rolled back together with its rollup rows
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        pool.shutdown();
+
+        for (Long id : ids) {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                LocalDate from = granularity.periodStart(START);
+                LocalDate to = LocalDate.now(ZoneOffset.UTC);
+                if (granularity == RollupGranularity.DAY) {
+                    from = to.minusDays(399);
+                }
+                assertThat(rollups.summary(id, granularity, from, to))
+                        .as("account %d by %s", id, granularity)
+                        .isEqualTo(fromLegs(id, granularity, from));
+            }
+        }
+    }
+
+    @Test
+    void summaryDefaultsAndLimits() {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@rollup.test", "Rollup", "x"));
+        Long id = save(user, 0).getId();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            journal.record(journal.deposit(id, 70));
+            journal.record(journal.deposit(id, 30));
+        });
+
+        List<ActivitySummary> days = rollups.summary(id, RollupGranularity.DAY, null, null);
+        assertThat(days).hasSize(1);
+        assertThat(days.get(0).depositTotal()).isEqualTo(100);
+        assertThat(days.get(0).depositCount()).isEqualTo(2);
+
+        // a period that started before `from` is reported whole, keyed by its own start
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        assertThat(rollups.summary(id, RollupGranularity.MONTH, today, today))
+                .extracting(ActivitySummary::periodStart).containsExactly(today.withDayOfMonth(1));
+
+        assertThatThrownBy(() -> rollups.summary(id, RollupGranularity.DAY, today.minusYears(5), today))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rollups.summary(id, RollupGranularity.DAY, today, today.minusDays(1)))
+                .hasMessage("from must not be after to");
+    }
+
+    // the same numbers, the slow way
+    private List<ActivitySummary> fromLegs(Long accountId, RollupGranularity granularity, LocalDate from) {
+        List<ActivitySummary> expected = new ArrayList<>();
+        TreeMap<LocalDate, long[]> periods = new TreeMap<>();
+        jdbcTemplate.query("select type_code, amount, created_at from transactions where account_id = ?", rs -> {
+            LocalDate period = granularity.periodStart(rs.getTimestamp(3).toInstant());
+            if (period.isBefore(from)) return;
+            long[] p = periods.computeIfAbsent(period, k -> new long[8]);
+            int at = 2 * (TransactionType.fromCode(rs.getShort(1)).ordinal());
+            p[at] += rs.getLong(2);
+            p[at + 1]++;
+        }, accountId);
+        // TransactionType order is DEPOSIT, WITHDRAW, TRANSFER_OUT, TRANSFER_IN
+        periods.forEach((period, p) -> expected.add(new ActivitySummary(period,
+                p[0], p[1], p[2], p[3], p[6], p[7], p[4], p[5])));
+        return expected;
+    }
+
+    private Account save(User user, long balance) {
+        Account account = new Account("rollup-" + UUID.randomUUID());
+        account.setUser(user);
+        if (balance > 0) account.deposit(balance);
+        return accountRepository.save(account);
+    }
+}
@@ -0,0 +1,119 @@
+package com.myownspringapp.mankatbank;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// owns the whole snapshot table, so it gets its own database
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:balance-snapshot-test;LOCK_TIMEOUT=10000")
+@DirtiesContext
+class BalanceSnapshotServiceTest {
+
+    private static final long ACCOUNT_ID = 7L;
+    private static final int LEGS = 10_000;
+    private static final Instant START = Instant.parse("2020-01-01T00:00:00Z");
+    private static final Duration SPREAD = Duration.ofDays(120);
+
+    @Autowired
+    private BalanceSnapshotService snapshotService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void snapshotLookupsMatchAFullReplayAndReplayAtMostADay() {
+        Instant[] times = new Instant[LEGS];
+        long[] runningBalance = new long[LEGS];
+        seed(times, runningBalance);
+
+        Instant end = START.plus(SPREAD).plus(Duration.ofDays(1));
+        assertThat(snapshotService.snapshotUpTo(end)).isEqualTo(120);
+        assertThat(snapshotService.snapshotUpTo(end)).isZero();
+
+        Random random = new Random(42);
+        for (int n = 0; n < 300; n++) {
+            Instant asOf = START.plusMillis((long) (random.nextDouble() * SPREAD.toMillis()));
+            BalanceResponse answer = snapshotService.balanceAsOf(ACCOUNT_ID, asOf);
+
+            assertThat(answer.balance()).isEqualTo(fullReplay(times, runningBalance, asOf));
+            // the cost bound: only legs after the snapshot are summed, and that is never more than a day
+            assertThat(answer.snapshotAt()).isNotNull();
+            assertThat(Duration.between(answer.snapshotAt(), asOf)).isLessThanOrEqualTo(Duration.ofDays(1));
+        }
+        // exactly at a leg's timestamp, that leg counts
+        assertThat(snapshotService.balanceAsOf(ACCOUNT_ID, times[LEGS / 2]).balance()).isEqualTo(runningBalance[LEGS / 2]);
+        // before any activity
+        assertThat(snapshotService.balanceAsOf(ACCOUNT_ID, START.minusSeconds(1)).balance()).isZero();
+    }
+
+    @Test
+    void laterRunsOnlyCheckpointNewDays() {
+        long account = 99L;
+        Instant day = Instant.now().truncatedTo(ChronoUnit.DAYS).minus(3, ChronoUnit.DAYS);
+        insert(90_000_001L, account, TransactionType.DEPOSIT, 100, day.plusSeconds(60));
+        snapshotService.snapshotUpTo(day.plus(1, ChronoUnit.DAYS));
+        insert(90_000_002L, account, TransactionType.WITHDRAW, 30, day.plus(1, ChronoUnit.DAYS).plusSeconds(60));
+        insert(90_000_003L, account, TransactionType.TRANSFER_IN, 5, day.plus(1, ChronoUnit.DAYS).plusSeconds(90));
+
+        snapshotService.snapshotUpTo(day.plus(2, ChronoUnit.DAYS));
+
+        List<Long> balances = jdbcTemplate.queryForList(
+                "select balance from balance_snapshots where account_id = ? order by period_end", Long.class, account);
+        assertThat(balances).containsExactly(100L, 75L);
+        assertThat(snapshotService.balanceAsOf(account, day.plus(1, ChronoUnit.DAYS).plusSeconds(70)).balance())
+                .isEqualTo(70);
+    }
+
+    private void seed(Instant[] times, long[] runningBalance) {
+        Random random = new Random(7);
+        List<Object[]> batch = new ArrayList<>(10_000);
+        long balance = 0;
+        for (int i = 0; i < LEGS; i++) {
+            times[i] = START.plusMillis(SPREAD.toMillis() * i / LEGS);
+            TransactionType type = TransactionType.values()[random.nextInt(TransactionType.values().length)];
+            long amount = 1 + random.nextInt(1_000);
+            balance += type.signed(amount);
+            runningBalance[i] = balance;
+            batch.add(new Object[]{(long) i + 1, ACCOUNT_ID, type.code(), amount, Timestamp.from(times[i]), (long) i + 1});
+            if (batch.size() == 10_000) {
+                insertAll(batch);
+                batch.clear();
+            }
+        }
+        insertAll(batch);
+    }
+
+    private void insert(long id, long account, TransactionType type, long amount, Instant at) {
+        insertAll(List.<Object[]>of(new Object[]{id, account, type.code(), amount, Timestamp.from(at), id}));
+    }
+
+    private void insertAll(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("insert into transactions (id, account_id, type_code, amount, created_at, link_id) " +
+                "values (?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    private static long fullReplay(Instant[] times, long[] runningBalance, Instant asOf) {
+        int lo = 0, hi = times.length - 1, last = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (!times[mid].isAfter(asOf)) {
+                last = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return last < 0 ? 0 : runningBalance[last];
+    }
+}
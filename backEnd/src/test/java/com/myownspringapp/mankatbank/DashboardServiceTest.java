@@ -0,0 +1,157 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.auth.JwtService;
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:dashboard-test;LOCK_TIMEOUT=10000",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // the statement counts are global, so keep the revocation refresh out of them
+        "app.jwt.revocation.refreshMillis=600000",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"})
+@AutoConfigureMockMvc
+@DirtiesContext
+class DashboardServiceTest {
+
+    private static final int ACCOUNTS = 20;
+    private static final int LEGS_PER_ACCOUNT = 200;
+    private static final int RECENT = 5;
+    private static final int MAX_TRANSACTIONS = 50; // app.dashboard.maxTransactions
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private HotAccountService hotAccounts;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private JsonMapper jsonMapper;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void oneCallWithThreeQueriesInsteadOfOnePerAccount() throws Exception {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@dashboard.test", "Dash Board", "x"));
+        String token = "Bearer " + jwtService.createToken(user.getId(), user.getEmail());
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = new Account("dashboard-" + i);
+            account.setUser(user);
+            account.deposit(1_000 + i);
+            ids.add(accountRepository.save(account).getId());
+            seed(account.getId());
+        }
+        // a hot account's shard money has to show up in its balance
+        Long hot = ids.get(3);
+        hotAccounts.makeHot(hot, 4);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> hotAccounts.credit(hot, 4, 500));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        JsonNode dashboard = jsonMapper.readTree(call(token, "/me/dashboard?transactions=" + RECENT));
+        long dashboardStatements = statistics.getPrepareStatementCount();
+        long dashboardEntities = statistics.getEntityLoadCount();
+
+        assertThat(dashboardStatements).isEqualTo(3);
+        assertThat(dashboardEntities).isZero();
+        assertThat(dashboard.get("user").get("email").asString()).isEqualTo(user.getEmail());
+        assertThat(dashboard.get("accounts")).hasSize(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            JsonNode account = dashboard.get("accounts").get(i);
+            Long id = ids.get(i);
+            assertThat(account.get("id").asLong()).isEqualTo(id);
+            assertThat(account.get("balance").asLong()).isEqualTo(id.equals(hot) ? 1_000 + i + 500 : 1_000 + i);
+            JsonNode recent = account.get("recentTransactions");
+            assertThat(recent).hasSize(RECENT);
+            for (int r = 0; r < RECENT; r++) {
+                assertThat(recent.get(r).get("id").asLong()).isEqualTo(legId(id, LEGS_PER_ACCOUNT - 1 - r));
+            }
+        }
+
+        // what the home screen does today
+        statistics.clear();
+        callTheOldWay(token, ids);
+        assertThat(statistics.getPrepareStatementCount()).isGreaterThan(ACCOUNTS);
+    }
+
+    @Test
+    void rejectsTooManyTransactionsAndNeedsALogin() throws Exception {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@dashboard.test", "Empty", "x"));
+        String token = "Bearer " + jwtService.createToken(user.getId(), user.getEmail());
+
+        JsonNode empty = jsonMapper.readTree(call(token, "/me/dashboard"));
+        assertThat(empty.get("accounts")).isEmpty();
+
+        MvcResult tooMany = mvc.perform(get("/me/dashboard?transactions=" + (MAX_TRANSACTIONS + 1))
+                .header(HttpHeaders.AUTHORIZATION, token)).andReturn();
+        assertThat(tooMany.getResponse().getStatus()).isEqualTo(400);
+        assertThat(tooMany.getResponse().getContentAsString()).contains("between 0 and " + MAX_TRANSACTIONS);
+        assertThat(mvc.perform(get("/me/dashboard?transactions=-1").header(HttpHeaders.AUTHORIZATION, token))
+                .andReturn().getResponse().getStatus()).isEqualTo(400);
+
+        assertThat(mvc.perform(get("/me/dashboard")).andReturn().getResponse().getStatus()).isIn(401, 403);
+    }
+
+    private String call(String token, String url) throws Exception {
+        MvcResult result = mvc.perform(get(url).header(HttpHeaders.AUTHORIZATION, token)).andReturn();
+        assertThat(result.getResponse().getStatus()).as(url).isEqualTo(200);
+        return result.getResponse().getContentAsString();
+    }
+
+    private void callTheOldWay(String token, List<Long> ids) throws Exception {
+        call(token, "/accounts");
+        for (Long id : ids) {
+            call(token, "/accounts/" + id + "/transactions");
+        }
+    }
+
+    private void seed(Long accountId) {
+        List<Object[]> batch = new ArrayList<>(LEGS_PER_ACCOUNT);
+        for (int i = 0; i < LEGS_PER_ACCOUNT; i++) {
+            batch.add(new Object[]{legId(accountId, i), accountId, TransactionType.DEPOSIT.code(), 1L + i,
+                    Timestamp.from(START.plusSeconds(i)), legId(accountId, i)});
+        }
+        jdbcTemplate.batchUpdate(
+                "insert into transactions (id, account_id, type_code, amount, created_at, link_id) values (?, ?, ?, ?, ?, ?)",
+                batch);
+    }
+
+    private static long legId(Long accountId, int leg) {
+        return 10_000_000L + accountId * 1_000 + leg;
+    }
+}
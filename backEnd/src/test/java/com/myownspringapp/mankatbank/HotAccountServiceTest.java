@@ -0,0 +1,119 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class HotAccountServiceTest {
+
+    private static final long OPENING_BALANCE = 100_000;
+
+    @Autowired
+    private HotAccountService hotAccounts;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private AccountBalanceShardRepository shardRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void shardedCreditsAndDebitsAddUpAfterFolding() throws Exception {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@hot.test", "Hot", "x"));
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(save(user, i == 0 ? 0 : OPENING_BALANCE).getId());
+        }
+        Long merchant = ids.get(0);
+        hotAccounts.makeHot(merchant, 4);
+
+        AtomicLongArray expected = new AtomicLongArray(ids.size());
+        for (int i = 1; i < ids.size(); i++) expected.set(i, OPENING_BALANCE);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int n = 0; n < 100; n++) {
+                    int customer = 1 + random.nextInt(ids.size() - 1);
+                    // refunds debit the hot account while its money is still spread over shards
+                    boolean refund = random.nextInt(5) == 0;
+                    int from = refund ? 0 : customer;
+                    int to = refund ? customer : 0;
+                    long amount = 1 + random.nextInt(100);
+                    try {
+                        transferService.transfer(user.getId(), ids.get(from), ids.get(to), amount);
+                        expected.addAndGet(from, -amount);
+                        expected.addAndGet(to, amount);
+                    } catch (RuntimeException insufficientOrConflict) {
+                        // nothing moved
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        pool.shutdown();
+
+        for (int i = 0; i < ids.size(); i++) {
+            assertThat(hotAccounts.balance(ids.get(i))).isEqualTo(expected.get(i));
+        }
+        assertThat(shardRepository.findByAccountIdOrderByShardIndex(merchant))
+                .filteredOn(s -> s.getBalance() > 0).hasSizeGreaterThan(1);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> hotAccounts.fold(merchant));
+
+        assertThat(accountRepository.findById(merchant).orElseThrow().getBalance()).isEqualTo(expected.get(0));
+        assertThat(hotAccounts.shardBalance(merchant)).isZero();
+    }
+
+    @Test
+    void batchCreditsHotAccountsAndShardCountOnlyGrows() {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@hot.test", "Hot", "x"));
+        Long source = save(user, 1_000).getId();
+        Long merchant = save(user, 0).getId();
+        hotAccounts.makeHot(merchant, 2);
+
+        List<TransferResult> results = transferService.transferBatch(user.getId(), List.of(
+                new TransferRequest(source, merchant, 100),
+                new TransferRequest(source, merchant, 250),
+                new TransferRequest(merchant, source, 400)));
+        assertThat(results).extracting(TransferResult::error).containsExactly(null, null, "Insufficient funds");
+        assertThat(hotAccounts.balance(merchant)).isEqualTo(350);
+        assertThat(hotAccounts.balance(source)).isEqualTo(650);
+
+        assertThatThrownBy(() -> hotAccounts.makeHot(merchant, 1)).hasMessage("Shard count can only grow");
+        hotAccounts.makeHot(merchant, 8);
+        assertThat(shardRepository.findByAccountIdOrderByShardIndex(merchant)).hasSize(8);
+        assertThat(hotAccounts.balance(merchant)).isEqualTo(350);
+    }
+
+    private Account save(User user, long balance) {
+        Account account = new Account("hot-" + UUID.randomUUID());
+        account.setUser(user);
+        if (balance > 0) account.deposit(balance);
+        return accountRepository.save(account);
+    }
+}
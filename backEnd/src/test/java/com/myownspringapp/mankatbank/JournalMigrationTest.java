@@ -0,0 +1,65 @@
+package com.myownspringapp.mankatbank;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// adds the pre-journal `type` column back, so it gets a database of its own
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:journal-migration-test;LOCK_TIMEOUT=10000")
+@DirtiesContext
+class JournalMigrationTest {
+
+    @Autowired
+    private JournalMigration migration;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void legacyRowsGetTypeCodesAndTransferPairsShareALink() {
+        jdbcTemplate.execute("alter table transactions add column type varchar(255)");
+        legacy(1, 10, "DEPOSIT", 500);
+        legacy(2, 10, "TRANSFER_OUT", 200);
+        legacy(3, 11, "TRANSFER_IN", 200);
+        legacy(4, 10, "WITHDRAW", 50);
+        // an IN without its OUT right before it (e.g. that row was deleted) stays on its own
+        legacy(6, 11, "TRANSFER_IN", 75);
+
+        migration.migrate();
+        migration.migrate(); // second run is a no-op
+
+        Map<Long, Map<String, Object>> rows = new HashMap<>();
+        jdbcTemplate.queryForList("select id, type_code, link_id from transactions")
+                .forEach(r -> rows.put(((Number) r.get("ID")).longValue(), r));
+
+        assertThat(code(rows, 1)).isEqualTo(TransactionType.DEPOSIT.code());
+        assertThat(code(rows, 2)).isEqualTo(TransactionType.TRANSFER_OUT.code());
+        assertThat(code(rows, 3)).isEqualTo(TransactionType.TRANSFER_IN.code());
+        assertThat(code(rows, 4)).isEqualTo(TransactionType.WITHDRAW.code());
+        assertThat(link(rows, 1)).isEqualTo(1);
+        assertThat(link(rows, 2)).isEqualTo(2);
+        assertThat(link(rows, 3)).isEqualTo(2);
+        assertThat(link(rows, 6)).isEqualTo(6);
+    }
+
+    private void legacy(long id, long accountId, String type, long amount) {
+        jdbcTemplate.update("insert into transactions (id, account_id, type, amount, created_at) values (?, ?, ?, ?, ?)",
+                id, accountId, type, amount, Timestamp.from(Instant.parse("2023-05-01T10:00:00Z").plusSeconds(id)));
+    }
+
+    private static short code(Map<Long, Map<String, Object>> rows, long id) {
+        return ((Number) rows.get(id).get("TYPE_CODE")).shortValue();
+    }
+
+    private static long link(Map<Long, Map<String, Object>> rows, long id) {
+        return ((Number) rows.get(id).get("LINK_ID")).longValue();
+    }
+}
@@ -0,0 +1,81 @@
+package com.myownspringapp.mankatbank;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs in the lowMemoryTest task (-Xmx128m). The database is file-backed so the seeded rows
+// live on disk, not on the heap we're measuring.
+@Tag("low-memory")
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:file:./build/h2/export-test;CACHE_SIZE=8192")
+@DirtiesContext
+class StatementExportServiceTest {
+
+    private static final long ACCOUNT_ID = 42L;
+    private static final int ROWS = 1_000_000;
+    private static final Instant START = Instant.parse("2010-01-01T00:00:00Z");
+
+    @Autowired
+    private StatementExportService exportService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void largeExportStreamsWithinSmallHeap() throws Exception {
+        seed();
+
+        for (StatementExportService.Format format : StatementExportService.Format.values()) {
+            LineCounter out = new LineCounter();
+            exportService.export(ACCOUNT_ID, format, null, null).writeTo(out);
+
+            int header = (format == StatementExportService.Format.CSV) ? 1 : 0;
+            assertThat(out.lines).isEqualTo(ROWS + header);
+        }
+
+        // from and to are both inclusive, like the history filter: rows 10..19
+        LineCounter bounded = new LineCounter();
+        exportService.export(ACCOUNT_ID, StatementExportService.Format.NDJSON, START.plusSeconds(10), START.plusSeconds(19))
+                .writeTo(bounded);
+        assertThat(bounded.lines).isEqualTo(10);
+    }
+
+    private void seed() {
+        String sql = "insert into transactions (id, account_id, type_code, amount, created_at, link_id) values (?, ?, ?, ?, ?, ?)";
+        List<Object[]> batch = new ArrayList<>(5_000);
+        for (int i = 0; i < ROWS; i++) {
+            batch.add(new Object[]{10_000_000L + i, ACCOUNT_ID, TransactionType.DEPOSIT.code(), i % 1000L,
+                    Timestamp.from(START.plusSeconds(i)), 10_000_000L + i});
+            if (batch.size() == 5_000) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private static final class LineCounter extends OutputStream {
+        long lines;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') lines++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') lines++;
+            }
+        }
+    }
+}
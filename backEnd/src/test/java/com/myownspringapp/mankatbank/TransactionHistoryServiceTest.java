@@ -0,0 +1,151 @@
+package com.myownspringapp.mankatbank;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// own in-memory database, thrown away with the context, so the seeded rows don't stay on the heap
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:history-test;LOCK_TIMEOUT=10000",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.myownspringapp.mankatbank.TransactionHistoryServiceTest$CapturingInspector"
+})
+@DirtiesContext
+class TransactionHistoryServiceTest {
+
+    private static final long ACCOUNT_ID = 1L;
+    private static final Instant START = Instant.parse("2015-01-01T00:00:00Z");
+
+    @Autowired
+    private TransactionHistoryService historyService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void walksAllPagesInOrderWithFilters() {
+        seed(ACCOUNT_ID + 1, 1_000);
+        TransactionFilter deposits = new TransactionFilter("DEPOSIT", 10L, null, null, null);
+
+        List<Transaction> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            TransactionPage page = historyService.page(ACCOUNT_ID + 1, cursor, 37, deposits);
+            seen.addAll(page.items());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        // every other row is a DEPOSIT and amounts are row % 100, so amount >= 10 keeps 90% of them
+        assertThat(seen).hasSize(450);
+        assertThat(seen).allMatch(t -> t.getType() == TransactionType.DEPOSIT && t.getAmount() >= 10);
+        Set<Long> ids = new HashSet<>();
+        for (int i = 1; i < seen.size(); i++) {
+            Transaction newer = seen.get(i - 1);
+            Transaction older = seen.get(i);
+            assertThat(newer.getCreatedAt().isAfter(older.getCreatedAt())
+                    || (newer.getCreatedAt().equals(older.getCreatedAt()) && newer.getId() > older.getId())).isTrue();
+            assertThat(ids.add(older.getId())).isTrue();
+        }
+    }
+
+    @Test
+    void deepPagesNeverReadTheRowsTheySkip() {
+        int rows = 20_000;
+        seed(ACCOUNT_ID, rows);
+        TransactionFilter none = new TransactionFilter(null, null, null, null, null);
+
+        // cursor just above the oldest 1 000 rows, i.e. ~19 000 rows deep
+        int deepRow = 1_000;
+        String deepCursor = new TransactionHistoryService.Cursor(createdAt(deepRow), rowId(ACCOUNT_ID, deepRow)).encode();
+        List<String> statements = CapturingInspector.capture(
+                () -> assertThat(historyService.page(ACCOUNT_ID, deepCursor, 50, none).items().get(0).getId())
+                        .isEqualTo(rowId(ACCOUNT_ID, deepRow - 1)));
+        assertThat(statements).hasSize(1);
+
+        // The query Hibernate generates for the page is an index range bounded by the cursor, so the
+        // ~19 000 newer rows that OFFSET paging would step over are never read. (H2 reads that range
+        // oldest-first and sorts it; Postgres walks the same index backwards and stops after one page.)
+        Timestamp at = Timestamp.from(createdAt(deepRow));
+        String deepPlan = explain(statements.get(0), ACCOUNT_ID, at, at, at, rowId(ACCOUNT_ID, deepRow), 51);
+        assertThat(deepPlan.replaceAll("\\s+", " "))
+                .contains("IDX_TRANSACTIONS_ACCOUNT_CREATED: ACCOUNT_ID = ?1 AND CREATED_AT <= ?2");
+        assertThat(scanCount(deepPlan)).isLessThan(deepRow + 10);
+    }
+
+    // two rows per timestamp so the id tie-breaker is exercised
+    private void seed(long accountId, int rows) {
+        String sql = "insert into transactions (id, account_id, type_code, amount, created_at, link_id) values (?, ?, ?, ?, ?, ?)";
+        List<Object[]> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[]{
+                    rowId(accountId, i), accountId,
+                    (i % 2 == 0 ? TransactionType.DEPOSIT : TransactionType.WITHDRAW).code(),
+                    i % 100L, Timestamp.from(createdAt(i)), rowId(accountId, i)
+            });
+            if (batch.size() == 10_000) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) jdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    private static long rowId(long accountId, int row) {
+        return accountId * 10_000_000 + row;
+    }
+
+    private static Instant createdAt(int row) {
+        return START.plusSeconds(row / 2);
+    }
+
+    // binds the page's values in the order page() adds its predicates: account, cursor bound, cursor, limit
+    private String explain(String sql, Object... params) {
+        assertThat(sql.chars().filter(c -> c == '?').count()).as(sql).isEqualTo(params.length);
+        return jdbcTemplate.queryForObject("explain analyze " + sql, String.class, params);
+    }
+
+    // H2 reports the rows an index or table scan touched as /* scanCount: n */
+    private static long scanCount(String plan) {
+        Matcher m = Pattern.compile("scanCount: (\\d+)").matcher(plan);
+        assertThat(m.find()).as(plan).isTrue();
+        return Long.parseLong(m.group(1));
+    }
+
+    // records the SQL Hibernate sends from the capturing thread, so the plan checked is the one page() runs
+    public static class CapturingInspector implements StatementInspector {
+
+        private static volatile Thread recording;
+        private static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        static List<String> capture(Runnable work) {
+            statements.clear();
+            recording = Thread.currentThread();
+            try {
+                work.run();
+            } finally {
+                recording = null;
+            }
+            return List.copyOf(statements);
+        }
+
+        @Override
+        public String inspect(String sql) {
+            if (Thread.currentThread() == recording) statements.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class TransferServiceBatchTest {
+
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void appliesGoodItemsAndReportsBadOnes() {
+        User payer = userRepository.save(new User(UUID.randomUUID() + "@batch.test", "Payer", "x"));
+        User other = userRepository.save(new User(UUID.randomUUID() + "@batch.test", "Other", "x"));
+
+        Long payroll = save("payroll", payer, 1_000);
+        Long alice = save("alice", other, 0);
+        Long bob = save("bob", other, 0);
+
+        List<TransferResult> results = transferService.transferBatch(payer.getId(), List.of(
+                new TransferRequest(payroll, alice, 400),
+                new TransferRequest(payroll, bob, 700),      // only 600 left
+                new TransferRequest(alice, bob, 10),         // not the payer's account
+                new TransferRequest(payroll, -1L, 10),
+                new TransferRequest(payroll, bob, 600)
+        ));
+
+        assertThat(results).extracting(TransferResult::success)
+                .containsExactly(true, false, false, false, true);
+        assertThat(results).extracting(TransferResult::error)
+                .containsExactly(null, "Insufficient funds", "Forbidden", "To account not found", null);
+
+        assertThat(accountRepository.findById(payroll).orElseThrow().getBalance()).isZero();
+        assertThat(accountRepository.findById(alice).orElseThrow().getBalance()).isEqualTo(400);
+        assertThat(accountRepository.findById(bob).orElseThrow().getBalance()).isEqualTo(600);
+        assertThat(transactionRepository.findByAccountId(payroll)).hasSize(2);
+
+        // each transfer is one journal entry: both legs share the link id and the timestamp
+        for (Transaction out : transactionRepository.findByAccountId(payroll)) {
+            assertThat(out.getType()).isEqualTo(TransactionType.TRANSFER_OUT);
+            Transaction in = transactionRepository.findAll().stream()
+                    .filter(t -> t.getLinkId().equals(out.getLinkId()) && !t.getId().equals(out.getId()))
+                    .findFirst().orElseThrow();
+            assertThat(in.getType()).isEqualTo(TransactionType.TRANSFER_IN);
+            assertThat(in.getAmount()).isEqualTo(out.getAmount());
+            assertThat(in.getCreatedAt()).isEqualTo(out.getCreatedAt());
+        }
+    }
+
+    private Long save(String name, User user, long balance) {
+        Account account = new Account(name);
+        account.setUser(user);
+        if (balance > 0) account.deposit(balance);
+        return accountRepository.save(account).getId();
+    }
+}
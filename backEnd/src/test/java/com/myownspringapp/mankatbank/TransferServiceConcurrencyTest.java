@@ -0,0 +1,116 @@
+package com.myownspringapp.mankatbank;
+
+import com.myownspringapp.mankatbank.auth.JwtService;
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class TransferServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 200;
+    private static final long OPENING_BALANCE = 1_000_000;
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void concurrentTransfersDepositsAndWithdrawalsLoseNoUpdates() throws Exception {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@stress.test", "Stress", "x"));
+        String token = "Bearer " + jwtService.createToken(user.getId(), user.getEmail());
+
+        // index 0 is the "merchant" every thread pays into; the others also receive refunds from it
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Account account = new Account("stress-" + i);
+            account.setUser(user);
+            account.deposit(OPENING_BALANCE);
+            ids.add(accountRepository.save(account).getId());
+        }
+
+        AtomicLongArray expected = new AtomicLongArray(ids.size());
+        for (int i = 0; i < ids.size(); i++) expected.set(i, OPENING_BALANCE);
+        AtomicLong failures = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<java.util.concurrent.Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int n = 0; n < TRANSFERS_PER_THREAD; n++) {
+                    int customer = 1 + random.nextInt(ids.size() - 1);
+                    long amount = 1 + random.nextInt(100);
+                    int kind = random.nextInt(8);
+                    try {
+                        if (kind < 2) {
+                            // deposits and withdrawals go through the controller and hit the same rows as the transfers
+                            int account = random.nextInt(ids.size());
+                            String action = kind == 0 ? "deposit" : "withdraw";
+                            int status = mvc.perform(post("/accounts/" + ids.get(account) + "/" + action)
+                                    .header(HttpHeaders.AUTHORIZATION, token).contentType(MediaType.APPLICATION_JSON)
+                                    .content("{\"amount\":" + amount + "}")).andReturn().getResponse().getStatus();
+                            if (status != 200) {
+                                failures.incrementAndGet();
+                                continue;
+                            }
+                            expected.addAndGet(account, kind == 0 ? amount : -amount);
+                            continue;
+                        }
+                        boolean refund = kind == 2;
+                        int from = refund ? 0 : customer;
+                        int to = refund ? customer : 0;
+                        transferService.transfer(user.getId(), ids.get(from), ids.get(to), amount);
+                        expected.addAndGet(from, -amount);
+                        expected.addAndGet(to, amount);
+                    } catch (Exception ex) {
+                        failures.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (var future : futures) future.get(2, TimeUnit.MINUTES);
+        pool.shutdown();
+
+        for (int i = 0; i < ids.size(); i++) {
+            long balance = accountRepository.findById(ids.get(i)).orElseThrow().getBalance();
+            assertThat(balance).as("balance of account %d", ids.get(i)).isEqualTo(expected.get(i));
+        }
+        assertThat(failures.get()).isZero();
+    }
+}
@@ -0,0 +1,213 @@
+package com.myownspringapp.mankatbank.archive;
+
+import com.myownspringapp.mankatbank.Account;
+import com.myownspringapp.mankatbank.AccountETags;
+import com.myownspringapp.mankatbank.AccountRepository;
+import com.myownspringapp.mankatbank.BalanceResponse;
+import com.myownspringapp.mankatbank.BalanceSnapshotService;
+import com.myownspringapp.mankatbank.DashboardResponse;
+import com.myownspringapp.mankatbank.DashboardService;
+import com.myownspringapp.mankatbank.StatementExportService;
+import com.myownspringapp.mankatbank.Transaction;
+import com.myownspringapp.mankatbank.TransactionFilter;
+import com.myownspringapp.mankatbank.TransactionHistoryService;
+import com.myownspringapp.mankatbank.TransactionPage;
+import com.myownspringapp.mankatbank.TransactionType;
+import com.myownspringapp.mankatbank.reconciliation.ReconciliationService;
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:archive-test;LOCK_TIMEOUT=10000")
+@DirtiesContext
+class TransactionArchiveTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @TempDir
+    static Path dir;
+
+    @DynamicPropertySource
+    static void archiveDir(DynamicPropertyRegistry registry) {
+        registry.add("app.archive.dir", dir::toString);
+    }
+
+    @Autowired
+    private TransactionArchive archive;
+    @Autowired
+    private TransactionHistoryService historyService;
+    @Autowired
+    private StatementExportService exportService;
+    @Autowired
+    private BalanceSnapshotService balanceSnapshotService;
+    @Autowired
+    private DashboardService dashboardService;
+    @Autowired
+    private ReconciliationService reconciliationService;
+    @Autowired
+    private AccountETags eTags;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void oldMonthsMoveToSegmentsAndReadsDoNotChange() throws Exception {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@archive.test", "Arch Ive", "x"));
+        List<Long> accounts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Account account = new Account("archive-" + i);
+            account.setUser(user);
+            accounts.add(accountRepository.save(account).getId());
+        }
+        // the last account has been quiet since 2024, so its dashboard and balances come from the archive alone
+        seed(accounts);
+        balanceSnapshotService.snapshot();
+
+        Map<Long, Reads> before = new HashMap<>();
+        for (Long id : accounts) before.put(id, reads(id));
+        assertThat(before.get(accounts.get(0)).monthExport()).contains(",2024-04-30T23:59:59.999999Z,");
+        DashboardResponse dashboard = dashboardService.dashboard(user.getId(), 10);
+
+        // first pass archives; the hot rows stay until every instance has seen the catalog
+        Instant now = Instant.now();
+        archive.run(now);
+        Instant cutoff = archive.cutoff();
+        assertThat(cutoff).isEqualTo(Instant.parse("2024-05-01T00:00:00Z"));
+        assertThat(hotLegsBefore(cutoff)).isPositive();
+        for (Long id : accounts) assertThat(reads(id)).isEqualTo(before.get(id));
+        assertThat(dashboardService.dashboard(user.getId(), 10)).isEqualTo(dashboard);
+
+        archive.run(now.plus(Duration.ofHours(1)));
+        assertThat(hotLegsBefore(cutoff)).isZero();
+        for (Long id : accounts) assertThat(reads(id)).isEqualTo(before.get(id));
+        assertThat(dashboardService.dashboard(user.getId(), 10)).isEqualTo(dashboard);
+        assertThat(reconciliationService.run().mismatchCount()).isZero();
+
+        // nothing left to do, and a purged month is not purged twice
+        archive.run(now.plus(Duration.ofHours(2)));
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from transaction_archive where purged_at is not null", Integer.class)).isEqualTo(4);
+        Map<String, Object> sizes = jdbcTemplate.queryForMap(
+                "select sum(leg_count) legs, sum(file_bytes) bytes from transaction_archive");
+        long legs = ((Number) sizes.get("LEGS")).longValue();
+        long bytes = ((Number) sizes.get("BYTES")).longValue();
+        // the month blocks are delta-encoded and compressed: a few bytes a leg, not a table row's worth
+        assertThat(legs).isPositive();
+        assertThat(bytes).isLessThan(legs * 8);
+    }
+
+    // everything a client can read about one account
+    private record Reads(List<String> all, List<String> pages, List<String> deposits, String export,
+                         String monthExport, List<BalanceResponse> balances, String eTag) {}
+
+    private Reads reads(Long accountId) throws Exception {
+        List<String> all = new ArrayList<>(historyService.all(accountId).stream().map(TransactionArchiveTest::key).toList());
+        all.sort(null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(accountId, StatementExportService.Format.CSV, null, null).writeTo(out);
+        // both bounds inclusive, ending on the month's last microsecond, which must survive archiving
+        ByteArrayOutputStream month = new ByteArrayOutputStream();
+        exportService.export(accountId, StatementExportService.Format.CSV, Instant.parse("2024-04-01T00:00:00Z"),
+                Instant.parse("2024-04-30T23:59:59.999999Z")).writeTo(month);
+        List<BalanceResponse> balances = new ArrayList<>();
+        for (String at : List.of("2024-01-15T12:00:00Z", "2024-02-01T00:00:00Z", "2024-04-30T23:59:59.999999Z",
+                "2024-07-01T00:00:00Z")) {
+            balances.add(balanceSnapshotService.balanceAsOf(accountId, Instant.parse(at)));
+        }
+        balances.add(balanceSnapshotService.balanceAsOf(accountId, Instant.now().truncatedTo(ChronoUnit.DAYS)));
+        return new Reads(all,
+                pages(accountId, new TransactionFilter(null, null, null, null, null)),
+                pages(accountId, new TransactionFilter("DEPOSIT", 100L, null, Instant.parse("2024-02-10T00:00:00Z"), null)),
+                out.toString(StandardCharsets.UTF_8), month.toString(StandardCharsets.UTF_8), balances,
+                eTags.transactions(accountId));
+    }
+
+    private List<String> pages(Long accountId, TransactionFilter filter) {
+        List<String> keys = new ArrayList<>();
+        String cursor = null;
+        do {
+            TransactionPage page = historyService.page(accountId, cursor, 7, filter);
+            page.items().forEach(t -> keys.add(key(t)));
+            keys.add("|");
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return keys;
+    }
+
+    private static String key(Transaction t) {
+        return t.getId() + ":" + t.getAccountId() + ":" + t.getType() + ":" + t.getAmount() + ":" + t.getCreatedAt()
+                + ":" + t.getLinkId();
+    }
+
+    private int hotLegsBefore(Instant cutoff) {
+        return jdbcTemplate.queryForObject("select count(*) from transactions where created_at < ?", Integer.class,
+                Timestamp.from(cutoff));
+    }
+
+    // Jan-Apr 2024 for every account, including the first and last microsecond of a month, plus
+    // transfers between the first two; a few legs in the last days for all but the quiet one
+    private void seed(List<Long> accounts) {
+        String sql = "insert into transactions (id, account_id, type_code, amount, created_at, link_id) values (?, ?, ?, ?, ?, ?)";
+        List<Object[]> legs = new ArrayList<>();
+        long[] balances = new long[accounts.size()];
+        long id = 1_000_000;
+        TransactionType[] single = {TransactionType.DEPOSIT, TransactionType.DEPOSIT, TransactionType.WITHDRAW};
+        for (int i = 0; i < 1_200; i++) {
+            int a = i % accounts.size();
+            Instant at = (i < 3) ? Instant.parse("2024-02-01T00:00:00Z")
+                    : (i < 6) ? Instant.parse("2024-04-30T23:59:59.999999Z")
+                    : START.plusSeconds(i * 8_640L + a);
+            if (i % 5 == 4 && a < 2) {
+                long amount = 1 + i % 70;
+                legs.add(new Object[]{id, accounts.get(0), TransactionType.TRANSFER_OUT.code(), amount, Timestamp.from(at), id});
+                legs.add(new Object[]{id + 1, accounts.get(1), TransactionType.TRANSFER_IN.code(), amount, Timestamp.from(at), id});
+                balances[0] -= amount;
+                balances[1] += amount;
+                id += 2;
+            } else {
+                TransactionType type = single[i % single.length];
+                long amount = (type == TransactionType.DEPOSIT) ? 50 + i % 400 : 1 + i % 40;
+                legs.add(new Object[]{id, accounts.get(a), type.code(), amount, Timestamp.from(at), id});
+                balances[a] += type.signed(amount);
+                id++;
+            }
+        }
+        Instant recent = Instant.now().truncatedTo(ChronoUnit.DAYS).minus(Duration.ofDays(3));
+        for (int i = 0; i < 20; i++) {
+            int a = i % 2;
+            legs.add(new Object[]{id, accounts.get(a), TransactionType.DEPOSIT.code(), 10L + i,
+                    Timestamp.from(recent.plusSeconds(i * 600L)), id});
+            balances[a] += 10 + i;
+            id++;
+        }
+        jdbcTemplate.batchUpdate(sql, legs);
+        for (int a = 0; a < accounts.size(); a++) {
+            jdbcTemplate.update("update accounts set balance = ? where id = ?", balances[a], accounts.get(a));
+        }
+    }
+}
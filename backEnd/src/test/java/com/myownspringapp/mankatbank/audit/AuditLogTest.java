@@ -0,0 +1,182 @@
+package com.myownspringapp.mankatbank.audit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuditLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void ringHandsEveryEventToTheConsumerOnceAndInOrderPerProducer() throws Exception {
+        AuditRing ring = new AuditRing(1024);
+        int producers = 4;
+        int perProducer = 25_000;
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            futures.add(pool.submit(() -> {
+                for (long n = 0; n < perProducer; n++) {
+                    AuditEvent event = new AuditEvent(Instant.EPOCH, AuditAction.DEPOSIT, producer, null, null, n, null);
+                    while (!ring.offer(event)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }));
+        }
+
+        long[] next = new long[producers];
+        List<AuditEvent> batch = new ArrayList<>();
+        int received = 0;
+        while (received < producers * perProducer) {
+            batch.clear();
+            received += ring.drain(batch, 256);
+            for (AuditEvent event : batch) {
+                int producer = event.userId().intValue();
+                assertThat(event.amount()).isEqualTo(next[producer]);
+                next[producer]++;
+            }
+        }
+        for (Future<?> future : futures) future.get();
+        pool.shutdown();
+        assertThat(ring.size()).isZero();
+        assertThat(ring.drain(batch, 256)).isZero();
+    }
+
+    @Test
+    void fullRingRefusesInsteadOfBlocking() {
+        AuditRing ring = new AuditRing(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(ring.offer(event(i))).isTrue();
+        }
+        assertThat(ring.offer(event(4))).isFalse();
+        List<AuditEvent> batch = new ArrayList<>();
+        assertThat(ring.drain(batch, 1)).isOne();
+        assertThat(ring.offer(event(4))).isTrue();
+    }
+
+    @Test
+    void batchesGoToRotatedFilesAndCloseWritesTheRest() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AuditLog audit = new AuditLog(List.of(new AuditFileSink(dir, 4096, false)), 1024, 64,
+                Duration.ofSeconds(1), registry);
+        audit.start();
+        for (int i = 0; i < 1_000; i++) {
+            audit.publish(event(i));
+        }
+        audit.publish(AuditEvent.of(AuditAction.LOGIN_FAILED, null, "a \"quoted\"\nname"));
+        audit.close();
+
+        List<Path> files = files();
+        assertThat(files.size()).isGreaterThan(10);
+        assertThat(files).allMatch(f -> f.getFileName().toString().matches("audit-\\d{4}-\\d{2}-\\d{2}\\.\\d+\\.log"));
+        List<String> lines = new ArrayList<>();
+        for (Path file : files) {
+            // rolled before the line that would cross the limit, give or take one line
+            assertThat(Files.size(file)).isLessThan(4096 + 200);
+            lines.addAll(Files.readAllLines(file));
+        }
+        assertThat(lines).hasSize(1_001);
+        assertThat(lines).anyMatch(l -> l.endsWith("\"action\":\"LOGIN_FAILED\",\"detail\":\"a \\\"quoted\\\"\\u000aname\"}"));
+        assertThat(lines.stream().filter(l -> l.contains("\"amount\":999}"))).hasSize(1);
+        assertThat(registry.get("bank.audit.written").counter().count()).isEqualTo(1_001);
+        assertThat(registry.get("bank.audit.dropped").tag("reason", "overflow").counter().count()).isZero();
+
+        // a restart carries on with the newest file (or the next one if that is full), never rewrites
+        Path first = files.get(0);
+        long firstSize = Files.size(first);
+        AuditLog restarted = new AuditLog(List.of(new AuditFileSink(dir, 4096, false)), 1024, 64,
+                Duration.ofSeconds(1), new SimpleMeterRegistry());
+        restarted.start();
+        restarted.publish(AuditEvent.of(AuditAction.LOGOUT, 1L, null));
+        restarted.close();
+        List<Path> after = files();
+        assertThat(after.size()).isBetween(files.size(), files.size() + 1);
+        assertThat(Files.size(first)).isEqualTo(firstSize);
+        List<String> last = Files.readAllLines(after.get(after.size() - 1));
+        assertThat(last.get(last.size() - 1)).contains("\"action\":\"LOGOUT\"");
+    }
+
+    @Test
+    void aStuckSinkCostsPublishersAtMostMaxWaitAndTheDropsAreCounted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<AuditEvent> written = new ArrayList<>();
+        AuditSink stuck = events -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.addAll(events);
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AuditLog audit = new AuditLog(List.of(stuck), 8, 4, Duration.ofMillis(20), registry);
+        audit.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 40; i++) {
+            audit.publish(event(i));
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        release.countDown();
+        audit.close();
+
+        // the writer holds one batch, the ring 8 more; everything after that waited and was dropped
+        double dropped = registry.get("bank.audit.dropped").tag("reason", "overflow").counter().count();
+        double published = registry.get("bank.audit.published").counter().count();
+        assertThat(published + dropped).isEqualTo(40);
+        assertThat(dropped).isGreaterThanOrEqualTo(40 - 8 - 4);
+        assertThat(registry.get("bank.audit.overflows").counter().count()).isGreaterThanOrEqualTo(dropped);
+        assertThat(written).hasSize((int) published);
+        assertThat(millis).isLessThan((long) (dropped * 20 + 2_000));
+    }
+
+    @Test
+    void anIdleWriterBacksOffAndTheNextEventWakesIt() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(1);
+        AuditLog audit = new AuditLog(List.of(events -> arrived.countDown()), 64, 16,
+                Duration.ofSeconds(1), new SimpleMeterRegistry());
+        audit.start();
+
+        // parking 1ms at a time this would be ~500 wakeups; backing off to 50ms it is about a dozen
+        Thread.sleep(500);
+        assertThat(audit.idleParks()).isBetween(1L, 40L);
+
+        audit.publish(event(1));
+        assertThat(arrived.await(5, TimeUnit.SECONDS)).isTrue();
+        audit.close();
+    }
+
+    private static AuditEvent event(long n) {
+        return new AuditEvent(Instant.now(), AuditAction.DEPOSIT, 7L, 42L, null, n, null);
+    }
+
+    private List<Path> files() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted((a, b) -> {
+                String[] x = a.getFileName().toString().split("\\.");
+                String[] y = b.getFileName().toString().split("\\.");
+                int byDay = x[0].compareTo(y[0]);
+                return byDay != 0 ? byDay : Integer.compare(Integer.parseInt(x[1]), Integer.parseInt(y[1]));
+            }).toList();
+        }
+    }
+}
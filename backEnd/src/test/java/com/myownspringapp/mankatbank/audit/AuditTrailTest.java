@@ -0,0 +1,118 @@
+package com.myownspringapp.mankatbank.audit;
+
+import com.myownspringapp.mankatbank.Account;
+import com.myownspringapp.mankatbank.AccountRepository;
+import com.myownspringapp.mankatbank.auth.JwtService;
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:audit-test;LOCK_TIMEOUT=10000")
+@AutoConfigureMockMvc
+@DirtiesContext
+class AuditTrailTest {
+
+    @TempDir
+    static Path dir;
+
+    @DynamicPropertySource
+    static void auditDir(DynamicPropertyRegistry registry) {
+        registry.add("app.audit.dir", dir::toString);
+    }
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void moneyMovementsAndLoginsEndUpInTheTableAndTheFiles() throws Exception {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@audit.test", "Audit Trail", "x"));
+        String token = "Bearer " + jwtService.createToken(user.getId(), user.getEmail());
+        Long from = account(user);
+        Long to = account(user);
+
+        // each sent twice with the same Idempotency-Key: the replay moves nothing and records nothing
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(post("/accounts/" + from + "/deposit").header(HttpHeaders.AUTHORIZATION, token)
+                    .header("Idempotency-Key", "audit-deposit")
+                    .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":500}")).andExpect(status().isOk());
+        }
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(post("/accounts/transfer").header(HttpHeaders.AUTHORIZATION, token)
+                    .header("Idempotency-Key", "audit-transfer").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"fromId\":" + from + ",\"toId\":" + to + ",\"amount\":200}")).andExpect(status().isOk());
+        }
+        assertThat(accountRepository.findById(to).orElseThrow().getBalance()).isEqualTo(200);
+        // refused, so nothing moved and nothing is recorded
+        assertThatThrownBy(() -> mvc.perform(post("/accounts/" + from + "/withdraw").header(HttpHeaders.AUTHORIZATION, token)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":100000}")))
+                .hasRootCauseMessage("Insufficient funds");
+        mvc.perform(post("/auth/login").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"nobody@audit.test\",\"password\":\"wrong\"}"));
+
+        List<Map<String, Object>> rows = awaitRows(3);
+        assertThat(rows).extracting(r -> r.get("ACTION")).containsExactly("DEPOSIT", "TRANSFER", "LOGIN_FAILED");
+        assertThat(rows.get(0)).containsEntry("USER_ID", user.getId()).containsEntry("ACCOUNT_ID", from)
+                .containsEntry("AMOUNT", 500L);
+        assertThat(rows.get(1)).containsEntry("ACCOUNT_ID", from).containsEntry("COUNTERPARTY_ID", to)
+                .containsEntry("AMOUNT", 200L);
+        assertThat(rows.get(2)).containsEntry("DETAIL", "nobody@audit.test");
+
+        List<String> lines = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) lines.addAll(Files.readAllLines(file));
+        }
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(1)).contains("\"action\":\"TRANSFER\",\"userId\":" + user.getId() + ",\"accountId\":" + from
+                + ",\"counterpartyId\":" + to + ",\"amount\":200}");
+    }
+
+    private Long account(User user) {
+        Account account = new Account("audit");
+        account.setUser(user);
+        return accountRepository.save(account).getId();
+    }
+
+    // the writer runs behind the requests
+    private List<Map<String, Object>> awaitRows(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList("select * from audit_events order by id");
+            if (rows.size() >= expected || System.currentTimeMillis() > deadline) {
+                return rows;
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.myownspringapp.mankatbank.auth;
+
+import com.myownspringapp.mankatbank.AccountRepository;
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class AuthControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Test
+    void registerHashesOnThePoolAndSavesTheUserWithADefaultAccount() throws Exception {
+        String email = UUID.randomUUID() + "@register.test";
+        MvcResult started = mvc.perform(post("/auth/register").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\",\"fullName\":\"New User\",\"password\":\"secret\"}"))
+                .andReturn();
+        mvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andExpect(jsonPath("$.email").value(email));
+
+        User user = userRepository.findByEmail(email).orElseThrow();
+        assertThat(user.getPasswordHash()).startsWith("$2");
+        assertThat(accountRepository.findByUser_Id(user.getId())).hasSize(1);
+    }
+}
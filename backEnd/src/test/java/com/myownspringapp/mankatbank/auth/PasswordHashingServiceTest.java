@@ -0,0 +1,38 @@
+package com.myownspringapp.mankatbank.auth;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHashingServiceTest {
+
+    @Test
+    void rejectsImmediatelyOnceThePoolAndQueueAreFull() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PasswordHashingService hashing = new PasswordHashingService(new BCryptPasswordEncoder(14), registry, 1, 2);
+
+        // one running + two queued fills it
+        List<CompletableFuture<String>> accepted = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            accepted.add(hashing.encode("password-" + i));
+        }
+
+        assertThatThrownBy(() -> hashing.encode("one-too-many"))
+                .isInstanceOf(PasswordHashingOverloadedException.class);
+        // rejected without waiting for the hash in progress
+        assertThat(accepted.get(0)).isNotDone();
+        assertThat(registry.counter("bank.auth.hashing.rejected").count()).isEqualTo(1);
+
+        accepted.forEach(CompletableFuture::join);
+        String hash = accepted.get(0).join();
+        assertThat(hashing.matches("password-0", hash).join()).isTrue();
+        hashing.shutdown();
+    }
+}
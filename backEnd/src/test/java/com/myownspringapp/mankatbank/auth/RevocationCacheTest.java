@@ -0,0 +1,61 @@
+package com.myownspringapp.mankatbank.auth;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// no scheduled refresh during the test, so it decides when other instances' revocations arrive
+@SpringBootTest(properties = "app.jwt.revocation.refreshMillis=600000")
+class RevocationCacheTest {
+
+    @Autowired
+    private RevocationCache revocationCache;
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Test
+    void revokedTokensAreCachedAndExpiredOnesPurged() {
+        String live = UUID.randomUUID().toString();
+        String expired = UUID.randomUUID().toString();
+
+        revocationCache.revoke(live, Instant.now().plusSeconds(3600));
+        revocationCache.revoke(expired, Instant.now().minusSeconds(1));
+
+        assertThat(revocationCache.isRevoked(live)).isTrue();
+        assertThat(revocationCache.isRevoked(expired)).isFalse();
+        assertThat(revocationCache.isRevoked(UUID.randomUUID().toString())).isFalse();
+
+        revocationCache.purgeExpired();
+
+        assertThat(revokedTokenRepository.existsByJti(live)).isTrue();
+        assertThat(revokedTokenRepository.existsByJti(expired)).isFalse();
+        assertThat(revocationCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void refreshPicksUpRevocationsFromOtherInstances() {
+        String jti = UUID.randomUUID().toString();
+        revokedTokenRepository.save(new RevokedToken(jti, Instant.now().plusSeconds(3600)));
+
+        assertThat(revocationCache.isRevoked(jti)).isFalse();
+        revocationCache.refresh();
+        assertThat(revocationCache.isRevoked(jti)).isTrue();
+    }
+
+    @Test
+    void aCopyThatStoppedRefreshingAsksTheTable() throws Exception {
+        RevocationCache stale = new RevocationCache(revokedTokenRepository, 1);
+        stale.load();
+        String jti = UUID.randomUUID().toString();
+        revokedTokenRepository.save(new RevokedToken(jti, Instant.now().plusSeconds(3600)));
+        Thread.sleep(10);
+
+        assertThat(stale.isRevoked(jti)).isTrue();
+        assertThat(stale.isRevoked(UUID.randomUUID().toString())).isFalse();
+    }
+}
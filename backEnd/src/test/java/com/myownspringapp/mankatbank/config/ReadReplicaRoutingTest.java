@@ -0,0 +1,137 @@
+package com.myownspringapp.mankatbank.config;
+
+import com.myownspringapp.mankatbank.Account;
+import com.myownspringapp.mankatbank.AccountRepository;
+import com.myownspringapp.mankatbank.MankatBankApplication;
+import com.myownspringapp.mankatbank.auth.JwtService;
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// Two H2 databases stand in for primary and replica. There is no real replication: replicate()
+// copies the primary over, so between copies the replica lags like a real one would.
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadReplicaRoutingTest.PRIMARY_URL,
+        "app.datasource.replica.url=" + ReadReplicaRoutingTest.REPLICA_URL,
+        "app.datasource.replica.stickiness=PT2S"})
+@AutoConfigureMockMvc
+@DirtiesContext
+class ReadReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private JsonMapper jsonMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // The app reads from the replica during startup, so it needs the schema first: boot the app
+    // once with the replica as its only database and let Hibernate create it.
+    @BeforeAll
+    static void createReplicaSchema() {
+        new SpringApplicationBuilder(MankatBankApplication.class)
+                .properties("spring.datasource.url=" + REPLICA_URL, "server.port=0")
+                .run()
+                .close();
+    }
+
+    @Test
+    void readsGoToTheReplicaExceptRightAfterTheUsersOwnWrite() throws Exception {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@routing.test", "Routing", "x"));
+        Account account = new Account("routing");
+        account.setUser(user);
+        account.deposit(100);
+        Long id = accountRepository.save(account).getId();
+        String token = "Bearer " + jwtService.createToken(user.getId(), user.getEmail());
+        replicate();
+
+        assertThat(balance(token, id)).isEqualTo(100);
+        double replicaReads = routed("replica");
+        assertThat(replicaReads).isPositive();
+
+        // the write goes to the primary only; its author reads it back from there
+        MvcResult deposit = mvc.perform(post("/accounts/" + id + "/deposit").header(HttpHeaders.AUTHORIZATION, token)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":50}")).andReturn();
+        assertThat(deposit.getResponse().getStatus()).isEqualTo(200);
+        assertThat(balance(token, id)).isEqualTo(150);
+        assertThat(replica().queryForObject("select balance from accounts where id = ?", Long.class, id)).isEqualTo(100);
+
+        // once the window is over, reads are back on the (still lagging) replica
+        Thread.sleep(2_500);
+        assertThat(balance(token, id)).isEqualTo(100);
+        assertThat(routed("replica")).isGreaterThan(replicaReads);
+
+        // the export body is written off the request thread, where nobody counts as sticky; it still
+        // has to come from the primary
+        MvcResult export = mvc.perform(get("/accounts/" + id + "/transactions/export")
+                .header(HttpHeaders.AUTHORIZATION, token)).andReturn();
+        export.getAsyncResult(10_000);
+        assertThat(export.getResponse().getContentAsString()).contains(",DEPOSIT,50,");
+
+        replicate();
+        assertThat(balance(token, id)).isEqualTo(150);
+
+        // per-pool metrics
+        for (String pool : new String[]{"primary", "replica"}) {
+            assertThat(meterRegistry.get("hikaricp.connections").tag("pool", pool).gauge()).isNotNull();
+            assertThat(routed(pool)).as(pool).isPositive();
+        }
+    }
+
+    private long balance(String token, Long id) throws Exception {
+        MvcResult result = mvc.perform(get("/accounts/" + id).header(HttpHeaders.AUTHORIZATION, token)).andReturn();
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        return jsonMapper.readTree(result.getResponse().getContentAsString()).get("balance").asLong();
+    }
+
+    private double routed(String pool) {
+        return meterRegistry.get("bank.datasource.routed").tag("pool", pool).counter().count();
+    }
+
+    private void replicate() throws Exception {
+        Path script = Files.createTempFile("replica", ".sql");
+        try {
+            new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", "")).execute("SCRIPT TO '" + script + "'");
+            JdbcTemplate replica = replica();
+            replica.execute("DROP ALL OBJECTS");
+            replica.execute("RUNSCRIPT FROM '" + script + "'");
+        } finally {
+            Files.delete(script);
+        }
+    }
+
+    private static JdbcTemplate replica() {
+        return new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+    }
+}
@@ -0,0 +1,57 @@
+package com.myownspringapp.mankatbank.id;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:node-lease-test;LOCK_TIMEOUT=10000",
+        "app.ids.leaseRenewMillis=100"})
+@DirtiesContext
+class NodeIdLeaseTest {
+
+    private static final Duration TTL = Duration.ofSeconds(2);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void aSecondInstanceOnTheSameNodeIdRefusesToStart() {
+        // this context holds node 0 and renews it every 100ms
+        assertThat(holder(0)).isEqualTo(NodeIdLease.INSTANCE);
+
+        NodeIdLease second = new NodeIdLease(jdbcTemplate, "second", 0, TTL, 50);
+        assertThatThrownBy(second::acquire)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("app.ids.nodeId=0 is in use by another running instance");
+        assertThat(holder(0)).isEqualTo(NodeIdLease.INSTANCE);
+    }
+
+    @Test
+    void aLeaseLeftByACrashedInstanceIsWaitedOut() throws Exception {
+        jdbcTemplate.update("insert into id_node_leases (node_id, instance, renewed_at) values (9, 'crashed', ?)",
+                Timestamp.from(Instant.now().minusSeconds(1)));
+
+        NodeIdLease restarted = new NodeIdLease(jdbcTemplate, "restarted", 9, TTL, 50);
+        long started = System.nanoTime();
+        restarted.acquire();
+        assertThat(holder(9)).isEqualTo("restarted");
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(TTL);
+
+        restarted.release();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from id_node_leases where node_id = 9", Long.class)).isZero();
+    }
+
+    private String holder(int node) {
+        return jdbcTemplate.queryForObject("select instance from id_node_leases where node_id = ?", String.class, node);
+    }
+}
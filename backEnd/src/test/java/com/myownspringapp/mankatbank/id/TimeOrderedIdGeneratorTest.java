@@ -0,0 +1,197 @@
+package com.myownspringapp.mankatbank.id;
+
+import com.myownspringapp.mankatbank.Account;
+import com.myownspringapp.mankatbank.AccountRepository;
+import com.myownspringapp.mankatbank.BalanceSnapshot;
+import com.myownspringapp.mankatbank.BalanceSnapshotRepository;
+import com.myownspringapp.mankatbank.JournalService;
+import com.myownspringapp.mankatbank.Transaction;
+import com.myownspringapp.mankatbank.TransactionRepository;
+import com.myownspringapp.mankatbank.TransactionType;
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ids-test;LOCK_TIMEOUT=10000",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // the statement counts are global, so keep the revocation refresh out of them
+        "app.jwt.revocation.refreshMillis=600000",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"})
+@DirtiesContext
+class TimeOrderedIdGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 50_000;
+
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private JournalService journalService;
+    @Autowired
+    private BalanceSnapshotRepository snapshotRepository;
+    @Autowired
+    private NodeIdLease nodeIdLease;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void uniqueAndIncreasingAcrossThreads() throws Exception {
+        TimeOrderedIds ids = new TimeOrderedIds(TimeOrderedIdGenerator.NODE_BITS, TimeOrderedIdGenerator.SEQUENCE_BITS, 3);
+        Instant started = Instant.now();
+
+        long[][] perThread = new long[THREADS][IDS_PER_THREAD];
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long[] mine = perThread[t];
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < mine.length; i++) mine[i] = ids.next();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) future.get();
+        pool.shutdown();
+
+        long[] all = new long[THREADS * IDS_PER_THREAD];
+        for (int t = 0; t < THREADS; t++) {
+            // each thread sees its ids go up
+            for (int i = 1; i < IDS_PER_THREAD; i++) {
+                assertThat(perThread[t][i]).isGreaterThan(perThread[t][i - 1]);
+            }
+            System.arraycopy(perThread[t], 0, all, t * IDS_PER_THREAD, IDS_PER_THREAD);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertThat(all[i]).as("duplicate id").isNotEqualTo(all[i - 1]);
+        }
+        // exact in a JavaScript number, carries the node, and starts from the clock
+        assertThat(all[all.length - 1]).isLessThan(1L << 53);
+        assertThat((all[0] >>> TimeOrderedIdGenerator.SEQUENCE_BITS) & 31).isEqualTo(3);
+        assertThat(all[0]).isGreaterThanOrEqualTo(ids.firstIdAt(started));
+        assertThat(ids.timestampOf(all[0])).isBetween(started.minusMillis(1), Instant.now());
+
+        assertThatThrownBy(() -> new TimeOrderedIds(TimeOrderedIdGenerator.NODE_BITS, TimeOrderedIdGenerator.SEQUENCE_BITS, 32))
+                .hasMessage("Node id must be between 0 and 31");
+    }
+
+    @Test
+    void entitiesGetTheirIdsBeforeTheInsertSoInsertsBatch() throws Exception {
+        Instant started = Instant.now();
+        User user = userRepository.save(new User(UUID.randomUUID() + "@ids.test", "Ids", "x"));
+        assertThat(user.getId()).isGreaterThanOrEqualTo(TimeOrderedIdGenerator.forNode(0).firstIdAt(started));
+
+        // many threads creating accounts at once
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            int n = i;
+            futures.add(pool.submit(() -> {
+                Account account = new Account("ids-" + n);
+                account.setUser(user);
+                return accountRepository.save(account).getId();
+            }));
+        }
+        List<Long> accountIds = new ArrayList<>();
+        for (Future<Long> future : futures) accountIds.add(future.get());
+        pool.shutdown();
+        assertThat(accountIds).doesNotHaveDuplicates().allMatch(id -> id > user.getId());
+        assertThat(accountRepository.findByUser_Id(user.getId())).hasSize(400);
+
+        // 200 legs: ids come from memory, so the inserts go out as JDBC batches of 50
+        Long accountId = accountIds.get(0);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<Transaction> legs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            legs.addAll(journalService.deposit(accountId, 1).legs());
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> transactionRepository.saveAll(legs));
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(200 / 50);
+
+        // ids follow insertion order, so they page like created_at does
+        List<Long> legIds = legs.stream().map(Transaction::getId).toList();
+        assertThat(legIds).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void aRestartCarriesOnPastIdsThatRanAheadOfTheClock() {
+        // what a burst left behind before the restart: this node's ids a second ahead of the clock
+        TimeOrderedIds before = new TimeOrderedIds(TimeOrderedIdGenerator.NODE_BITS, TimeOrderedIdGenerator.SEQUENCE_BITS, 5);
+        long ahead = id(before, 5, Instant.now().plusSeconds(1), 3);
+        long otherNode = id(before, 6, Instant.now().plusSeconds(2), 0);
+
+        TimeOrderedIds after = new TimeOrderedIds(TimeOrderedIdGenerator.NODE_BITS, TimeOrderedIdGenerator.SEQUENCE_BITS, 5);
+        assertThat(after.next()).isLessThan(ahead);
+        after.advancePast(ahead);
+        after.advancePast(otherNode);
+        assertThat(after.next()).isEqualTo(ahead + 1);
+
+        // the generator finds such ids in its table before handing out its first one
+        TimeOrderedIds node0 = TimeOrderedIdGenerator.forNode(0);
+        long left = id(node0, 0, Instant.now().plusSeconds(1), 100);
+        long elsewhere = id(node0, 1, Instant.now().plusSeconds(2), 0);
+        for (long id : new long[]{left, elsewhere}) {
+            jdbcTemplate.update("insert into balance_snapshots (id, account_id, period_end, balance) values (?, ?, ?, 0)",
+                    id, id, Timestamp.from(Instant.now()));
+        }
+        BalanceSnapshot saved = snapshotRepository.save(new BalanceSnapshot(1L, Instant.now(), 0));
+        assertThat(saved.getId()).isGreaterThan(left).isLessThan(elsewhere);
+    }
+
+    @Test
+    void linkIdsCarryOnPastThoseLeftInTheJournal() {
+        // journal link ids use 10 node bits and 12 sequence bits, and the leased node id (0 here)
+        TimeOrderedIds layout = new TimeOrderedIds(10, 12, 0);
+        long left = layout.firstIdAt(Instant.now().plusSeconds(1)) | 100;
+        long elsewhere = layout.firstIdAt(Instant.now().plusSeconds(2)) | (1L << 12);
+        long row = -1;
+        for (long linkId : new long[]{left, elsewhere}) {
+            jdbcTemplate.update("insert into transactions (id, account_id, type_code, amount, created_at, link_id) "
+                    + "values (?, 1, ?, 1, ?, ?)", row--, TransactionType.DEPOSIT.code(), Timestamp.from(Instant.now()), linkId);
+        }
+
+        // a service that has not handed out a link id yet, as after a restart
+        JournalService restarted = new JournalService(transactionRepository, null, null, nodeIdLease);
+        long linkId = restarted.deposit(1L, 1).legs().get(0).getLinkId();
+        assertThat(linkId).isGreaterThan(left).isLessThan(elsewhere);
+    }
+
+    private static long id(TimeOrderedIds ids, long node, Instant at, long sequence) {
+        return ids.firstIdAt(at) | (node << TimeOrderedIdGenerator.SEQUENCE_BITS) | sequence;
+    }
+}
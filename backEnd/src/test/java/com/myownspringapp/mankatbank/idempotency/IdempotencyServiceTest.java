@@ -0,0 +1,237 @@
+package com.myownspringapp.mankatbank.idempotency;
+
+import com.myownspringapp.mankatbank.Account;
+import com.myownspringapp.mankatbank.AccountRepository;
+import com.myownspringapp.mankatbank.TransactionRepository;
+import com.myownspringapp.mankatbank.auth.JwtService;
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:idempotency-test;LOCK_TIMEOUT=10000")
+@AutoConfigureMockMvc
+@DirtiesContext
+class IdempotencyServiceTest {
+
+    private static final int KEYS = 24;
+    private static final int RETRIES_PER_KEY = 8;
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private IdempotencyService idempotency;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentRetriesMoveMoneyOnce() throws Exception {
+        User user = newUser();
+        String token = token(user);
+        List<Long> deposits = new ArrayList<>();
+        List<Long> sources = new ArrayList<>();
+        for (int i = 0; i < KEYS; i++) {
+            deposits.add(account(user, 0).getId());
+            sources.add(account(user, 100).getId());
+        }
+        Long sink = account(user, 0).getId();
+
+        // every key is sent RETRIES_PER_KEY times at once: half of the keys deposit, half transfer 60 of 100
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<MvcResult>> results = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (int retry = 0; retry < RETRIES_PER_KEY; retry++) {
+            for (int i = 0; i < KEYS; i++) {
+                String key = "load-" + i;
+                String url = (i % 2 == 0) ? "/accounts/" + deposits.get(i) + "/deposit" : "/accounts/transfer";
+                String body = (i % 2 == 0) ? "{\"amount\":7}"
+                        : "{\"fromId\":" + sources.get(i) + ",\"toId\":" + sink + ",\"amount\":60}";
+                keys.add(key);
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return mvc.perform(post(url).header(HttpHeaders.AUTHORIZATION, token)
+                            .header("Idempotency-Key", key)
+                            .contentType(MediaType.APPLICATION_JSON).content(body)).andReturn();
+                }));
+            }
+        }
+        start.countDown();
+
+        List<String> firstBodies = new ArrayList<>();
+        for (int i = 0; i < KEYS; i++) firstBodies.add(null);
+        for (int r = 0; r < results.size(); r++) {
+            MvcResult result = results.get(r).get();
+            assertThat(result.getResponse().getStatus()).as(result.getResponse().getContentAsString()).isEqualTo(200);
+            int keyIndex = Integer.parseInt(keys.get(r).substring("load-".length()));
+            String body = result.getResponse().getContentAsString();
+            if (firstBodies.get(keyIndex) == null) firstBodies.set(keyIndex, body);
+            assertThat(body).isEqualTo(firstBodies.get(keyIndex));
+        }
+        pool.shutdown();
+
+        for (int i = 0; i < KEYS; i++) {
+            if (i % 2 == 0) {
+                assertThat(accountRepository.findById(deposits.get(i)).orElseThrow().getBalance()).isEqualTo(7);
+                assertThat(transactionRepository.findByAccountId(deposits.get(i))).hasSize(1);
+            } else {
+                assertThat(accountRepository.findById(sources.get(i)).orElseThrow().getBalance()).isEqualTo(40);
+            }
+        }
+        assertThat(accountRepository.findById(sink).orElseThrow().getBalance()).isEqualTo(60L * (KEYS / 2));
+    }
+
+    @Test
+    void replaysFromTheTableAndRejectsADifferentRequest() throws Exception {
+        User user = newUser();
+        String token = token(user);
+        Long id = account(user, 0).getId();
+
+        MvcResult first = deposit(token, id, "replay", 25);
+        assertThat(first.getResponse().getStatus()).isEqualTo(200);
+
+        // as if this instance restarted, or the request landed on another one
+        idempotency.clearCache();
+        MvcResult replay = deposit(token, id, "replay", 25);
+        assertThat(replay.getResponse().getContentAsString()).isEqualTo(first.getResponse().getContentAsString());
+        assertThat(accountRepository.findById(id).orElseThrow().getBalance()).isEqualTo(25);
+
+        MvcResult other = deposit(token, id, "replay", 26);
+        assertThat(other.getResponse().getStatus()).isEqualTo(422);
+        assertThat(accountRepository.findById(id).orElseThrow().getBalance()).isEqualTo(25);
+
+        // keys are per user
+        User someoneElse = newUser();
+        Long theirs = account(someoneElse, 0).getId();
+        assertThat(deposit(token(someoneElse), theirs, "replay", 26).getResponse().getStatus()).isEqualTo(200);
+        assertThat(accountRepository.findById(theirs).orElseThrow().getBalance()).isEqualTo(26);
+    }
+
+    @Test
+    void failedAttemptsReleaseTheKey() throws Exception {
+        User user = newUser();
+        String token = token(user);
+        Long id = account(user, 10).getId();
+
+        assertThatThrownBy(() -> mvc.perform(post("/accounts/" + id + "/withdraw").header(HttpHeaders.AUTHORIZATION, token)
+                .header("Idempotency-Key", "overdraw")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":50}")))
+                .hasRootCauseMessage("Insufficient funds");
+        assertThat(rows(user, "overdraw")).isZero();
+
+        // the client tops up and retries with the same key
+        deposit(token, id, "top-up", 100);
+        MvcResult retry = mvc.perform(post("/accounts/" + id + "/withdraw").header(HttpHeaders.AUTHORIZATION, token)
+                .header("Idempotency-Key", "overdraw")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":50}")).andReturn();
+        assertThat(retry.getResponse().getStatus()).isEqualTo(200);
+        assertThat(accountRepository.findById(id).orElseThrow().getBalance()).isEqualTo(60);
+    }
+
+    @Test
+    void waitsForAClaimHeldElsewhereAndTakesOverAnAbandonedOne() throws Exception {
+        User user = newUser();
+        String token = token(user);
+        Long id = account(user, 0).getId();
+        String hash = requestHash("deposit " + id + " 5");
+
+        // another instance is running "elsewhere"; we wait for it and replay its response
+        claimRow(user, "elsewhere", hash, Instant.now().plusSeconds(60));
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<MvcResult> waiting = pool.submit(() -> deposit(token, id, "elsewhere", 5));
+        Thread.sleep(300);
+        assertThat(waiting.isDone()).isFalse();
+        jdbcTemplate.update("update idempotency_keys set response = ?, locked_until = null where user_id = ? and idem_key = ?",
+                "{\"id\":" + id + ",\"ownerName\":\"x\",\"balance\":5,\"userId\":" + user.getId() + "}", user.getId(), "elsewhere");
+        assertThat(waiting.get().getResponse().getContentAsString()).contains("\"balance\":5");
+        assertThat(accountRepository.findById(id).orElseThrow().getBalance()).isZero();
+        pool.shutdown();
+
+        // a claim whose lease ran out belonged to an instance that died before committing
+        claimRow(user, "abandoned", hash, Instant.now().minusSeconds(1));
+        assertThat(deposit(token, id, "abandoned", 5).getResponse().getStatus()).isEqualTo(200);
+        assertThat(accountRepository.findById(id).orElseThrow().getBalance()).isEqualTo(5);
+        assertThat(rows(user, "abandoned")).isEqualTo(1);
+    }
+
+    @Test
+    void purgeDropsExpiredKeys() throws Exception {
+        User user = newUser();
+        Long id = account(user, 0).getId();
+        deposit(token(user), id, "old", 1);
+        jdbcTemplate.update("update idempotency_keys set expires_at = ? where user_id = ?",
+                Timestamp.from(Instant.now().minusSeconds(1)), user.getId());
+
+        idempotency.purgeExpired();
+
+        assertThat(rows(user, "old")).isZero();
+    }
+
+    private MvcResult deposit(String token, Long id, String key, long amount) throws Exception {
+        return mvc.perform(post("/accounts/" + id + "/deposit").header(HttpHeaders.AUTHORIZATION, token)
+                .header("Idempotency-Key", key)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":" + amount + "}")).andReturn();
+    }
+
+    private void claimRow(User user, String key, String hash, Instant lockedUntil) {
+        jdbcTemplate.update("insert into idempotency_keys (user_id, idem_key, request_hash, locked_until, expires_at) values (?, ?, ?, ?, ?)",
+                user.getId(), key, hash, Timestamp.from(lockedUntil), Timestamp.from(Instant.now().plusSeconds(3600)));
+    }
+
+    private int rows(User user, String key) {
+        return jdbcTemplate.queryForObject("select count(*) from idempotency_keys where user_id = ? and idem_key = ?",
+                Integer.class, user.getId(), key);
+    }
+
+    private static String requestHash(String request) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private User newUser() {
+        return userRepository.save(new User(UUID.randomUUID() + "@idempotency.test", "Idem", "x"));
+    }
+
+    private String token(User user) {
+        return "Bearer " + jwtService.createToken(user.getId(), user.getEmail());
+    }
+
+    private Account account(User user, long balance) {
+        Account account = new Account("idem-" + UUID.randomUUID());
+        account.setUser(user);
+        if (balance > 0) account.deposit(balance);
+        return accountRepository.save(account);
+    }
+}
@@ -0,0 +1,144 @@
+package com.myownspringapp.mankatbank.ledger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LedgerEngineTest {
+
+    private static final int ACCOUNTS = 8;
+    private static final long OPENING_BALANCE = 10_000;
+
+    @TempDir
+    Path dir;
+
+    // stands in for the accounts table: ids 1..8 exist, everything else doesn't
+    private final LedgerEngine.BalanceLoader db = id -> (id >= 1 && id <= ACCOUNTS) ? OPENING_BALANCE : null;
+
+    @Test
+    void concurrentTransfersSurviveACrash() throws Exception {
+        LedgerEngine engine = start();
+
+        AtomicLongArray expected = new AtomicLongArray(ACCOUNTS + 1);
+        for (int i = 1; i <= ACCOUNTS; i++) expected.set(i, OPENING_BALANCE);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            workers.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int n = 0; n < 500; n++) {
+                    int from = 1 + random.nextInt(ACCOUNTS);
+                    int to = 1 + (from + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    long amount = 1 + random.nextInt(50);
+                    try {
+                        engine.transfer(from, to, amount);
+                        expected.addAndGet(from, -amount);
+                        expected.addAndGet(to, amount);
+                    } catch (IllegalArgumentException insufficient) {
+                        // fine, nothing moved
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) worker.get();
+        pool.shutdown();
+
+        engine.halt();
+
+        LedgerEngine recovered = start();
+        long total = 0;
+        for (int i = 1; i <= ACCOUNTS; i++) {
+            assertThat(recovered.balance(i)).isEqualTo(expected.get(i));
+            total += recovered.balance(i);
+        }
+        assertThat(total).isEqualTo(ACCOUNTS * OPENING_BALANCE);
+        recovered.close();
+    }
+
+    @Test
+    void crashWithWritesInFlightLosesNothingThatWasAcknowledged() throws Exception {
+        LedgerEngine engine = start();
+
+        List<CompletableFuture<Long>> pending = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            pending.add(engine.transferAsync(1 + i % ACCOUNTS, 1 + (i + 1) % ACCOUNTS, 1));
+        }
+        engine.halt();
+
+        long acknowledged = pending.stream().filter(f -> f.isDone() && !f.isCompletedExceptionally()).count();
+
+        LedgerJournal journal = LedgerJournal.open(dir, 1024, 512, 1_000_000);
+        AtomicLong transfers = new AtomicLong();
+        journal.replay(0, 512, batch -> batch.forEach(e -> {
+            if (e.kind() == LedgerEntry.Kind.TRANSFER) transfers.incrementAndGet();
+        }));
+        assertThat(transfers.get()).isGreaterThanOrEqualTo(acknowledged);
+
+        long total = journal.recoveredBalances().values().stream().mapToLong(Long::longValue).sum();
+        assertThat(total).isEqualTo(journal.recoveredBalances().size() * OPENING_BALANCE);
+    }
+
+    @Test
+    void rejectsOverdraftsAndUnknownAccounts() throws Exception {
+        LedgerEngine engine = start();
+
+        assertThat(engine.deposit(1, 500)).isEqualTo(OPENING_BALANCE + 500);
+        assertThatThrownBy(() -> engine.withdraw(2, OPENING_BALANCE + 1)).hasMessage("Insufficient funds");
+        assertThatThrownBy(() -> engine.transfer(2, 99, 1)).hasMessage("To account not found");
+        assertThatThrownBy(() -> engine.balance(99)).hasMessage("Account not found");
+        assertThat(engine.balance(2)).isEqualTo(OPENING_BALANCE);
+
+        // graceful close snapshots, and the reopened engine starts from it
+        engine.close();
+        LedgerEngine reopened = start();
+        assertThat(reopened.balance(1)).isEqualTo(OPENING_BALANCE + 500);
+        reopened.close();
+    }
+
+    @Test
+    void failedFsyncLeavesBalancesAsTheJournalHasThem() throws Exception {
+        LedgerJournal journal = LedgerJournal.open(dir, 1024, 512, 1_000_000);
+        LedgerEngine engine = new LedgerEngine(journal, db, 4, 1024);
+        engine.start();
+        assertThat(engine.deposit(1, 500)).isEqualTo(OPENING_BALANCE + 500);
+        assertThat(engine.balance(2)).isEqualTo(OPENING_BALANCE);
+
+        journal.failNextSync(new IOException("disk on fire"));
+        assertThatThrownBy(() -> engine.transfer(1, 2, 300)).hasRootCauseMessage("disk on fire");
+
+        // neither side moved, and the journal takes nothing more
+        assertThat(engine.balance(1)).isEqualTo(OPENING_BALANCE + 500);
+        assertThat(engine.balance(2)).isEqualTo(OPENING_BALANCE);
+        assertThatThrownBy(() -> engine.deposit(2, 1)).hasMessage("Ledger journal is not accepting writes");
+        assertThat(engine.balance(2)).isEqualTo(OPENING_BALANCE);
+        engine.halt();
+
+        // a restart rebuilds from the journal, which never had the failed transfer
+        LedgerEngine recovered = start();
+        assertThat(recovered.balance(1)).isEqualTo(OPENING_BALANCE + 500);
+        assertThat(recovered.balance(2)).isEqualTo(OPENING_BALANCE);
+        recovered.close();
+    }
+
+    private LedgerEngine start() throws Exception {
+        LedgerEngine engine = new LedgerEngine(LedgerJournal.open(dir, 1024, 512, 1_000_000), db, 4, 1024);
+        engine.start();
+        return engine;
+    }
+}
@@ -0,0 +1,134 @@
+package com.myownspringapp.mankatbank.ledger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LedgerJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void tornTailIsCutOffOnRecovery() throws Exception {
+        LedgerJournal journal = LedgerJournal.open(dir, 64, 16, 1_000_000);
+        journal.start();
+        journal.append(open(1, 100)).join();
+        for (int i = 0; i < 10; i++) {
+            journal.append(deposit(1, 5)).join();
+        }
+        journal.halt();
+
+        // half a record at the end, as if the process died in the middle of a write
+        Path segment = segments().get(0);
+        long size = Files.size(segment);
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ch.truncate(size - LedgerEntry.RECORD_SIZE / 2);
+        }
+
+        LedgerJournal recovered = LedgerJournal.open(dir, 64, 16, 1_000_000);
+        assertThat(recovered.lastSeq()).isEqualTo(10);
+        assertThat(recovered.recoveredBalances()).containsEntry(1L, 145L);
+
+        // new appends continue the sequence right after the last good record
+        recovered.start();
+        assertThat(recovered.append(deposit(1, 1)).join().seq()).isEqualTo(11);
+        recovered.close();
+    }
+
+    @Test
+    void corruptRecordEndsReplay() throws Exception {
+        LedgerJournal journal = LedgerJournal.open(dir, 64, 16, 1_000_000);
+        journal.start();
+        journal.append(open(1, 100)).join();
+        journal.append(deposit(1, 10)).join();
+        journal.append(deposit(1, 20)).join();
+        journal.halt();
+
+        Path segment = segments().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[LedgerEntry.RECORD_SIZE * 2 + 30] ^= 0x7f;
+        Files.write(segment, bytes);
+
+        LedgerJournal recovered = LedgerJournal.open(dir, 64, 16, 1_000_000);
+        assertThat(recovered.lastSeq()).isEqualTo(2);
+        assertThat(recovered.recoveredBalances()).containsEntry(1L, 110L);
+        assertThat(Files.size(segment)).isEqualTo(2L * LedgerEntry.RECORD_SIZE);
+    }
+
+    @Test
+    void snapshotPlusTailRestoresBalancesAndPrunesProjectedSegments() throws Exception {
+        LedgerJournal journal = LedgerJournal.open(dir, 256, 32, 50);
+        // projection keeps up instantly, so only the snapshot holds segments back
+        journal.onDurable(batch -> journal.markProjected(batch.get(batch.size() - 1).seq()));
+        journal.start();
+        journal.append(open(1, 0)).join();
+        journal.append(open(2, 1_000)).join();
+
+        List<CompletableFuture<LedgerEntry>> pending = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            pending.add(journal.append(transfer(2, 1, 1)));
+            pending.add(journal.append(deposit(1, 2)));
+        }
+        pending.forEach(CompletableFuture::join);
+        journal.append(deposit(2, 7)).join();
+        journal.halt();
+
+        // several snapshots were taken, and everything before the newest one that is also projected is gone
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files.filter(p -> p.getFileName().toString().startsWith("snapshot-")).count()).isEqualTo(1);
+        }
+        assertThat(segments().size()).isLessThan(5);
+
+        LedgerJournal recovered = LedgerJournal.open(dir, 256, 32, 50);
+        assertThat(recovered.lastSeq()).isEqualTo(1003);
+        assertThat(recovered.recoveredBalances())
+                .containsEntry(1L, 500L + 1_000L)
+                .containsEntry(2L, 1_000L - 500L + 7L);
+    }
+
+    @Test
+    void replayFeedsEntriesAfterCheckpointInOrder() throws Exception {
+        LedgerJournal journal = LedgerJournal.open(dir, 64, 8, 1_000_000);
+        journal.start();
+        journal.append(open(1, 0)).join();
+        for (int i = 0; i < 20; i++) {
+            journal.append(deposit(1, 1)).join();
+        }
+        journal.halt();
+
+        LedgerJournal recovered = LedgerJournal.open(dir, 64, 8, 1_000_000);
+        List<Long> seen = new ArrayList<>();
+        recovered.replay(15, 4, batch -> batch.forEach(e -> seen.add(e.seq())));
+        assertThat(seen).containsExactly(16L, 17L, 18L, 19L, 20L, 21L);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("journal-")).sorted().toList();
+        }
+    }
+
+    private static LedgerEntry open(long account, long balance) {
+        return new LedgerEntry(0, LedgerEntry.Kind.OPEN, account, 0, balance, 0);
+    }
+
+    private static LedgerEntry deposit(long account, long amount) {
+        return new LedgerEntry(0, LedgerEntry.Kind.DEPOSIT, account, 0, amount, 0);
+    }
+
+    private static LedgerEntry transfer(long from, long to, long amount) {
+        return new LedgerEntry(0, LedgerEntry.Kind.TRANSFER, from, to, amount, 0);
+    }
+}
@@ -0,0 +1,121 @@
+package com.myownspringapp.mankatbank.ledger;
+
+import com.myownspringapp.mankatbank.Account;
+import com.myownspringapp.mankatbank.AccountRepository;
+import com.myownspringapp.mankatbank.TransactionRepository;
+import com.myownspringapp.mankatbank.TransferRequest;
+import com.myownspringapp.mankatbank.TransferResult;
+import com.myownspringapp.mankatbank.TransferService;
+import com.myownspringapp.mankatbank.auth.JwtService;
+import com.myownspringapp.mankatbank.user.User;
+import com.myownspringapp.mankatbank.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// engine on, with its own database and journal directory so nothing leaks into the other contexts
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ledger-test;LOCK_TIMEOUT=10000",
+        "app.ledger.enabled=true",
+        "app.ledger.dir=./build/ledger-test/${random.uuid}"
+})
+@AutoConfigureMockMvc
+@DirtiesContext
+class LedgerProjectionTest {
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private LedgerEngine ledgerEngine;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void transfersReachTheAccountsTableAsynchronously() throws Exception {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@ledger.test", "Ledger", "x"));
+        Account source = owned(user, 1_000);
+        Account target = owned(user, 0);
+
+        for (int i = 0; i < 10; i++) {
+            transferService.transfer(user.getId(), source.getId(), target.getId(), 10);
+        }
+        List<TransferResult> batch = transferService.transferBatch(user.getId(), List.of(
+                new TransferRequest(source.getId(), target.getId(), 50),
+                new TransferRequest(source.getId(), target.getId(), 10_000),
+                new TransferRequest(target.getId(), source.getId(), 5)));
+        assertThat(batch).extracting(TransferResult::error).containsExactly(null, "Insufficient funds", null);
+
+        // the engine answers straight away; the tables catch up behind it
+        assertThat(ledgerEngine.balance(source.getId())).isEqualTo(855);
+        assertThat(ledgerEngine.balance(target.getId())).isEqualTo(145);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (accountRepository.findById(target.getId()).orElseThrow().getBalance() != 145
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(accountRepository.findById(source.getId()).orElseThrow().getBalance()).isEqualTo(855);
+        assertThat(accountRepository.findById(target.getId()).orElseThrow().getBalance()).isEqualTo(145);
+        assertThat(transactionRepository.findByAccountId(target.getId())).hasSize(12);
+    }
+
+    // the engine's write can't share a transaction with the stored response, so keys are refused
+    // up front rather than risk a replay moving the money twice
+    @Test
+    void idempotencyKeysAreRefusedWhileTheEngineOwnsTheMoney() throws Exception {
+        User user = userRepository.save(new User(UUID.randomUUID() + "@ledger.test", "Ledger", "x"));
+        String token = "Bearer " + jwtService.createToken(user.getId(), user.getEmail());
+        Account source = owned(user, 100);
+        Account target = owned(user, 0);
+
+        MvcResult keyed = mvc.perform(post("/accounts/transfer").header(HttpHeaders.AUTHORIZATION, token)
+                .header("Idempotency-Key", "ledger-1").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromId\":" + source.getId() + ",\"toId\":" + target.getId() + ",\"amount\":30}"))
+                .andReturn();
+        assertThat(keyed.getResponse().getStatus()).isEqualTo(400);
+        assertThat(keyed.getResponse().getContentAsString()).contains("ledger engine");
+
+        MvcResult deposit = mvc.perform(post("/accounts/" + target.getId() + "/deposit")
+                .header(HttpHeaders.AUTHORIZATION, token).header("Idempotency-Key", "ledger-2")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":5}")).andReturn();
+        assertThat(deposit.getResponse().getStatus()).isEqualTo(400);
+
+        assertThat(ledgerEngine.balance(source.getId())).isEqualTo(100);
+        assertThat(ledgerEngine.balance(target.getId())).isZero();
+
+        // without a key the same transfer goes through
+        MvcResult plain = mvc.perform(post("/accounts/transfer").header(HttpHeaders.AUTHORIZATION, token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromId\":" + source.getId() + ",\"toId\":" + target.getId() + ",\"amount\":30}"))
+                .andReturn();
+        assertThat(plain.getResponse().getStatus()).isEqualTo(200);
+        assertThat(ledgerEngine.balance(target.getId())).isEqualTo(30);
+    }
+
+    private Account owned(User user, long balance) {
+        Account account = new Account("ledger");
+        account.setUser(user);
+        if (balance > 0) account.deposit(balance);
+        return accountRepository.save(account);
+    }
+}
@@ -0,0 +1,105 @@
+package com.myownspringapp.mankatbank.reconciliation;
+
+import com.myownspringapp.mankatbank.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// own database: the other tests leave accounts whose balances were set without journal legs
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reconciliation-test;LOCK_TIMEOUT=10000",
+        "app.reconciliation.rangeSize=700",
+        "app.reconciliation.initialDelayMillis=3600000"
+})
+@DirtiesContext
+class ReconciliationServiceTest {
+
+    private static final int ACCOUNTS = 5_000;
+    private static final int LEGS_PER_ACCOUNT = 100;
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void findsExactlyTheBrokenAccounts() throws Exception {
+        seed();
+        // account 17: balance edited by hand
+        jdbcTemplate.update("update accounts set balance = balance + 1 where id = 17");
+        // account 4242 is hot: its row is short by what sits in the shards, which must still add up
+        jdbcTemplate.update("update accounts set balance = balance - 30, shard_count = 2 where id = 4242");
+        jdbcTemplate.update("insert into account_balance_shards (id, account_id, shard_index, balance, version) "
+                + "values (1, 4242, 0, 10, 0), (2, 4242, 1, 20, 0)");
+        // account 999 is hot and one of its shard credits got lost
+        jdbcTemplate.update("update accounts set balance = balance - 30, shard_count = 1 where id = 999");
+        jdbcTemplate.update("insert into account_balance_shards (id, account_id, shard_index, balance, version) "
+                + "values (3, 999, 0, 25, 0)");
+        // a leg for an account that doesn't exist
+        jdbcTemplate.update("insert into transactions (id, account_id, type_code, amount, created_at, link_id) "
+                + "values (?, ?, ?, ?, ?, ?)", 99_999_999L, ACCOUNTS + 10L, TransactionType.DEPOSIT.code(), 5L,
+                Timestamp.from(Instant.now()), 99_999_999L);
+
+        // the admin endpoint's path: a background run, and nobody else gets in while it's going
+        assertThat(reconciliationService.start()).isTrue();
+        assertThatThrownBy(() -> reconciliationService.run()).hasMessage("Reconciliation already running");
+        assertThat(reconciliationService.start()).isFalse();
+        while (reconciliationService.status().running()) {
+            Thread.sleep(20);
+        }
+        ReconciliationReport report = reconciliationService.status().lastReport();
+
+        assertThat(report.accounts()).isEqualTo(ACCOUNTS);
+        assertThat(report.transactions()).isEqualTo((long) ACCOUNTS * LEGS_PER_ACCOUNT + 1);
+        assertThat(report.ranges()).isEqualTo((ACCOUNTS + 10 - 1) / 700 + 1);
+        assertThat(report.mismatchCount()).isEqualTo(3);
+        assertThat(report.mismatches()).extracting(Mismatch::accountId)
+                .containsExactlyInAnyOrder(17L, 999L, ACCOUNTS + 10L);
+        Mismatch orphan = report.mismatches().stream().filter(m -> m.accountId() == ACCOUNTS + 10L).findFirst().orElseThrow();
+        assertThat(orphan.balance()).isNull();
+        assertThat(orphan.journalSum()).isEqualTo(5);
+
+        ReconciliationStatus status = reconciliationService.status();
+        assertThat(status.running()).isFalse();
+        assertThat(status.rangesDone()).isEqualTo(status.rangesTotal());
+        assertThat(reconciliationService.run().mismatchCount()).isEqualTo(3);
+    }
+
+    // ids 1..ACCOUNTS, each with deposits, withdrawals and transfers whose signed sum is the balance
+    private void seed() {
+        List<Object[]> accounts = new ArrayList<>();
+        List<Object[]> legs = new ArrayList<>(10_000);
+        String legSql = "insert into transactions (id, account_id, type_code, amount, created_at, link_id) values (?, ?, ?, ?, ?, ?)";
+        Timestamp at = Timestamp.from(Instant.parse("2024-06-01T00:00:00Z"));
+        TransactionType[] types = TransactionType.values();
+        long id = 1;
+        for (long account = 1; account <= ACCOUNTS; account++) {
+            long balance = 0;
+            for (int n = 0; n < LEGS_PER_ACCOUNT; n++) {
+                TransactionType type = (n == 0) ? TransactionType.DEPOSIT : types[n % types.length];
+                long amount = (n == 0) ? 1_000_000 : 1 + (account * 31 + n) % 500;
+                balance += type.signed(amount);
+                legs.add(new Object[]{id, account, type.code(), amount, at, id});
+                id++;
+                if (legs.size() == 10_000) {
+                    jdbcTemplate.batchUpdate(legSql, legs);
+                    legs.clear();
+                }
+            }
+            accounts.add(new Object[]{account, "acc-" + account, balance});
+        }
+        if (!legs.isEmpty()) jdbcTemplate.batchUpdate(legSql, legs);
+        jdbcTemplate.batchUpdate("insert into accounts (id, owner_name, balance, version, shard_count) "
+                + "values (?, ?, ?, 0, 0)", accounts);
+    }
+}
@@ -0,0 +1,42 @@
+package com.myownspringapp.mankatbank.security;
+
+import com.myownspringapp.mankatbank.auth.JwtService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "management.endpoints.web.exposure.include=health,metrics",
+        "app.admin.emails=ops@actuator.test"
+})
+@AutoConfigureMockMvc
+@DirtiesContext
+class ActuatorSecurityTest {
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private JwtService jwtService;
+
+    @Test
+    void metricsNeedAnAdminButHealthIsOpen() throws Exception {
+        mvc.perform(get("/actuator/health")).andExpect(status().isOk());
+        mvc.perform(get("/actuator/metrics")).andExpect(status().isForbidden());
+        mvc.perform(get("/actuator/metrics/jvm.memory.used")).andExpect(status().isForbidden());
+
+        String user = "Bearer " + jwtService.createToken(2_000_001L, "someone@actuator.test");
+        mvc.perform(get("/actuator/metrics").header(HttpHeaders.AUTHORIZATION, user)).andExpect(status().isForbidden());
+
+        String admin = "Bearer " + jwtService.createToken(2_000_002L, "ops@actuator.test");
+        mvc.perform(get("/actuator/metrics").header(HttpHeaders.AUTHORIZATION, admin)).andExpect(status().isOk());
+        mvc.perform(get("/actuator/metrics/jvm.memory.used").header(HttpHeaders.AUTHORIZATION, admin))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,158 @@
+package com.myownspringapp.mankatbank.security;
+
+import com.myownspringapp.mankatbank.auth.JwtService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// a list property set here replaces the whole list from application.properties, so both routes in full
+@SpringBootTest(properties = {
+        "app.ratelimit.routes[0].pattern=/auth/**",
+        "app.ratelimit.routes[0].perIp=3",
+        "app.ratelimit.routes[0].period=PT1M",
+        "app.ratelimit.routes[0].burst=3",
+        "app.ratelimit.routes[1].pattern=/accounts/**",
+        "app.ratelimit.routes[1].perUser=5",
+        "app.ratelimit.routes[1].perIp=1000",
+        "app.ratelimit.routes[1].period=PT1M",
+        "app.ratelimit.routes[1].burst=5"
+})
+@AutoConfigureMockMvc
+@DirtiesContext
+class RateLimitFilterTest {
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void loginIsLimitedPerIpAndAccountsPerUser() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertThat(login("10.0.0.1").getResponse().getStatus()).isNotEqualTo(429);
+        }
+        MvcResult limited = login("10.0.0.1");
+        assertThat(limited.getResponse().getStatus()).isEqualTo(429);
+        assertThat(limited.getResponse().getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("20");
+        // another client is unaffected
+        assertThat(login("10.0.0.2").getResponse().getStatus()).isNotEqualTo(429);
+
+        String alice = "Bearer " + jwtService.createToken(1_000_001L, "alice@limit.test");
+        String bob = "Bearer " + jwtService.createToken(1_000_002L, "bob@limit.test");
+        // a new address each time, so only the per-user bucket can run out (the per-IP one refills
+        // only every 60ms and would make this depend on timing)
+        for (int i = 0; i < 5; i++) {
+            assertThat(accounts(alice, "10.0.1." + i)).isNotEqualTo(429);
+        }
+        assertThat(accounts(alice, "10.0.1.9")).isEqualTo(429);
+        // another user from the same address
+        assertThat(accounts(bob, "10.0.1.9")).isNotEqualTo(429);
+
+        assertThat(meterRegistry.get("bank.ratelimit.requests").tag("result", "rejected").tag("key", "ip")
+                .counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("bank.ratelimit.requests").tag("result", "rejected").tag("key", "user")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void bucketsAreExactUnderContentionAndEvictWhenFull() throws Exception {
+        RateLimiter limiter = new RateLimiter(100, Duration.ofSeconds(1), 50);
+        long now = System.nanoTime();
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    if (limiter.tryAcquire("k", now) == 0) allowed.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        pool.shutdown();
+        assertThat(allowed.get()).isEqualTo(50);
+
+        // one interval (10ms) later there is room for exactly one more
+        long later = now + TimeUnit.MILLISECONDS.toNanos(10);
+        assertThat(limiter.tryAcquire("k", later)).isZero();
+        assertThat(limiter.tryAcquire("k", later)).isPositive();
+
+        assertThat(limiter.evictIdle(later)).isZero();
+        assertThat(limiter.evictIdle(now + TimeUnit.SECONDS.toNanos(1))).isEqualTo(1);
+        assertThat(limiter.size()).isZero();
+    }
+
+    @Test
+    void shedsRequestsPastTheConcurrencyCap() throws Exception {
+        LoadSheddingFilter filter = new LoadSheddingFilter(
+                new RateLimitProperties(true, 1, 100, List.of()), new SimpleMeterRegistry());
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Integer> slow = pool.submit(() -> {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/accounts"), response, (req, res) -> {
+                inside.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            return response.getStatus();
+        });
+        assertThat(inside.await(5, TimeUnit.SECONDS)).isTrue();
+
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/accounts"), shed, (req, res) -> { });
+        assertThat(shed.getStatus()).isEqualTo(503);
+
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo(200);
+        MockHttpServletResponse after = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/accounts"), after, (req, res) -> { });
+        assertThat(after.getStatus()).isEqualTo(200);
+        pool.shutdown();
+    }
+
+    private MvcResult login(String ip) throws Exception {
+        return mvc.perform(post("/auth/login").with(request -> {
+                    request.setRemoteAddr(ip);
+                    return request;
+                }).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"nobody@limit.test\",\"password\":\"wrong\"}")).andReturn();
+    }
+
+    private int accounts(String token, String ip) throws Exception {
+        return mvc.perform(get("/accounts").header(HttpHeaders.AUTHORIZATION, token).with(request -> {
+                    request.setRemoteAddr(ip);
+                    return request;
+                })).andReturn().getResponse().getStatus();
+    }
+}